@@ -0,0 +1,93 @@
+package com.billy.benchmarks;
+
+import com.billy.database.CustomerDAO;
+import com.billy.database.ItemDAO;
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Reproducible data sets for the benchmarks. The same seed always yields the same records.
+ */
+public final class BenchmarkData {
+    public static final long SEED = 20_240_501L;
+
+    private static final String[] NAMES = {"Alice", "Bruno", "Carla", "Diego", "Elena", "Felipe", "Gloria", "Hugo"};
+    private static final String[] LAST_NAMES = {"Castro", "Rojas", "Silva", "Munoz", "Soto", "Contreras"};
+    private static final String[] GENDERS = {"female", "male", "other"};
+    private static final String[] COLORS = {"RED", "GREEN", "BLUE", "BLACK", "WHITE", "SILVER"};
+
+    private BenchmarkData() {
+    }
+
+    public static List<Customer> customers(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            customers.add(customer(random, i));
+        }
+        return customers;
+    }
+
+    public static List<Item> items(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            items.add(item(random, i));
+        }
+        return items;
+    }
+
+    public static Customer customer(SplittableRandom random, long id) {
+        String name = pick(random, NAMES);
+        String lastName = pick(random, LAST_NAMES);
+        return new Customer(id, name, lastName, pick(random, GENDERS),
+                (name + "." + lastName + id + "@example.com").toLowerCase());
+    }
+
+    public static Item item(SplittableRandom random, long id) {
+        return new Item(id, "Item-" + id, random.nextInt(1, 200) / 4.0, random.nextInt(1, 50_000) / 10.0,
+                pick(random, COLORS));
+    }
+
+    /**
+     * Saves {@link #items(int)} in one batch, so they get the IDs 1 to {@code count}.
+     */
+    public static void populate(ItemDAO dao, int count) {
+        dao.batch(() -> {
+            items(count).forEach(dao::save);
+            return null;
+        });
+    }
+
+    /**
+     * Saves {@link #customers(int)} in one batch, so they get the IDs 1 to {@code count}.
+     */
+    public static void populate(CustomerDAO dao, int count) {
+        dao.batch(() -> {
+            customers(count).forEach(dao::save);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes a temporary benchmark directory with its database files.
+     */
+    public static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,115 @@
+package com.billy.benchmarks;
+
+import com.billy.database.CommitPolicy;
+import com.billy.database.CustomerDAO;
+import com.billy.database.ItemDAO;
+import com.billy.database.MapDbWrapper;
+import com.billy.objects.Customer;
+import com.billy.objects.CustomerUpdateRequest;
+import com.billy.objects.Item;
+import com.billy.objects.ItemUpdateRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-record DAO calls on a file-backed store of {@code records} customers and items,
+ * with and without the read cache. Writes run in {@link com.billy.database.CommitMode#ASYNC} mode and
+ * are committed after each iteration, so the numbers are the B-tree and serializer cost, not fsync.
+ * Lookups draw IDs from a seeded random sequence, so runs are repeatable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    @Param({"10000", "200000"})
+    public int records;
+
+    @Param({"0", "16777216"})
+    public long cacheBytes;
+
+    private Path directory;
+    private MapDbWrapper dbWrapper;
+    private CustomerDAO customerDAO;
+    private ItemDAO itemDAO;
+    private SplittableRandom random;
+    private Item newItem;
+    private ItemUpdateRequest itemUpdate;
+    private CustomerUpdateRequest customerUpdate;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("dao-bench");
+        dbWrapper = new MapDbWrapper(directory.resolve("bench.db").toString(), CommitPolicy.async());
+        customerDAO = new CustomerDAO(dbWrapper, cacheBytes);
+        itemDAO = new ItemDAO(dbWrapper, cacheBytes);
+        BenchmarkData.populate(customerDAO, records);
+        BenchmarkData.populate(itemDAO, records);
+        dbWrapper.commit();
+        random = new SplittableRandom(BenchmarkData.SEED);
+        newItem = new Item(null, "Bench", 1.5, 250, "RED");
+        itemUpdate = new ItemUpdateRequest(Optional.empty(), Optional.empty(), Optional.of(300.0), Optional.empty());
+        customerUpdate = new CustomerUpdateRequest(0, Optional.of("Renamed"), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    @TearDown(Level.Iteration)
+    public void commit() {
+        dbWrapper.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        dbWrapper.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    private long randomId() {
+        return random.nextLong(1, records + 1);
+    }
+
+    @Benchmark
+    public Optional<Customer> findCustomer() {
+        return customerDAO.find(randomId());
+    }
+
+    @Benchmark
+    public Optional<Item> findItem() {
+        return itemDAO.find(randomId());
+    }
+
+    @Benchmark
+    public Optional<Item> saveItem() {
+        return itemDAO.save(newItem);
+    }
+
+    @Benchmark
+    public Optional<Item> updateItem() {
+        return itemDAO.update(randomId(), itemUpdate);
+    }
+
+    @Benchmark
+    public Optional<Customer> updateCustomer() {
+        return customerDAO.update(randomId(), customerUpdate);
+    }
+}
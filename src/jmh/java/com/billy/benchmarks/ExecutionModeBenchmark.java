@@ -0,0 +1,131 @@
+package com.billy.benchmarks;
+
+import com.billy.api.ItemHandler;
+import com.billy.api.ItemRouter;
+import com.billy.app.AppConstants;
+import com.billy.app.ExecutionMode;
+import com.billy.common.ConcurrencyLimiter;
+import com.billy.common.JsonUtils;
+import com.billy.common.ResponseCache;
+import com.billy.database.CommitMode;
+import com.billy.database.CommitPolicy;
+import com.billy.database.ItemDAO;
+import com.billy.database.MapDbWrapper;
+import com.billy.objects.Item;
+import com.billy.service.ItemService;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item reads and writes over HTTP with 256 concurrent clients, with handlers on the fixed
+ * 200-thread worker pool versus virtual threads. Throughput mode gives requests per second
+ * and sample mode the latency percentiles, including p0.99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class ExecutionModeBenchmark {
+    private static final int RECORDS = 100_000;
+
+    @Param({"worker", "virtual"})
+    public String execution;
+
+    @Param({"0", "64"})
+    public int maxConcurrency;
+
+    private Path directory;
+    private MapDbWrapper dbWrapper;
+    private Undertow server;
+    private ExecutorService handlerExecutor;
+    private HttpClient client;
+    private String baseUri;
+    private byte[] newItem;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("execution-bench");
+        dbWrapper = new MapDbWrapper(directory.resolve("bench.db").toString(),
+                new CommitPolicy(CommitMode.GROUP, CommitPolicy.DEFAULT_MAX_BATCH, CommitPolicy.DEFAULT_MAX_DELAY_MICROS));
+        ItemDAO dao = new ItemDAO(dbWrapper);
+        BenchmarkData.populate(dao, RECORDS);
+        dbWrapper.commit();
+
+        ConcurrencyLimiter limiter = maxConcurrency > 0
+                ? ConcurrencyLimiter.of(maxConcurrency)
+                : ConcurrencyLimiter.unlimited();
+        if (ExecutionMode.fromConfig(execution) == ExecutionMode.VIRTUAL) {
+            handlerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        RoutingHandler routes = Handlers.routing();
+        ItemRouter.register(routes, new ItemHandler(new ItemService(dao, limiter), ResponseCache.disabled(), handlerExecutor));
+        server = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setIoThreads(Runtime.getRuntime().availableProcessors())
+                .setWorkerThreads(AppConstants.WORKER_THREADS)
+                .setHandler(routes)
+                .build();
+        server.start();
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        baseUri = "http://localhost:" + port + "/items";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        newItem = JsonUtils.toJson(new Item(null, "Bench", 1.5, 250, "RED")).getBytes();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        server.stop();
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdownNow();
+        }
+        dbWrapper.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public int getItem() throws Exception {
+        long id = ThreadLocalRandom.current().nextLong(1, RECORDS + 1);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + "/" + id)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int createItem() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(newItem))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
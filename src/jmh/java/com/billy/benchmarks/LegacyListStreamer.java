@@ -0,0 +1,53 @@
+package com.billy.benchmarks;
+
+import com.billy.factory.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * The original list streaming callback chain: one send for each separator and each record.
+ * Kept only as a baseline for {@link ListStreamingBenchmark}.
+ */
+final class LegacyListStreamer {
+
+    private LegacyListStreamer() {
+    }
+
+    static <T> void streamJsonArray(HttpServerExchange exchange, Iterator<T> it) {
+        final ObjectMapper mapper = ObjectMapperFactory.get();
+        exchange.getResponseSender().send("[", new IoCallback() {
+            boolean shouldSendObjectNext = true;
+
+            @Override
+            public void onComplete(HttpServerExchange ex, Sender sender) {
+                try {
+                    if (!it.hasNext()) {
+                        sender.send("]", IoCallback.END_EXCHANGE);
+                        return;
+                    }
+                    if (!shouldSendObjectNext) {
+                        sender.send(",", this);
+                        shouldSendObjectNext = true;
+                        return;
+                    }
+                    shouldSendObjectNext = false;
+                    byte[] json = mapper.writeValueAsBytes(it.next());
+                    sender.send(ByteBuffer.wrap(json), this);
+                } catch (Exception e) {
+                    ex.endExchange();
+                }
+            }
+
+            @Override
+            public void onException(HttpServerExchange ex, Sender sender, IOException e) {
+                ex.endExchange();
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.billy.benchmarks;
+
+import com.billy.common.RecordStreamer;
+import com.billy.objects.Item;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Full-table export over HTTP: the original per-record callback chain versus
+ * {@link RecordStreamer}, which batches records into pooled buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListStreamingBenchmark {
+    private static final Logger logger = Logger.getLogger(ListStreamingBenchmark.class.getName());
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    private List<Item> items;
+    private Undertow server;
+    private HttpClient client;
+    private HttpRequest legacyRequest;
+    private HttpRequest batchedRequest;
+
+    @Setup(Level.Trial)
+    public void start() {
+        items = BenchmarkData.items(records);
+        RoutingHandler routes = Handlers.routing()
+                .get("/legacy", ex -> ex.dispatch(() -> LegacyListStreamer.streamJsonArray(ex, items.iterator())))
+                .get("/batched", ex -> ex.dispatch(() -> RecordStreamer.streamJsonArray(ex, items.iterator(), logger)));
+        server = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(routes)
+                .build();
+        server.start();
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        client = HttpClient.newHttpClient();
+        legacyRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/legacy")).build();
+        batchedRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/batched")).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stop();
+    }
+
+    @Benchmark
+    public long legacyCallbackChain() throws Exception {
+        return fetch(legacyRequest);
+    }
+
+    @Benchmark
+    public long batchedPooledBuffers() throws Exception {
+        return fetch(batchedRequest);
+    }
+
+    private long fetch(HttpRequest request) throws Exception {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.billy.benchmarks;
+
+import com.billy.database.ItemSerializer;
+import com.billy.objects.Item;
+import com.billy.objects.Versioned;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.mapdb.serializer.GroupSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * B-tree reads and writes of items with the compact {@link ItemSerializer} versus the legacy
+ * {@link Serializer#JAVA} table format, on an in-memory store so only the map and the serializer are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordSerializerBenchmark {
+
+    @Param({"10000", "200000"})
+    public int records;
+
+    @Param({"compact", "java"})
+    public String serializer;
+
+    private DB db;
+    private BTreeMap<Long, Object> map;
+    private boolean compact;
+    private List<Item> items;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void start() {
+        db = DBMaker.memoryDB().make();
+        compact = serializer.equals("compact");
+        GroupSerializer<?> values = compact ? new ItemSerializer() : Serializer.JAVA;
+        map = (BTreeMap<Long, Object>) (BTreeMap<Long, ?>) db.treeMap("items", Serializer.LONG, values).createOrOpen();
+        items = BenchmarkData.items(records);
+        for (Item item : items) {
+            map.put(item.id(), record(item));
+        }
+        random = new SplittableRandom(BenchmarkData.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        db.close();
+    }
+
+    private Object record(Item item) {
+        return compact ? Versioned.first(item) : item;
+    }
+
+    @Benchmark
+    public Object get() {
+        return map.get(random.nextLong(1, records + 1));
+    }
+
+    @Benchmark
+    public Object put() {
+        Item item = items.get(random.nextInt(records));
+        return map.put(item.id(), record(item));
+    }
+}
@@ -0,0 +1,133 @@
+package com.billy.benchmarks;
+
+import com.billy.api.ItemHandler;
+import com.billy.api.ItemRouter;
+import com.billy.common.Compression;
+import com.billy.common.ConcurrencyLimiter;
+import com.billy.common.JsonUtils;
+import com.billy.common.Metrics;
+import com.billy.common.ResponseCache;
+import com.billy.database.CommitPolicy;
+import com.billy.database.ItemDAO;
+import com.billy.database.MapDbWrapper;
+import com.billy.objects.Item;
+import com.billy.service.ItemService;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client doing full HTTP round trips against an in-process server wired like {@code AppContext}:
+ * metrics, compression, routing, handler, service and a file-backed DAO with {@code RECORDS} items.
+ * Unlike {@link ExecutionModeBenchmark} there is no contention, so this is the per-request cost of the stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+    private static final int RECORDS = 100_000;
+
+    @Param({"application/json", "application/cbor"})
+    public String accept;
+
+    @Param({"0", "16777216"})
+    public long responseCacheBytes;
+
+    private Path directory;
+    private MapDbWrapper dbWrapper;
+    private Undertow server;
+    private HttpClient client;
+    private String baseUri;
+    private byte[] newItem;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("round-trip-bench");
+        dbWrapper = new MapDbWrapper(directory.resolve("bench.db").toString(), CommitPolicy.async());
+        ItemDAO dao = new ItemDAO(dbWrapper);
+        BenchmarkData.populate(dao, RECORDS);
+        dbWrapper.commit();
+
+        ItemService service = new ItemService(dao, ConcurrencyLimiter.unlimited());
+        ResponseCache<Item> responses = new ResponseCache<>(responseCacheBytes);
+        service.onChange(responses::invalidate);
+        RoutingHandler routes = Handlers.routing();
+        ItemRouter.register(routes, new ItemHandler(service, responses));
+        server = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(new Metrics().handler(
+                        Compression.handler(routes, Compression.DEFAULT_LEVEL, Compression.DEFAULT_MIN_BYTES)))
+                .build();
+        server.start();
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        baseUri = "http://localhost:" + port + "/items";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        newItem = JsonUtils.toJsonBytes(new Item(null, "Bench", 1.5, 250, "RED"));
+        random = new SplittableRandom(BenchmarkData.SEED);
+    }
+
+    @TearDown(Level.Iteration)
+    public void commit() {
+        dbWrapper.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        server.stop();
+        dbWrapper.close();
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path)).header("Accept", accept);
+    }
+
+    @Benchmark
+    public int getItem() throws Exception {
+        HttpRequest request = request("/" + random.nextLong(1, RECORDS + 1)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    @Benchmark
+    public int getPage() throws Exception {
+        HttpRequest request = request("?limit=100&after=" + random.nextLong(0, RECORDS - 100)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    @Benchmark
+    public int createItem() throws Exception {
+        HttpRequest request = request("")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(newItem))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+}
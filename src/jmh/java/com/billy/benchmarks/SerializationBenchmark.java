@@ -0,0 +1,96 @@
+package com.billy.benchmarks;
+
+import com.billy.common.Codec;
+import com.billy.common.Codecs;
+import com.billy.common.JsonUtils;
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of single records, as done for every request and response body.
+ * {@code application/json} goes through {@link JsonUtils}; the binary formats through their {@link Codec}.
+ * Records rotate over a fixed set so the branch predictor and caches see varied data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final int RECORDS = 1_024;
+
+    @Param({"application/json", "application/cbor", "application/x-jackson-smile", "application/msgpack"})
+    public String format;
+
+    private Codec codec;
+    private boolean json;
+    private List<Customer> customers;
+    private List<Item> items;
+    private byte[][] encodedCustomers;
+    private byte[][] encodedItems;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codec = Codecs.forContentType(format);
+        json = codec == Codec.JSON;
+        customers = BenchmarkData.customers(RECORDS);
+        items = BenchmarkData.items(RECORDS);
+        encodedCustomers = new byte[RECORDS][];
+        encodedItems = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            encodedCustomers[i] = encode(customers.get(i));
+            encodedItems[i] = encode(items.get(i));
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (RECORDS - 1);
+        return next;
+    }
+
+    private byte[] encode(Object value) {
+        return json ? JsonUtils.toJsonBytes(value) : codec.write(value);
+    }
+
+    private <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        return json ? JsonUtils.fromJson(bytes, type) : codec.read(bytes, type);
+    }
+
+    @Benchmark
+    public byte[] encodeCustomer() {
+        return encode(customers.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Customer decodeCustomer() throws IOException {
+        return decode(encodedCustomers[nextIndex()], Customer.class);
+    }
+
+    @Benchmark
+    public byte[] encodeItem() {
+        return encode(items.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Item decodeItem() throws IOException {
+        return decode(encodedItems[nextIndex()], Item.class);
+    }
+}
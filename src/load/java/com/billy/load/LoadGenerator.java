@@ -0,0 +1,264 @@
+package com.billy.load;
+
+import com.billy.app.AppConstants;
+import com.billy.app.AppContext;
+import com.billy.app.Config;
+import com.billy.common.JsonUtils;
+import com.billy.common.LatencyHistogram;
+import com.billy.objects.ImportSummary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Open-model HTTP load generator. Requests are started at a constant arrival rate from a single pacing
+ * thread, request {@code i} at {@code start + i / rate}, whether or not earlier ones completed, so a slow
+ * server builds a queue the way real clients would. Latency is recorded from the scheduled start
+ * (coordinated omission corrected) and from the actual send, in {@link LatencyHistogram}s.
+ * <p>
+ * Unless {@code --target} is given it starts an {@link AppContext} on a free port and a temporary MapDB
+ * file, imports {@code --records} items and customers through {@code /_import}, runs the workload and
+ * writes a {@link LoadReport} as JSON.
+ */
+public final class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String ERROR = "error";
+
+    private final LoadOptions options;
+    private final Workload workload;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Stats total;
+    private final Map<String, Stats> routes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private long scheduled;
+
+    LoadGenerator(LoadOptions options, Workload workload) {
+        this.options = options;
+        this.workload = workload;
+        this.total = new Stats(options.subBits());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        Workload workload = options.trace() != null ? Workload.replay(options.trace(), options.records())
+                : options.mix() != null ? Workload.mix(options.mix(), options.records())
+                : Workload.defaultMix(options.records());
+        LoadGenerator generator = new LoadGenerator(options, workload);
+        LoadReport report = options.target() != null
+                ? generator.run(options.target())
+                : generator.runAgainstTemporaryServer();
+        Path parent = options.out().toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(options.out(), JsonUtils.toJsonBytes(report));
+        System.out.printf("%s: %.1f req/s, %.3f%% errors, p50 %dus, p99 %dus, p99.9 %dus -> %s%n",
+                report.workload(), report.throughput(), report.errorRate() * 100,
+                report.responseTime().percentiles().get("50.0"), report.responseTime().percentiles().get("99.0"),
+                report.responseTime().percentiles().get("99.9"), options.out());
+        System.exit(0);
+    }
+
+    private LoadReport runAgainstTemporaryServer() throws Exception {
+        Path directory = Files.createTempDirectory("load");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Properties properties = new Properties();
+        try (InputStream input = LoadGenerator.class.getClassLoader().getResourceAsStream(AppConstants.CONFIG_PROPERTIES)) {
+            if (input != null) {
+                properties.load(input);
+            }
+        }
+        properties.setProperty(AppConstants.SERVER_HOST, "localhost");
+        properties.setProperty(AppConstants.SERVER_PORT, Integer.toString(port));
+        properties.setProperty(AppConstants.DB_FILE_NAME, directory.resolve("load.db").toString());
+        AppContext context = new AppContext(new Config(properties));
+        context.start();
+        try {
+            String target = "http://localhost:" + port;
+            populate(target);
+            return run(target);
+        } finally {
+            context.shutdown();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Imports items and customers with IDs 1 to {@code records}, seeded so every run stores the same data.
+     */
+    private void populate(String target) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        StringBuilder items = new StringBuilder();
+        StringBuilder customers = new StringBuilder();
+        String[] colors = {"RED", "GREEN", "BLUE", "BLACK", "WHITE"};
+        for (int i = 1; i <= options.records(); i++) {
+            items.append(String.format(Locale.ROOT, "{\"name\":\"Item-%d\",\"size\":%.2f,\"weight\":%.1f,\"color\":\"%s\"}\n",
+                    i, random.nextInt(1, 200) / 4.0, random.nextInt(1, 5_000) / 10.0, colors[random.nextInt(colors.length)]));
+            customers.append(String.format(Locale.ROOT, "{\"name\":\"Name%d\",\"lastName\":\"Last%d\",\"gender\":\"other\",\"email\":\"customer%d@example.com\"}\n",
+                    i, i, i));
+        }
+        importRecords(target + "/items/_import", items.toString());
+        importRecords(target + "/customers/_import", customers.toString());
+    }
+
+    private void importRecords(String uri, String ndjson) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", NDJSON)
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        ImportSummary summary = JsonUtils.fromJson(response.body(), ImportSummary.class);
+        if (response.statusCode() != 200 || summary.imported() != options.records()) {
+            throw new IllegalStateException("Populating " + uri + " failed: " + new String(response.body()));
+        }
+        logger.log(Level.INFO, String.format("Imported %d records through %s", summary.imported(), uri));
+    }
+
+    /**
+     * Sends the warmup and measured requests at the configured rate, then waits for the outstanding ones.
+     */
+    LoadReport run(String target) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        long warmupRequests = (long) options.rate() * options.warmupSeconds();
+        long totalRequests = warmupRequests + (long) options.rate() * options.seconds();
+        long start = System.nanoTime();
+        for (long i = 0; i < totalRequests; i++) {
+            long intended = start + i * 1_000_000_000L / options.rate();
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            boolean measured = i >= warmupRequests;
+            if (measured) {
+                scheduled++;
+            }
+            TraceRequest trace = workload.next(random);
+            if (inFlight.get() >= options.maxInFlight()) {
+                if (measured) {
+                    rejected.increment();
+                }
+                continue;
+            }
+            send(target, trace, random, intended, measured);
+        }
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return report();
+    }
+
+    private void send(String target, TraceRequest trace, SplittableRandom random, long intended, boolean measured) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target + workload.resolve(trace.path(), random)))
+                .timeout(REQUEST_TIMEOUT);
+        if (trace.headers() != null) {
+            trace.headers().forEach(builder::header);
+        }
+        if (trace.body() != null) {
+            if (trace.headers() == null || !trace.headers().containsKey("Content-Type")) {
+                builder.header("Content-Type", AppConstants.APPLICATION_JSON);
+            }
+            String body = workload.resolve(trace.body().toString(), random);
+            builder.method(trace.method(), HttpRequest.BodyPublishers.ofString(body));
+        } else {
+            builder.method(trace.method(), HttpRequest.BodyPublishers.noBody());
+        }
+        String route = trace.route();
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        client.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long done = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (!measured) {
+                return;
+            }
+            String status = failure != null ? ERROR : Integer.toString(response.statusCode());
+            boolean error = failure != null || response.statusCode() >= 400;
+            total.record(status, error, done - intended, done - sent);
+            routes.computeIfAbsent(route, r -> new Stats(options.subBits())).record(status, error, done - intended, done - sent);
+        });
+    }
+
+    private LoadReport report() {
+        LoadReport.Latency responseTime = LoadReport.Latency.of(total.responseTime);
+        long completed = total.completed.sum();
+        long outstanding = Math.max(0, scheduled - rejected.sum() - responseTime.count());
+        long errors = total.errors.sum() + outstanding;
+        Map<String, LoadReport.RouteReport> byRoute = new TreeMap<>();
+        routes.forEach((route, stats) -> byRoute.put(route, new LoadReport.RouteReport(stats.completed.sum(),
+                stats.errors.sum(), stats.statuses(), LoadReport.Latency.of(stats.responseTime),
+                LoadReport.Latency.of(stats.serviceTime))));
+        return new LoadReport(workload.name(), options.rate(), options.seconds(), scheduled, completed, errors,
+                rejected.sum(), (double) completed / options.seconds(),
+                scheduled == 0 ? 0 : (double) (errors + rejected.sum()) / scheduled, total.statuses(),
+                responseTime, LoadReport.Latency.of(total.serviceTime), byRoute);
+    }
+
+    /**
+     * Counters and histograms of all requests or of one route, updated from the HTTP client threads.
+     */
+    private static final class Stats {
+        private final LatencyHistogram responseTime;
+        private final LatencyHistogram serviceTime;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Stats(int subBits) {
+            this.responseTime = new LatencyHistogram(subBits);
+            this.serviceTime = new LatencyHistogram(subBits);
+        }
+
+        void record(String status, boolean error, long responseNanos, long serviceNanos) {
+            responseTime.record(responseNanos);
+            serviceTime.record(serviceNanos);
+            if (!ERROR.equals(status)) {
+                completed.increment();
+            }
+            if (error) {
+                errors.increment();
+            }
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        Map<String, Long> statuses() {
+            Map<String, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+    }
+}
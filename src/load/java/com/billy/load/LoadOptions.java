@@ -0,0 +1,75 @@
+package com.billy.load;
+
+import com.billy.common.LatencyHistogram;
+
+import java.nio.file.Path;
+
+/**
+ * Command line options of the {@link LoadGenerator}.
+ *
+ * @param rate          requests started per second, whatever the response times
+ * @param warmupSeconds seconds of load before measuring
+ * @param seconds       measured seconds
+ * @param records       items and customers imported before the run; IDs 1 to records exist
+ * @param trace         JSONL trace replayed in order, or null
+ * @param mix           JSONL weighted mix, or null; without trace and mix the built-in mix is used
+ * @param target        base URL of a running server, or null to start one on a temporary store
+ * @param maxInFlight   requests outstanding at once before new ones are counted as rejected
+ * @param seed          seed of the random IDs and mix draws
+ * @param subBits       log2 of the latency buckets per power of two, 7 for 128 buckets and under 1% error
+ * @param out           file the JSON report is written to
+ */
+public record LoadOptions(int rate, int warmupSeconds, int seconds, int records, Path trace, Path mix,
+                          String target, int maxInFlight, long seed, int subBits, Path out) {
+
+    static final String USAGE = """
+            Usage: LoadGenerator [--rate 500] [--warmup 5] [--duration 30] [--records 10000]
+                                 [--trace requests.jsonl | --mix mix.jsonl] [--target http://host:port]
+                                 [--max-in-flight 10000] [--seed 42] [--sub-buckets 128]
+                                 [--out target/load-report.json]""";
+
+    public static LoadOptions parse(String[] args) {
+        int rate = 500;
+        int warmup = 5;
+        int seconds = 30;
+        int records = 10_000;
+        Path trace = null;
+        Path mix = null;
+        String target = null;
+        int maxInFlight = 10_000;
+        long seed = 42;
+        int subBuckets = 128;
+        Path out = Path.of("target", "load-report.json");
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + name + "\n" + USAGE);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--rate" -> rate = Integer.parseInt(value);
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--duration" -> seconds = Integer.parseInt(value);
+                case "--records" -> records = Integer.parseInt(value);
+                case "--trace" -> trace = Path.of(value);
+                case "--mix" -> mix = Path.of(value);
+                case "--target" -> target = value;
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--sub-buckets" -> subBuckets = Integer.parseInt(value);
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option " + name + "\n" + USAGE);
+            }
+        }
+        if (rate <= 0 || seconds <= 0 || warmup < 0 || records <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("rate, duration, records and max-in-flight must be positive\n" + USAGE);
+        }
+        if (Integer.bitCount(subBuckets) != 1 || subBuckets < 64
+                || subBuckets > 1 << LatencyHistogram.MAX_SUB_BITS) {
+            throw new IllegalArgumentException("sub-buckets must be a power of two from 64 to "
+                    + (1 << LatencyHistogram.MAX_SUB_BITS) + "\n" + USAGE);
+        }
+        return new LoadOptions(rate, warmup, seconds, records, trace, mix, target, maxInFlight, seed,
+                Integer.numberOfTrailingZeros(subBuckets), out);
+    }
+}
@@ -0,0 +1,59 @@
+package com.billy.load;
+
+import com.billy.common.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Machine-readable result of a load run, written as JSON.
+ * Response time is measured from the moment a request was scheduled to start, so waiting behind a slow
+ * server counts (coordinated omission corrected); service time from the moment it was actually sent.
+ *
+ * @param workload     the trace, mix or built-in mix that was sent
+ * @param targetRate   requests per second that were scheduled
+ * @param seconds      measured seconds
+ * @param scheduled    requests scheduled in the measured window
+ * @param completed    requests that got a response
+ * @param errors       responses with status 400 or above, failed requests and requests still unanswered at the end
+ * @param rejected     requests not sent because {@code maxInFlight} were outstanding
+ * @param throughput   completed requests per second
+ * @param errorRate    errors and rejections over scheduled requests
+ * @param statuses     responses per status code, {@code "error"} for failures without a response
+ * @param responseTime latency from the scheduled start
+ * @param serviceTime  latency from the actual send
+ * @param routes       the same counts and latencies per method and path
+ */
+public record LoadReport(String workload, int targetRate, int seconds, long scheduled, long completed, long errors,
+                         long rejected, double throughput, double errorRate, Map<String, Long> statuses,
+                         Latency responseTime, Latency serviceTime, Map<String, RouteReport> routes) {
+
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9, 99.99, 100};
+
+    /**
+     * Latency distribution in microseconds, each value the upper bound of its histogram bucket.
+     *
+     * @param count       measured requests
+     * @param meanMicros  mean latency
+     * @param percentiles latency per percentile, e.g. {@code "99.9"}
+     */
+    public record Latency(long count, double meanMicros, Map<String, Long> percentiles) {
+
+        static Latency of(LatencyHistogram histogram) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            Map<String, Long> percentiles = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                percentiles.put(Double.toString(percentile), snapshot.quantileMicros(percentile / 100));
+            }
+            double mean = snapshot.count() == 0 ? 0 : snapshot.sumNanos() / 1_000.0 / snapshot.count();
+            return new Latency(snapshot.count(), mean, percentiles);
+        }
+    }
+
+    /**
+     * Results of one route.
+     */
+    public record RouteReport(long completed, long errors, Map<String, Long> statuses,
+                              Latency responseTime, Latency serviceTime) {
+    }
+}
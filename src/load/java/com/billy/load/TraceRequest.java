@@ -0,0 +1,36 @@
+package com.billy.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+/**
+ * One request of a trace or mix, as a line of a JSONL file, e.g.
+ * {@code {"method":"PATCH","path":"/items/{itemId}","body":{"weight":12.5},"weight":10}}.
+ * <p>
+ * {@code {itemId}} and {@code {customerId}} in the path or body are replaced by a random existing ID and
+ * {@code {seq}} by a number unique to the run, so a trace can be replayed against a freshly populated store.
+ *
+ * @param method  HTTP method
+ * @param path    path and query, relative to the server root
+ * @param headers extra request headers, may be null
+ * @param body    request body, may be null
+ * @param weight  relative frequency in a mix, ignored when a trace is replayed in order; null means 1
+ */
+public record TraceRequest(String method, String path, Map<String, String> headers, JsonNode body, Integer weight) {
+    public static final String ITEM_ID = "{itemId}";
+    public static final String CUSTOMER_ID = "{customerId}";
+    public static final String SEQ = "{seq}";
+
+    /**
+     * @return the label results are grouped by: method and path without the query
+     */
+    public String route() {
+        int query = path.indexOf('?');
+        return method + " " + (query < 0 ? path : path.substring(0, query));
+    }
+
+    public int weightOrDefault() {
+        return weight == null ? 1 : weight;
+    }
+}
@@ -0,0 +1,122 @@
+package com.billy.load;
+
+import com.billy.common.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The sequence of requests sent by the {@link LoadGenerator}: a trace replayed in order, looping, or a
+ * weighted mix drawn at random. Random choices come from a seeded generator, so a run with the same
+ * options sends the same requests.
+ */
+public final class Workload {
+    private final String name;
+    private final List<TraceRequest> requests;
+    private final int[] cumulativeWeights;
+    private final boolean replay;
+    private final int records;
+    private long seq;
+    private int position;
+
+    private Workload(String name, List<TraceRequest> requests, boolean replay, int records) {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("Workload " + name + " has no requests");
+        }
+        this.name = name;
+        this.requests = List.copyOf(requests);
+        this.replay = replay;
+        this.records = records;
+        this.cumulativeWeights = new int[requests.size()];
+        int total = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            total += requests.get(i).weightOrDefault();
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Replays the requests of a JSONL trace in file order, starting over at the end.
+     */
+    public static Workload replay(Path trace, int records) throws IOException {
+        return new Workload("replay:" + trace.getFileName(), read(trace), true, records);
+    }
+
+    /**
+     * Draws the requests of a JSONL file at random, in proportion to their weights.
+     */
+    public static Workload mix(Path mix, int records) throws IOException {
+        return new Workload("mix:" + mix.getFileName(), read(mix), false, records);
+    }
+
+    /**
+     * A read-heavy mix over every customer and item route: 70% reads, 30% creates and updates.
+     */
+    public static Workload defaultMix(int records) {
+        List<TraceRequest> mix = List.of(
+                request("GET", "/items/{itemId}", null, 35),
+                request("GET", "/customers/{customerId}", null, 20),
+                request("GET", "/items?limit=100&after={itemId}", null, 10),
+                request("GET", "/items?color=RED&maxWeight=100", null, 5),
+                request("POST", "/items", "{\"name\":\"Load-{seq}\",\"size\":2.5,\"weight\":40.0,\"color\":\"BLUE\"}", 10),
+                request("POST", "/customers", "{\"name\":\"Load\",\"lastName\":\"Test\",\"gender\":\"other\",\"email\":\"load-{seq}@example.com\"}", 5),
+                request("PATCH", "/items/{itemId}", "{\"weight\":12.5}", 10),
+                request("PATCH", "/customers/{customerId}", "{\"lastName\":\"Patched\"}", 5));
+        return new Workload("default-mix", mix, false, records);
+    }
+
+    private static TraceRequest request(String method, String path, String body, int weight) {
+        return new TraceRequest(method, path, null,
+                body == null ? null : JsonUtils.fromJson(body, JsonNode.class), weight);
+    }
+
+    private static List<TraceRequest> read(Path file) throws IOException {
+        List<TraceRequest> requests = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (!line.isBlank()) {
+                requests.add(JsonUtils.fromJson(line, TraceRequest.class));
+            }
+        }
+        return requests;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Picks the next request. Called by the single pacing thread only.
+     */
+    public TraceRequest next(SplittableRandom random) {
+        if (replay) {
+            TraceRequest request = requests.get(position);
+            position = (position + 1) % requests.size();
+            return request;
+        }
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return requests.get(i);
+            }
+        }
+        throw new IllegalStateException("Weights exhausted");
+    }
+
+    /**
+     * Replaces the placeholders of a path or body. Called by the single pacing thread only.
+     */
+    public String resolve(String template, SplittableRandom random) {
+        if (template.indexOf('{') < 0) {
+            return template;
+        }
+        return template
+                .replace(TraceRequest.ITEM_ID, Long.toString(random.nextLong(1, records + 1)))
+                .replace(TraceRequest.CUSTOMER_ID, Long.toString(random.nextLong(1, records + 1)))
+                .replace(TraceRequest.SEQ, Long.toString(++seq));
+    }
+}
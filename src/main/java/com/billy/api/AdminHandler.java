@@ -0,0 +1,222 @@
+package com.billy.api;
+
+import com.billy.common.Metrics;
+import com.billy.database.CacheStats;
+import com.billy.database.Compaction;
+import com.billy.database.Snapshots;
+import com.billy.service.CustomerService;
+import com.billy.service.ItemService;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.billy.app.AppConstants.APPLICATION_OCTET_STREAM;
+import static com.billy.common.HandlerUtils.async;
+import static com.billy.common.HandlerUtils.queryParam;
+import static com.billy.common.HandlerUtils.send;
+import static com.billy.common.HandlerUtils.sendErrorResponse;
+
+/**
+ * HTTP handler for operational endpoints.
+ */
+public class AdminHandler {
+    public static final String CUSTOMERS = "customers";
+    public static final String ITEMS = "items";
+    public static final String COMPACTION_ALREADY_RUNNING = "Compaction already running";
+    public static final String SNAPSHOT_ALREADY_RUNNING = "Snapshot already running";
+    public static final String SNAPSHOT_NOT_FOUND = "Snapshot not found";
+    public static final String NAME = "name";
+    private static final Logger logger = Logger.getLogger(AdminHandler.class.getName());
+    private final CustomerService customerService;
+    private final ItemService itemService;
+    private final Metrics metrics;
+    private final Compaction compaction;
+    private final Snapshots snapshots;
+    private final Executor executor;
+
+    /**
+     * @param executor runs the handler tasks, e.g. a virtual thread per task executor, or null for the worker pool
+     */
+    public AdminHandler(CustomerService customerService, ItemService itemService, Metrics metrics,
+                        Compaction compaction, Snapshots snapshots, Executor executor) {
+        this.customerService = customerService;
+        this.itemService = itemService;
+        this.metrics = metrics;
+        this.compaction = compaction;
+        this.snapshots = snapshots;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the read cache counters of each entity, e.g.
+     * {@code {"customers":{"hits":10,"misses":2,...},"items":{...}}}.
+     * Reading the counters does not touch the store, so it runs on the IO thread.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the hits, misses, evictions, hit rate, entries and bytes of each cache.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void getCacheStats(HttpServerExchange exchange) {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put(CUSTOMERS, customerService.cacheStats());
+        stats.put(ITEMS, itemService.cacheStats());
+        send(exchange, StatusCodes.OK, stats);
+    }
+
+    /**
+     * Returns the request latency histograms, in-flight requests, request/response bytes and MapDB commit
+     * durations in the Prometheus text format. Like the cache counters it only reads atomics, on the IO thread.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the metrics as {@code text/plain; version=0.0.4}.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void getMetrics(HttpServerExchange exchange) {
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, Metrics.CONTENT_TYPE);
+        exchange.getResponseSender().send(metrics.scrape());
+    }
+
+    /**
+     * Starts compacting every MapDB file in the background. Progress and the bytes reclaimed are
+     * reported by {@link #getCompaction(HttpServerExchange)}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>202 Accepted – The compaction started; returns the status.</li>
+     *   <li>409 Conflict – A compaction is already running.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void compact(HttpServerExchange exchange) {
+        if (compaction.start()) {
+            send(exchange, StatusCodes.ACCEPTED, compaction.status());
+        } else {
+            sendErrorResponse(exchange, StatusCodes.CONFLICT, COMPACTION_ALREADY_RUNNING);
+        }
+    }
+
+    /**
+     * Returns whether a compaction is running, the report of the latest compacted files and the files whose
+     * compaction was postponed and will be retried, e.g.
+     * {@code {"running":false,"reports":[{"file":"db/data.db","bytesBefore":...,"reclaimedBytes":...}],"postponed":[],...}}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the compaction status.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void getCompaction(HttpServerExchange exchange) {
+        send(exchange, StatusCodes.OK, compaction.status());
+    }
+
+    /**
+     * Starts taking a snapshot of the customers and items in the background. Requests are held only while
+     * the online copy catches up; the file is written afterwards and listed by
+     * {@link #getSnapshots(HttpServerExchange)} once complete.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>202 Accepted – The snapshot started; returns the status.</li>
+     *   <li>409 Conflict – A snapshot is already running.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void snapshot(HttpServerExchange exchange) {
+        if (snapshots.start()) {
+            send(exchange, StatusCodes.ACCEPTED, snapshots.status());
+        } else {
+            sendErrorResponse(exchange, StatusCodes.CONFLICT, SNAPSHOT_ALREADY_RUNNING);
+        }
+    }
+
+    /**
+     * Returns whether a snapshot is running and the report of the latest ones, e.g.
+     * {@code {"running":false,"reports":[{"file":"snapshot-20240101-120000-000.bsnap","bytes":...}],...}}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the snapshot status.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void getSnapshots(HttpServerExchange exchange) {
+        send(exchange, StatusCodes.OK, snapshots.status());
+    }
+
+    /**
+     * Downloads a snapshot file. The body is transferred from the file channel, with sendfile where the
+     * connection allows it, so the file is not copied through the heap; it is not compressed.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the file as {@code application/octet-stream}.</li>
+     *   <li>404 Not Found – No snapshot has this name.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void downloadSnapshot(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            Optional<Path> file = queryParam(exchange, NAME).flatMap(snapshots::file);
+            FileChannel channel;
+            long size;
+            try {
+                channel = FileChannel.open(file.orElseThrow(() -> new IOException(SNAPSHOT_NOT_FOUND)));
+                size = channel.size();
+            } catch (IOException e) {
+                sendErrorResponse(exchange, StatusCodes.NOT_FOUND, SNAPSHOT_NOT_FOUND);
+                return;
+            }
+            exchange.setStatusCode(StatusCodes.OK);
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, APPLICATION_OCTET_STREAM);
+            exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, size);
+            exchange.getResponseHeaders().put(Headers.CONTENT_DISPOSITION,
+                    "attachment; filename=\"" + file.get().getFileName() + "\"");
+            exchange.getResponseSender().transferFrom(channel, new IoCallback() {
+                @Override
+                public void onComplete(HttpServerExchange ex, Sender sender) {
+                    close(channel);
+                    IoCallback.END_EXCHANGE.onComplete(ex, sender);
+                }
+
+                @Override
+                public void onException(HttpServerExchange ex, Sender sender, IOException e) {
+                    close(channel);
+                    IoCallback.END_EXCHANGE.onException(ex, sender, e);
+                }
+            });
+        }, logger);
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Closing a snapshot file failed", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.billy.api;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.Methods;
+
+public class AdminRouter {
+
+    public static final String ADMIN_BASE = "/admin";
+    public static final String METRICS = "/metrics";
+    public static final String COMPACT = "/compact";
+    public static final String SNAPSHOT = "/snapshot";
+
+    public static void register(RoutingHandler router, AdminHandler adminHandler) {
+        router.get(ADMIN_BASE + "/cache", adminHandler::getCacheStats);
+        router.get(METRICS, adminHandler::getMetrics);
+        router.post(ADMIN_BASE + COMPACT, adminHandler::compact);
+        router.get(ADMIN_BASE + COMPACT, adminHandler::getCompaction);
+        router.post(ADMIN_BASE + SNAPSHOT, adminHandler::snapshot);
+        router.get(ADMIN_BASE + SNAPSHOT, adminHandler::getSnapshots);
+        router.get(ADMIN_BASE + SNAPSHOT + "/{" + AdminHandler.NAME + "}", adminHandler::downloadSnapshot);
+    }
+
+    /**
+     * @return whether the request downloads a snapshot file, which only reads the file and not the store
+     */
+    public static boolean isSnapshotDownload(HttpServerExchange exchange) {
+        return exchange.getRequestMethod().equals(Methods.GET)
+                && exchange.getRequestPath().startsWith(ADMIN_BASE + SNAPSHOT + "/");
+    }
+}
@@ -1,40 +1,63 @@
 package com.billy.api;
 
-import com.billy.common.JsonUtils;
-import com.billy.factory.ObjectMapperFactory;
+import com.billy.common.Codec;
+import com.billy.common.Codecs;
+import com.billy.common.RecordImporter;
+import com.billy.common.RecordStreamer;
+import com.billy.common.RequestGate;
+import com.billy.common.ResponseCache;
+import com.billy.database.DuplicateKeyException;
+import com.billy.database.VersionConflictException;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
 import com.billy.objects.Customer;
 import com.billy.objects.CustomerUpdateRequest;
+import com.billy.objects.PageRequest;
 import com.billy.objects.Response;
+import com.billy.objects.Versioned;
 import com.billy.service.CustomerService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.undertow.io.IoCallback;
-import io.undertow.io.Sender;
+import com.fasterxml.jackson.databind.MappingIterator;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
 import io.undertow.util.StatusCodes;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Iterator;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.billy.api.HandlersConstants.BAD_FORMAT_IN_REQUEST;
 import static com.billy.api.HandlersConstants.DELETING_WITH_ID;
-import static com.billy.api.HandlersConstants.EXCEPTION_SENDING_RESPONSE;
-import static com.billy.api.HandlersConstants.FAILED_TO_STREAM;
 import static com.billy.api.HandlersConstants.INTERNAL_SERVER_ERROR;
+import static com.billy.api.HandlersConstants.INVALID_AFTER_PARAMETER;
 import static com.billy.api.HandlersConstants.INVALID_OR_MISSING_REQUEST_BODY;
+import static com.billy.api.HandlersConstants.INVALID_PAGE_PARAMETERS;
 import static com.billy.api.HandlersConstants.MISSING_OR_INVALID_ID;
+import static com.billy.api.HandlersConstants.NOT_FOUND_EMAIL;
 import static com.billy.api.HandlersConstants.NOT_FOUND_ID_D;
 import static com.billy.app.AppConstants.MAX_REQUEST_LEN;
 import static com.billy.common.HandlerUtils.async;
+import static com.billy.common.HandlerUtils.ifMatchVersion;
+import static com.billy.common.HandlerUtils.isExportRequested;
+import static com.billy.common.HandlerUtils.isPageRequested;
+import static com.billy.common.HandlerUtils.notModified;
+import static com.billy.common.HandlerUtils.parseAfter;
 import static com.billy.common.HandlerUtils.parseIdFromRequest;
+import static com.billy.common.HandlerUtils.parsePageRequest;
 import static com.billy.common.HandlerUtils.parseRequest;
 import static com.billy.common.HandlerUtils.parseRequestForUpdate;
+import static com.billy.common.HandlerUtils.queryParam;
+import static com.billy.common.HandlerUtils.receiveBody;
+import static com.billy.common.HandlerUtils.recordETag;
+import static com.billy.common.HandlerUtils.send;
 import static com.billy.common.HandlerUtils.sendErrorResponse;
+import static com.billy.common.HandlerUtils.sendPreconditionFailed;
 import static com.billy.common.HandlerUtils.sendResponse;
+import static com.billy.common.HandlerUtils.sendVersionConflict;
+import static com.billy.common.HandlerUtils.setETag;
+import static com.billy.common.HandlerUtils.tableETag;
 
 
 public class CustomerHandler {
@@ -42,83 +65,169 @@ public class CustomerHandler {
     public static final String MISSING_REQUIRED_FIELD_EMAIL = "Missing required field: email";
     public static final String EXCEPTION_AT_SAFE_ABORT = "Exception at safe abort";
     public static final String REQUEST_TOO_LARGE = "Request too large";
+    public static final String EMAIL = "email";
     private final CustomerService customerService;
+    private final ResponseCache<Customer> responses;
+    private final Executor executor;
 
 
     public CustomerHandler(CustomerService service) {
+        this(service, ResponseCache.disabled());
+    }
+
+    /**
+     * @param service   the customer service
+     * @param responses cache of encoded customers for {@link #getCustomerById(HttpServerExchange)}
+     */
+    public CustomerHandler(CustomerService service, ResponseCache<Customer> responses) {
+        this(service, responses, null);
+    }
+
+    /**
+     * @param service   the customer service
+     * @param responses cache of encoded customers for {@link #getCustomerById(HttpServerExchange)}
+     * @param executor  runs the handler tasks, e.g. a virtual thread per task executor, or null for the worker pool
+     */
+    public CustomerHandler(CustomerService service, ResponseCache<Customer> responses, Executor executor) {
         this.customerService = service;
+        this.responses = responses;
+        this.executor = executor;
     }
 
     /**
-     * Streams all customers as a JSON array to the HTTP client using non-blocking I/O.
-     * Each user is sent individually to avoid loading the entire dataset into memory.
+     * Streams all customers as a JSON array to the HTTP client using non-blocking I/O, or as a CBOR,
+     * Smile or MessagePack array when the {@code Accept} header asks for it, see {@link Codecs}.
+     * Customers are serialized in chunks into pooled buffers, so the dataset is never held in memory
+     * and each chunk costs a single write.
+     * When {@code after} or {@code limit} query parameters are present a single page is
+     * returned instead, see {@link #getCustomersPage(HttpServerExchange)}, and with an
+     * {@code email} parameter the matching customer, see {@link #getCustomerByEmail(HttpServerExchange, String)}.
+     * NDJSON or CSV requests get a resumable export, see {@link #exportCustomers(HttpServerExchange)}.
+     * All variants carry an {@code ETag} of the table version, which changes on every write, and of the format.
+     * {@code If-None-Match} is only checked once the parameters are valid, so a malformed request
+     * gets its 400 even when the tag matches.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns a JSON array of all users.</li>
+     *   <li>304 Not Modified – If {@code If-None-Match} matches the current table ETag.</li>
      *   <li>500 Internal Server Error – If an error occurs while streaming.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void getAllCustomers(HttpServerExchange exchange) {
-        async(exchange, () -> {
-            final ObjectMapper mapper = ObjectMapperFactory.get();
+        Optional<String> email = queryParam(exchange, EMAIL);
+        if (email.isPresent()) {
+            getCustomerByEmail(exchange, email.get());
+            return;
+        }
+        if (isExportRequested(exchange)) {
+            exportCustomers(exchange);
+            return;
+        }
+        if (isPageRequested(exchange)) {
+            getCustomersPage(exchange);
+            return;
+        }
+        if (notModified(exchange, tableETag(customerService.tableVersion(), Codecs.records(exchange)))) {
+            return;
+        }
+        async(exchange, executor, () -> {
             exchange.setStatusCode(StatusCodes.OK);
-            Iterator<Customer> it = customerService.iteratorAllCustomers();
-
-            exchange.getResponseSender().send("[", new IoCallback() {
-                boolean shouldSendObjectNext = true;
-
-                @Override
-                public void onComplete(HttpServerExchange ex, Sender sender) {
-                    try {
-                        if (!it.hasNext()) {
-                            sender.send("]", IoCallback.END_EXCHANGE);
-                            return;
-                        }
-                        if (!shouldSendObjectNext) {
-                            sender.send(",", this);
-                            shouldSendObjectNext = true;
-                            return;
-                        }
-                        shouldSendObjectNext = false;
-
-
-                        Customer c = it.next();
-                        byte[] json = mapper.writeValueAsBytes(c);
-                        sender.send(ByteBuffer.wrap(json), this);
-
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
-                        safeAbort(ex);
-                    }
-                }
-
-                @Override
-                public void onException(HttpServerExchange ex, Sender sender, IOException e) {
-                    logger.log(Level.SEVERE, EXCEPTION_SENDING_RESPONSE, e);
-                    safeAbort(ex);
-                }
+            RecordStreamer.streamRecords(exchange, customerService.iteratorAllCustomers(), Customer.class, logger);
+        }, logger);
+    }
 
-                private void safeAbort(HttpServerExchange ex) {
-                    try {
-                        ex.endExchange();
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, EXCEPTION_AT_SAFE_ABORT, e);
-                    }
-                }
-            });
+    /**
+     * Streams the customers with an ID greater than {@code after} (default 0) one per line, as NDJSON
+     * ({@code Accept: application/x-ndjson}) or CSV with a header row ({@code Accept: text/csv}).
+     * Lines come in ID order and are written in large chunks, so a consumer can process them at constant
+     * memory and resume an interrupted export with the last ID it processed as {@code after}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns one customer per line.</li>
+     *   <li>400 Bad Request – If {@code after} is malformed or negative.</li>
+     *   <li>500 Internal Server Error – If an error occurs while streaming.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    private void exportCustomers(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            OptionalLong after = parseAfter(exchange);
+            if (after.isEmpty()) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_AFTER_PARAMETER);
+                return;
+            }
+            if (notModified(exchange, tableETag(customerService.tableVersion(), Codecs.records(exchange), after.getAsLong(), 0))) {
+                return;
+            }
+            exchange.setStatusCode(StatusCodes.OK);
+            RequestGate.markLongRunning(exchange);
+            RecordStreamer.streamRecords(exchange, customerService.iteratorCustomersAfter(after.getAsLong()), Customer.class, logger);
+        }, logger);
+    }
 
+    /**
+     * Returns one page of customers in ID order, selected with {@code ?after=<id>&limit=<n>}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns {@code {"data":[...],"next":<id|null>}}; pass {@code next} as {@code after} to continue.</li>
+     *   <li>400 Bad Request – If {@code after} or {@code limit} is malformed or out of range.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    private void getCustomersPage(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            Optional<PageRequest> pageRequest = parsePageRequest(exchange);
+            if (pageRequest.isEmpty()) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_PAGE_PARAMETERS);
+                return;
+            }
+            PageRequest page = pageRequest.get();
+            if (notModified(exchange, tableETag(customerService.tableVersion(), Codecs.response(exchange), page.after(), page.limit()))) {
+                return;
+            }
+            send(exchange, StatusCodes.OK, customerService.pageCustomers(page));
         }, logger);
     }
 
+    /**
+     * Retrieves a single customer by email using the unique email index.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the customer object as JSON.</li>
+     *   <li>404 Not Found – If no customer has the given email.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     * @param email    the email to look up, compared ignoring case
+     */
+    private void getCustomerByEmail(HttpServerExchange exchange, String email) {
+        if (notModified(exchange, tableETag(customerService.tableVersion(), Codecs.response(exchange)))) {
+            return;
+        }
+        async(exchange, executor, () -> customerService.getCustomerByEmail(email).ifPresentOrElse(
+                customer -> send(exchange, StatusCodes.OK, customer),
+                () -> sendErrorResponse(exchange, StatusCodes.NOT_FOUND, String.format(NOT_FOUND_EMAIL, email))
+        ), logger);
+    }
+
     /**
      * Retrieves a single customer by their ID from the path parameter.
+     * The response carries an {@code ETag} of the customer's version.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns the customer object as JSON.</li>
+     *   <li>304 Not Modified – If {@code If-None-Match} matches the current version.</li>
      *   <li>400 Bad Request – If the ID is missing or invalid.</li>
      *   <li>404 Not Found – If no customer exists with the given ID.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
@@ -127,7 +236,7 @@ public class CustomerHandler {
      * @param exchange the HTTP exchange containing request and response data
      */
     public void getCustomerById(final HttpServerExchange exchange) {
-        async(exchange, () -> {
+        async(exchange, executor, () -> {
 
             final OptionalLong idLongOptional = parseIdFromRequest(exchange);
             if (idLongOptional.isEmpty()) {
@@ -135,13 +244,21 @@ public class CustomerHandler {
                 return;
             }
             final long idToFind = idLongOptional.getAsLong();
-            final Optional<Customer> customerWithId = customerService.getCustomerById(idToFind);
+            final Optional<Versioned<Customer>> customerWithId = customerService.getVersionedCustomerById(idToFind);
             if (customerWithId.isEmpty()) {
                 sendErrorResponse(exchange, StatusCodes.NOT_FOUND, String.format(NOT_FOUND_ID_D, idToFind), idToFind);
                 return;
             }
-            final String customerWithIdJson = JsonUtils.toJson(customerWithId.get());
-            sendResponse(exchange, StatusCodes.OK, customerWithIdJson);
+            final Versioned<Customer> customer = customerWithId.get();
+            if (notModified(exchange, recordETag(idToFind, customer.version(), Codecs.response(exchange)))) {
+                return;
+            }
+            if (Codecs.response(exchange) != Codec.JSON) {
+                send(exchange, StatusCodes.OK, customer.value());
+                return;
+            }
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, Codec.JSON.mediaType());
+            sendResponse(exchange, StatusCodes.OK, responses.encode(idToFind, customer.version(), customer.value()));
 
         }, logger);
     }
@@ -154,59 +271,72 @@ public class CustomerHandler {
      * <ul>
      *   <li>200 OK – Returns the newly created customer object as JSON.</li>
      *   <li>400 Bad Request – If the request body is missing or badly formatted.</li>
+     *   <li>409 Conflict – If another customer already uses the email.</li>
      *   <li>500 Internal Server Error – If customer creation fails unexpectedly.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void createCustomer(HttpServerExchange exchange) {
-        async(exchange, () -> {
-            exchange.getRequestReceiver().receiveFullBytes((ex, data) -> {
-                if (data.length > MAX_REQUEST_LEN) {
-                    sendErrorResponse(ex, StatusCodes.REQUEST_ENTITY_TOO_LARGE, REQUEST_TOO_LARGE);
+        receiveBody(exchange, executor, (ex, data) -> {
+            if (data.length > MAX_REQUEST_LEN) {
+                sendErrorResponse(ex, StatusCodes.REQUEST_ENTITY_TOO_LARGE, REQUEST_TOO_LARGE);
+                return;
+            }
+            parseRequest(ex, data, Customer.class).ifPresentOrElse(customer -> {
+                if (customer.email() == null || customer.email().isBlank()) {
+                    sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_REQUIRED_FIELD_EMAIL);
                     return;
                 }
-                parseRequest(data, Customer.class).ifPresentOrElse(customer -> {
-                    if (customer.email() == null || customer.email().isBlank()) {
-                        sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_REQUIRED_FIELD_EMAIL);
-                        return;
-                    }
+                try {
                     customerService.createCustomer(customer)
                             .ifPresentOrElse(savedCustomer -> {
-                                String json = JsonUtils.toJson(savedCustomer);
-                                sendResponse(ex, StatusCodes.CREATED, json);
+                                send(ex, StatusCodes.CREATED, savedCustomer);
                             }, () -> sendErrorResponse(ex, StatusCodes.INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR));
-                }, () -> sendErrorResponse(ex, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST));
-            });
+                } catch (DuplicateKeyException e) {
+                    sendErrorResponse(ex, StatusCodes.CONFLICT, e.getMessage());
+                }
+            }, () -> sendErrorResponse(ex, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST));
         }, logger);
     }
 
     /**
      * Deletes a customer identified by the ID in the path parameter.
+     * With an {@code If-Match} header the customer is only deleted if it still has that ETag.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – If the customer was successfully deleted.</li>
      *   <li>400 Bad Request – If the ID is missing or invalid.</li>
      *   <li>404 Not Found – If no customer exists with the given ID.</li>
+     *   <li>412 Precondition Failed – If {@code If-Match} does not match the current version.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void deleteCustomer(HttpServerExchange exchange) {
-        async(exchange, () -> {
+        async(exchange, executor, () -> {
             OptionalLong idOpt = parseIdFromRequest(exchange);
             idOpt.ifPresentOrElse(id -> {
                 if (logger.getLevel() == Level.FINE) {
                     logger.fine(String.format(DELETING_WITH_ID, id));
                 }
-                boolean deleted = customerService.deleteCustomer(id);
-                if (deleted) {
-                    sendResponse(exchange, StatusCodes.OK, JsonUtils.toJson(Response.success(id)));
-                } else {
-                    sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
-                            String.format(NOT_FOUND_ID_D, id), id);
+                OptionalLong expectedVersion = ifMatchVersion(exchange, id);
+                if (expectedVersion.isEmpty()) {
+                    sendPreconditionFailed(exchange, id);
+                    return;
+                }
+                try {
+                    boolean deleted = customerService.deleteCustomer(id, expectedVersion.getAsLong());
+                    if (deleted) {
+                        send(exchange, StatusCodes.OK, Response.success(id));
+                    } else {
+                        sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
+                                String.format(NOT_FOUND_ID_D, id), id);
+                    }
+                } catch (VersionConflictException e) {
+                    sendVersionConflict(exchange, e);
                 }
             }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
 
@@ -215,31 +345,95 @@ public class CustomerHandler {
 
     /**
      * Updates a customer based on the request body.
+     * With an {@code If-Match} header the update is only applied if the customer still has that ETag,
+     * so concurrent clients cannot overwrite each other's changes. The response carries the new ETag.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns the updated customer object as JSON.</li>
      *   <li>400 Bad Request – If the request body is invalid or missing.</li>
      *   <li>404 Not Found – If no customer exists with the given ID.</li>
+     *   <li>409 Conflict – If the new email is used by another customer.</li>
+     *   <li>412 Precondition Failed – If {@code If-Match} does not match the current version.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void updateCustomer(HttpServerExchange exchange) {
-        async(exchange, () -> {
-            exchange.getRequestReceiver().receiveFullBytes((ex, data) -> {
+        receiveBody(exchange, executor, (ex, data) -> {
 
-                OptionalLong idOpt = parseIdFromRequest(exchange);
-                idOpt.ifPresentOrElse(id -> {
-                    parseRequestForUpdate(data, CustomerUpdateRequest.class).ifPresentOrElse(customerUpdateRequest -> {
-                        customerService.updateCustomer(id, customerUpdateRequest)
+            OptionalLong idOpt = parseIdFromRequest(exchange);
+            idOpt.ifPresentOrElse(id -> {
+                OptionalLong expectedVersion = ifMatchVersion(exchange, id);
+                if (expectedVersion.isEmpty()) {
+                    sendPreconditionFailed(exchange, id);
+                    return;
+                }
+                parseRequestForUpdate(exchange, data, CustomerUpdateRequest.class).ifPresentOrElse(customerUpdateRequest -> {
+                    try {
+                        customerService.updateCustomer(id, customerUpdateRequest, expectedVersion.getAsLong())
                                 .ifPresentOrElse(savedCustomer -> {
-                                    sendResponse(exchange, StatusCodes.OK, JsonUtils.toJson(savedCustomer));
+                                    setETag(exchange, recordETag(id, savedCustomer.version(), Codecs.response(exchange)));
+                                    send(exchange, StatusCodes.OK, savedCustomer.value());
                                 }, () -> sendErrorResponse(exchange, StatusCodes.NOT_FOUND, String.format(NOT_FOUND_ID_D, id), id));
-                    }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_OR_MISSING_REQUEST_BODY));
-                }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
-            });
+                    } catch (DuplicateKeyException e) {
+                        sendErrorResponse(exchange, StatusCodes.CONFLICT, e.getMessage(), id);
+                    } catch (VersionConflictException e) {
+                        sendVersionConflict(exchange, e);
+                    }
+                }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_OR_MISSING_REQUEST_BODY));
+            }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
         }, logger);
     }
+
+    /**
+     * Applies a bulk request of create, update and delete operations on customers.
+     * The body is either a JSON array or newline delimited JSON (NDJSON) of operations such as
+     * {@code {"op":"create","data":{...}}}, {@code {"op":"update","id":7,"data":{...}}} or
+     * {@code {"op":"delete","id":7}}. It is parsed while it is read, so large bodies are never held
+     * in memory, and all operations are applied as one batch with a single commit wait.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the summary and the result of each operation, in request order.</li>
+     *   <li>400 Bad Request – If the body cannot be read as JSON.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     * Malformed JSON after the first operations stops the run; the operations before it are kept
+     * and the failure is reported as the last result.
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void bulkCustomers(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            exchange.startBlocking();
+            try (MappingIterator<BulkOperation> operations =
+                         Codecs.request(exchange).readValues(exchange.getInputStream(), BulkOperation.class)) {
+                BulkResponse response = customerService.applyBulk(operations);
+                send(exchange, StatusCodes.OK, response);
+            } catch (IOException e) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST);
+            }
+        }, logger);
+    }
+
+    /**
+     * Imports customers from a JSON array or NDJSON body of any size, e.g. a full catalogue.
+     * Unlike {@link #createCustomer(HttpServerExchange)}, the body is never held in memory: it is parsed
+     * while it arrives and saved in batches of {@link RecordImporter#DEFAULT_BATCH_SIZE}, reading is paused
+     * while a batch is written. Invalid customers are reported and skipped.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the import summary with the first failed customers by position.</li>
+     *   <li>400 Bad Request – If the body is malformed; customers before the error are kept and counted.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void importCustomers(HttpServerExchange exchange) {
+        RecordImporter.start(exchange, executor, Customer.class, RecordImporter.DEFAULT_BATCH_SIZE, customerService::importCustomers, logger);
+    }
 }
@@ -10,6 +10,8 @@ public class CustomerRouter {
         router.get(CUSTOMERS_BASE, customerHandler::getAllCustomers);
         router.get(CUSTOMERS_BASE + "/{id}", customerHandler::getCustomerById);
         router.post(CUSTOMERS_BASE, customerHandler::createCustomer);
+        router.post(CUSTOMERS_BASE + "/_bulk", customerHandler::bulkCustomers);
+        router.post(CUSTOMERS_BASE + "/_import", customerHandler::importCustomers);
         router.delete(CUSTOMERS_BASE + "/{id}", customerHandler::deleteCustomer);
         router.add(Methods.PATCH, CUSTOMERS_BASE + "/{id}", customerHandler::updateCustomer);
     }
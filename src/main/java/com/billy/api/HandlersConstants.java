@@ -18,4 +18,14 @@ public class HandlersConstants {
     public static final String ERROR_DELETING = "Error deleting";
 
     public static final String INVALID_OR_MISSING_REQUEST_BODY = "Invalid or missing request body";
+
+    public static final String NOT_FOUND_EMAIL = "Not found email=%s";
+
+    public static final String INVALID_QUERY_PARAMETERS = "Invalid query parameters: weight and size bounds must be numbers";
+
+    public static final String IF_MATCH_FAILED_ID_D = "If-Match does not match the current version of id=%d";
+
+    public static final String INVALID_AFTER_PARAMETER = "Invalid after parameter: must be an id >= 0";
+
+    public static final String INVALID_PAGE_PARAMETERS = "Invalid paging parameters: after must be >= 0 and limit > 0";
 }
@@ -1,39 +1,63 @@
 package com.billy.api;
 
-import com.billy.common.JsonUtils;
-import com.billy.factory.ObjectMapperFactory;
+import com.billy.common.Codec;
+import com.billy.common.Codecs;
+import com.billy.common.RecordImporter;
+import com.billy.common.RecordStreamer;
+import com.billy.common.RequestGate;
+import com.billy.common.ResponseCache;
+import com.billy.database.VersionConflictException;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
 import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
 import com.billy.objects.ItemUpdateRequest;
+import com.billy.objects.PageRequest;
 import com.billy.objects.Response;
+import com.billy.objects.Versioned;
 import com.billy.service.ItemService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.undertow.io.IoCallback;
-import io.undertow.io.Sender;
+import com.fasterxml.jackson.databind.MappingIterator;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
 import io.undertow.util.StatusCodes;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.billy.api.HandlersConstants.BAD_FORMAT_IN_REQUEST;
 import static com.billy.api.HandlersConstants.DELETING_WITH_ID;
-import static com.billy.api.HandlersConstants.EXCEPTION_SENDING_RESPONSE;
-import static com.billy.api.HandlersConstants.FAILED_TO_STREAM;
 import static com.billy.api.HandlersConstants.INTERNAL_SERVER_ERROR;
+import static com.billy.api.HandlersConstants.INVALID_AFTER_PARAMETER;
 import static com.billy.api.HandlersConstants.INVALID_OR_MISSING_REQUEST_BODY;
+import static com.billy.api.HandlersConstants.INVALID_PAGE_PARAMETERS;
+import static com.billy.api.HandlersConstants.INVALID_QUERY_PARAMETERS;
 import static com.billy.api.HandlersConstants.MISSING_OR_INVALID_ID;
 import static com.billy.api.HandlersConstants.NOT_FOUND_ID_D;
 import static com.billy.common.HandlerUtils.async;
+import static com.billy.common.HandlerUtils.ifMatchVersion;
+import static com.billy.common.HandlerUtils.isExportRequested;
+import static com.billy.common.HandlerUtils.isPageRequested;
+import static com.billy.common.HandlerUtils.notModified;
+import static com.billy.common.HandlerUtils.parseAfter;
 import static com.billy.common.HandlerUtils.parseIdFromRequest;
+import static com.billy.common.HandlerUtils.parsePageRequest;
 import static com.billy.common.HandlerUtils.parseRequest;
 import static com.billy.common.HandlerUtils.parseRequestForUpdate;
+import static com.billy.common.HandlerUtils.queryParam;
+import static com.billy.common.HandlerUtils.receiveBody;
+import static com.billy.common.HandlerUtils.recordETag;
+import static com.billy.common.HandlerUtils.send;
 import static com.billy.common.HandlerUtils.sendErrorResponse;
+import static com.billy.common.HandlerUtils.sendPreconditionFailed;
 import static com.billy.common.HandlerUtils.sendResponse;
+import static com.billy.common.HandlerUtils.sendVersionConflict;
+import static com.billy.common.HandlerUtils.setETag;
+import static com.billy.common.HandlerUtils.tableETag;
 
 /**
  * HTTP handler for managing {@link Item} entities.
@@ -43,77 +67,190 @@ import static com.billy.common.HandlerUtils.sendResponse;
 public class ItemHandler {
     private static final Logger logger = Logger.getLogger(ItemHandler.class.getName());
     public static final String MISSING_REQUIRED_FIELD_NAME = "Missing required field: name";
+    public static final String COLOR = "color";
+    public static final String MIN_WEIGHT = "minWeight";
+    public static final String MAX_WEIGHT = "maxWeight";
+    public static final String MIN_SIZE = "minSize";
+    public static final String MAX_SIZE = "maxSize";
+    private static final List<String> QUERY_PARAMETERS = List.of(COLOR, MIN_WEIGHT, MAX_WEIGHT, MIN_SIZE, MAX_SIZE);
     private final ItemService itemService;
+    private final ResponseCache<Item> responses;
+    private final Executor executor;
 
     public ItemHandler(ItemService itemService) {
+        this(itemService, ResponseCache.disabled());
+    }
+
+    /**
+     * @param itemService the item service
+     * @param responses   cache of encoded items for {@link #getItemById(HttpServerExchange)}
+     */
+    public ItemHandler(ItemService itemService, ResponseCache<Item> responses) {
+        this(itemService, responses, null);
+    }
+
+    /**
+     * @param itemService the item service
+     * @param responses   cache of encoded items for {@link #getItemById(HttpServerExchange)}
+     * @param executor    runs the handler tasks, e.g. a virtual thread per task executor, or null for the worker pool
+     */
+    public ItemHandler(ItemService itemService, ResponseCache<Item> responses, Executor executor) {
         this.itemService = itemService;
+        this.responses = responses;
+        this.executor = executor;
     }
 
     /**
-     * Streams all items as a JSON array.
+     * Streams all items as a JSON array, or as a CBOR, Smile or MessagePack array when the
+     * {@code Accept} header asks for it, see {@link Codecs}.
+     * When {@code after} or {@code limit} query parameters are present a single page is
+     * returned instead, see {@link #getItemsPage(HttpServerExchange)}, filter parameters
+     * select a search, see {@link #searchItems(HttpServerExchange)}, and NDJSON or CSV requests
+     * get a resumable export, see {@link #exportItems(HttpServerExchange)}.
+     * All variants carry an {@code ETag} of the table version, which changes on every write, and of the format.
+     * {@code If-None-Match} is only checked once the parameters are valid, so a malformed request
+     * gets its 400 even when the tag matches.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns a JSON array of all items.</li>
+     *   <li>304 Not Modified – If {@code If-None-Match} matches the current table ETag.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void getAllItems(HttpServerExchange exchange) {
-        async(exchange, () -> {
-            final ObjectMapper mapper = ObjectMapperFactory.get();
+        if (QUERY_PARAMETERS.stream().anyMatch(name -> queryParam(exchange, name).isPresent())) {
+            searchItems(exchange);
+            return;
+        }
+        if (isExportRequested(exchange)) {
+            exportItems(exchange);
+            return;
+        }
+        if (isPageRequested(exchange)) {
+            getItemsPage(exchange);
+            return;
+        }
+        if (notModified(exchange, tableETag(itemService.tableVersion(), Codecs.records(exchange)))) {
+            return;
+        }
+        async(exchange, executor, () -> {
             exchange.setStatusCode(StatusCodes.OK);
-            Iterator<Item> it = itemService.iteratorAllItems();
-
-            exchange.getResponseSender().send("[", new IoCallback() {
-                boolean shouldSendObjectNext = true;
+            RecordStreamer.streamRecords(exchange, itemService.iteratorAllItems(), Item.class, logger);
+        }, logger);
+    }
 
-                @Override
-                public void onComplete(HttpServerExchange ex, Sender sender) {
-                    try {
-                        if (!it.hasNext()) {
-                            sender.send("]", IoCallback.END_EXCHANGE);
-                            return;
-                        }
-                        if (!shouldSendObjectNext) {
-                            sender.send(",", this);
-                            shouldSendObjectNext = true;
-                            return;
-                        }
-                        shouldSendObjectNext = false;
-                        Item item = it.next();
-                        byte[] json = mapper.writeValueAsBytes(item);
-                        sender.send(ByteBuffer.wrap(json), this);
-
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
-                        safeAbort(ex);
-                    }
-                }
+    /**
+     * Streams the items with an ID greater than {@code after} (default 0) one per line, as NDJSON
+     * ({@code Accept: application/x-ndjson}) or CSV with a header row ({@code Accept: text/csv}).
+     * Lines come in ID order and are written in large chunks, so a consumer can process them at constant
+     * memory and resume an interrupted export with the last ID it processed as {@code after}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns one item per line.</li>
+     *   <li>400 Bad Request – If {@code after} is malformed or negative.</li>
+     *   <li>500 Internal Server Error – If an error occurs while streaming.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    private void exportItems(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            OptionalLong after = parseAfter(exchange);
+            if (after.isEmpty()) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_AFTER_PARAMETER);
+                return;
+            }
+            if (notModified(exchange, tableETag(itemService.tableVersion(), Codecs.records(exchange), after.getAsLong(), 0))) {
+                return;
+            }
+            exchange.setStatusCode(StatusCodes.OK);
+            RequestGate.markLongRunning(exchange);
+            RecordStreamer.streamRecords(exchange, itemService.iteratorItemsAfter(after.getAsLong()), Item.class, logger);
+        }, logger);
+    }
 
-                @Override
-                public void onException(HttpServerExchange ex, Sender sender, IOException e) {
-                    logger.log(Level.SEVERE, EXCEPTION_SENDING_RESPONSE, e);
-                    safeAbort(ex);
-                }
+    /**
+     * Returns one page of items in ID order, selected with {@code ?after=<id>&limit=<n>}.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns {@code {"data":[...],"next":<id|null>}}; pass {@code next} as {@code after} to continue.</li>
+     *   <li>400 Bad Request – If {@code after} or {@code limit} is malformed or out of range.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    private void getItemsPage(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            Optional<PageRequest> pageRequest = parsePageRequest(exchange);
+            if (pageRequest.isEmpty()) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_PAGE_PARAMETERS);
+                return;
+            }
+            PageRequest page = pageRequest.get();
+            if (notModified(exchange, tableETag(itemService.tableVersion(), Codecs.response(exchange), page.after(), page.limit()))) {
+                return;
+            }
+            send(exchange, StatusCodes.OK, itemService.pageItems(page));
+        }, logger);
+    }
 
-                private void safeAbort(HttpServerExchange ex) {
-                    try {
-                        ex.endExchange();
-                    } catch (Exception ignored) {
-                    }
-                }
-            });
+    /**
+     * Streams the items matching {@code ?color=&minWeight=&maxWeight=&minSize=&maxSize=} as a JSON array,
+     * or in the format negotiated through {@code Accept}, including NDJSON and CSV.
+     * All given criteria must match; bounds are inclusive and color ignores case.
+     * The scan is driven by whichever of the color, weight or size indexes is most selective.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns a JSON array of the matching items.</li>
+     *   <li>400 Bad Request – If a weight or size bound is not a number.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    private void searchItems(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            Optional<ItemQuery> query = parseItemQuery(exchange);
+            if (query.isEmpty()) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_QUERY_PARAMETERS);
+                return;
+            }
+            if (notModified(exchange, tableETag(itemService.tableVersion(), Codecs.records(exchange)))) {
+                return;
+            }
+            exchange.setStatusCode(StatusCodes.OK);
+            RecordStreamer.streamRecords(exchange, itemService.searchItems(query.get()), Item.class, logger);
         }, logger);
     }
 
+    private static Optional<ItemQuery> parseItemQuery(HttpServerExchange exchange) {
+        try {
+            return Optional.of(new ItemQuery(
+                    queryParam(exchange, COLOR),
+                    queryParam(exchange, MIN_WEIGHT).map(Double::valueOf),
+                    queryParam(exchange, MAX_WEIGHT).map(Double::valueOf),
+                    queryParam(exchange, MIN_SIZE).map(Double::valueOf),
+                    queryParam(exchange, MAX_SIZE).map(Double::valueOf)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Retrieves a single item by its ID from the path or query parameter.
+     * The response carries an {@code ETag} of the item's version.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns the item object as JSON.</li>
+     *   <li>304 Not Modified – If {@code If-None-Match} matches the current version.</li>
      *   <li>400 Bad Request – If the ID is missing or invalid.</li>
      *   <li>404 Not Found – If no item exists with the given ID.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
@@ -122,21 +259,29 @@ public class ItemHandler {
      * @param exchange the HTTP exchange containing request and response data
      */
     public void getItemById(final HttpServerExchange exchange) {
-        async(exchange, () -> {
+        async(exchange, executor, () -> {
             final OptionalLong idLongOptional = parseIdFromRequest(exchange);
             if (idLongOptional.isEmpty()) {
                 sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID);
                 return;
             }
             final long idToFind = idLongOptional.getAsLong();
-            final Optional<Item> itemWithId = itemService.getItemById(idToFind);
+            final Optional<Versioned<Item>> itemWithId = itemService.getVersionedItemById(idToFind);
             if (itemWithId.isEmpty()) {
                 sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
                         String.format(NOT_FOUND_ID_D, idToFind), idToFind);
                 return;
             }
-            final String itemJson = JsonUtils.toJson(itemWithId.get());
-            sendResponse(exchange, StatusCodes.OK, itemJson);
+            final Versioned<Item> item = itemWithId.get();
+            if (notModified(exchange, recordETag(idToFind, item.version(), Codecs.response(exchange)))) {
+                return;
+            }
+            if (Codecs.response(exchange) != Codec.JSON) {
+                send(exchange, StatusCodes.OK, item.value());
+                return;
+            }
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, Codec.JSON.mediaType());
+            sendResponse(exchange, StatusCodes.OK, responses.encode(idToFind, item.version(), item.value()));
         }, logger);
     }
 
@@ -153,49 +298,57 @@ public class ItemHandler {
      * @param exchange the HTTP exchange containing request and response data
      */
     public void createItem(HttpServerExchange exchange) {
-        async(exchange, () -> {
-            exchange.getRequestReceiver().receiveFullBytes((ex, data) -> {
-                parseRequest(data, Item.class).ifPresentOrElse(item -> {
-                    if (item.name() == null || item.name().isBlank()) {
-                        sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_REQUIRED_FIELD_NAME);
-                        return;
-                    }
-                    itemService.createItem(item).ifPresentOrElse(savedItem -> {
-                        String json = JsonUtils.toJson(savedItem);
-                        sendResponse(ex, StatusCodes.CREATED, json);
-                    }, () -> sendErrorResponse(ex, StatusCodes.INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR));
+        receiveBody(exchange, executor, (ex, data) -> {
+            parseRequest(ex, data, Item.class).ifPresentOrElse(item -> {
+                if (item.name() == null || item.name().isBlank()) {
+                    sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_REQUIRED_FIELD_NAME);
+                    return;
+                }
+                itemService.createItem(item).ifPresentOrElse(savedItem -> {
+                    send(ex, StatusCodes.CREATED, savedItem);
+                }, () -> sendErrorResponse(ex, StatusCodes.INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR));
 
-                }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST));
-            });
+            }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST));
         }, logger);
     }
 
     /**
      * Deletes an item by its ID from the path or query parameter.
+     * With an {@code If-Match} header the item is only deleted if it still has that ETag.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns the deleted item ID as JSON.</li>
      *   <li>400 Bad Request – If the ID is missing or invalid.</li>
      *   <li>404 Not Found – If no item exists with the given ID.</li>
+     *   <li>412 Precondition Failed – If {@code If-Match} does not match the current version.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void deleteItem(HttpServerExchange exchange) {
-        async(exchange, ()->{
+        async(exchange, executor, ()->{
                 OptionalLong idOpt = parseIdFromRequest(exchange);
                 idOpt.ifPresentOrElse(id -> {
                     if (logger.getLevel() == Level.FINE) {
                         logger.fine(String.format(DELETING_WITH_ID, id));
                     }
-                    boolean deleted = itemService.deleteItem(id);
-                    if (deleted) {
-                        sendResponse(exchange, StatusCodes.OK, JsonUtils.toJson(Response.success(id)));
-                    } else {
-                        sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
-                                String.format(NOT_FOUND_ID_D, id), id);
+                    OptionalLong expectedVersion = ifMatchVersion(exchange, id);
+                    if (expectedVersion.isEmpty()) {
+                        sendPreconditionFailed(exchange, id);
+                        return;
+                    }
+                    try {
+                        boolean deleted = itemService.deleteItem(id, expectedVersion.getAsLong());
+                        if (deleted) {
+                            send(exchange, StatusCodes.OK, Response.success(id));
+                        } else {
+                            sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
+                                    String.format(NOT_FOUND_ID_D, id), id);
+                        }
+                    } catch (VersionConflictException e) {
+                        sendVersionConflict(exchange, e);
                     }
                 }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
         },logger);
@@ -203,32 +356,92 @@ public class ItemHandler {
 
     /**
      * Updates an existing item by its ID using the JSON request body.
+     * With an {@code If-Match} header the update is only applied if the item still has that ETag,
+     * so concurrent clients cannot overwrite each other's changes. The response carries the new ETag.
      * <p>
      * Responses:
      * <ul>
      *   <li>200 OK – Returns the updated item object as JSON.</li>
      *   <li>400 Bad Request – If the ID is missing/invalid or request body is invalid.</li>
      *   <li>404 Not Found – If no item exists with the given ID.</li>
+     *   <li>412 Precondition Failed – If {@code If-Match} does not match the current version.</li>
      *   <li>500 Internal Server Error – For unexpected errors.</li>
      * </ul>
      *
      * @param exchange the HTTP exchange containing request and response data
      */
     public void updateItem(HttpServerExchange exchange) {
-        async(exchange, ()->{
-            exchange.getRequestReceiver().receiveFullBytes((ex, data) -> {
-                    OptionalLong idOpt = parseIdFromRequest(exchange);
-                    idOpt.ifPresentOrElse(id -> {
-                        parseRequestForUpdate(data, ItemUpdateRequest.class).ifPresentOrElse(itemUpdateRequest -> {
-                            itemService.updateItem(id, itemUpdateRequest)
-                                    .ifPresentOrElse(savedItem -> {
-                                        sendResponse(exchange, StatusCodes.OK, JsonUtils.toJson(savedItem));
-                                    }, () -> sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
-                                            String.format(NOT_FOUND_ID_D, id), id));
-                        }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_OR_MISSING_REQUEST_BODY));
-                    }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
-            });
-        },logger);
+        receiveBody(exchange, executor, (ex, data) -> {
+            OptionalLong idOpt = parseIdFromRequest(exchange);
+            idOpt.ifPresentOrElse(id -> {
+                OptionalLong expectedVersion = ifMatchVersion(exchange, id);
+                if (expectedVersion.isEmpty()) {
+                    sendPreconditionFailed(exchange, id);
+                    return;
+                }
+                parseRequestForUpdate(exchange, data, ItemUpdateRequest.class).ifPresentOrElse(itemUpdateRequest -> {
+                    try {
+                        itemService.updateItem(id, itemUpdateRequest, expectedVersion.getAsLong())
+                                .ifPresentOrElse(savedItem -> {
+                                    setETag(exchange, recordETag(id, savedItem.version(), Codecs.response(exchange)));
+                                    send(exchange, StatusCodes.OK, savedItem.value());
+                                }, () -> sendErrorResponse(exchange, StatusCodes.NOT_FOUND,
+                                        String.format(NOT_FOUND_ID_D, id), id));
+                    } catch (VersionConflictException e) {
+                        sendVersionConflict(exchange, e);
+                    }
+                }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, INVALID_OR_MISSING_REQUEST_BODY));
+            }, () -> sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, MISSING_OR_INVALID_ID));
+        }, logger);
+    }
+
+    /**
+     * Applies a bulk request of create, update and delete operations on items.
+     * The body is either a JSON array or newline delimited JSON (NDJSON) of operations such as
+     * {@code {"op":"create","data":{...}}}, {@code {"op":"update","id":7,"data":{...}}} or
+     * {@code {"op":"delete","id":7}}. It is parsed while it is read, so large bodies are never held
+     * in memory, and all operations are applied as one batch with a single commit wait.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the summary and the result of each operation, in request order.</li>
+     *   <li>400 Bad Request – If the body cannot be read as JSON.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     * Malformed JSON after the first operations stops the run; the operations before it are kept
+     * and the failure is reported as the last result.
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void bulkItems(HttpServerExchange exchange) {
+        async(exchange, executor, () -> {
+            exchange.startBlocking();
+            try (MappingIterator<BulkOperation> operations =
+                         Codecs.request(exchange).readValues(exchange.getInputStream(), BulkOperation.class)) {
+                BulkResponse response = itemService.applyBulk(operations);
+                send(exchange, StatusCodes.OK, response);
+            } catch (IOException e) {
+                sendErrorResponse(exchange, StatusCodes.BAD_REQUEST, BAD_FORMAT_IN_REQUEST);
+            }
+        }, logger);
     }
 
+    /**
+     * Imports items from a JSON array or NDJSON body of any size, e.g. a full catalogue.
+     * Unlike {@link #createItem(HttpServerExchange)}, the body is never held in memory: it is parsed
+     * while it arrives and saved in batches of {@link RecordImporter#DEFAULT_BATCH_SIZE}, reading is paused
+     * while a batch is written. Invalid items are reported and skipped.
+     * <p>
+     * Responses:
+     * <ul>
+     *   <li>200 OK – Returns the import summary with the first failed items by position.</li>
+     *   <li>400 Bad Request – If the body is malformed; items before the error are kept and counted.</li>
+     *   <li>500 Internal Server Error – For unexpected errors.</li>
+     * </ul>
+     *
+     * @param exchange the HTTP exchange containing request and response data
+     */
+    public void importItems(HttpServerExchange exchange) {
+        RecordImporter.start(exchange, executor, Item.class, RecordImporter.DEFAULT_BATCH_SIZE, itemService::importItems, logger);
+    }
 }
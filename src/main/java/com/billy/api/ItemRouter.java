@@ -10,6 +10,8 @@ public class ItemRouter {
     public static void register(RoutingHandler router, ItemHandler itemHandler) {
         router.get(BASE_ITEMS, itemHandler::getAllItems);
         router.post(BASE_ITEMS, itemHandler::createItem);
+        router.post(BASE_ITEMS + "/_bulk", itemHandler::bulkItems);
+        router.post(BASE_ITEMS + "/_import", itemHandler::importItems);
         router.get(BASE_ITEMS + "/{id}", itemHandler::getItemById);
         router.add(Methods.PATCH, BASE_ITEMS + "/{id}", itemHandler::updateItem);
         router.delete(BASE_ITEMS + "/{id}", itemHandler::deleteItem);
@@ -3,18 +3,45 @@ package com.billy.app;
 public class AppConstants {
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String APPLICATION_JSON = "application/json";
+    public static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
 
     public static final String PATH = "/";
     public static final String COMMIT_SCHEDULER = "CommitScheduler";
+    public static final String MAINTENANCE_THREAD = "Maintenance";
 
-    public static final int DELAY = 10_000_000;
     public static final int PERIOD = 10_000_000;
     public static final String CONFIG_PROPERTIES = "config.properties";
     public static final String SERVER_HOST = "server.host";
     public static final String SERVER_PORT = "server.port";
     public static final String DB_FILE_NAME = "db.file";
+    public static final String DB_COMMIT_MODE = "db.commit.mode";
+    public static final String DB_COMMIT_MAX_BATCH = "db.commit.maxBatch";
+    public static final String DB_COMMIT_MAX_DELAY_MICROS = "db.commit.maxDelayMicros";
+    public static final String DB_COMMIT_PERIOD_MS = "db.commit.periodMs";
+    public static final String DB_MAX_CONCURRENCY = "db.maxConcurrency";
+    public static final String DB_SHARDS = "db.shards";
+    public static final String DB_MMAP = "db.mmap";
+    public static final String DB_ALLOCATE_START_BYTES = "db.allocate.startBytes";
+    public static final String DB_ALLOCATE_INCREMENT_BYTES = "db.allocate.incrementBytes";
+    public static final String DB_COMPACT_GROWTH_RATIO = "db.compact.growthRatio";
+    public static final String DB_COMPACT_MIN_BYTES = "db.compact.minBytes";
+    public static final String DB_COMPACT_BYTES_PER_SECOND = "db.compact.bytesPerSecond";
+    public static final String DB_COMPACT_MAX_PAUSE_MS = "db.compact.maxPauseMs";
+    public static final String DB_COMPACT_CHECK_PERIOD_MS = "db.compact.checkPeriodMs";
+    public static final String DB_SNAPSHOT_DIR = "db.snapshot.dir";
+    public static final String CUSTOMERS = "customers";
+    public static final String ITEMS = "items";
+    public static final String SERVER_EXECUTION = "server.execution";
+    public static final String CACHE_CUSTOMERS_MAX_BYTES = "cache.customers.maxBytes";
+    public static final String CACHE_ITEMS_MAX_BYTES = "cache.items.maxBytes";
+    public static final String CACHE_RESPONSES_MAX_BYTES = "cache.responses.maxBytes";
+    public static final String SERVER_COMPRESSION_LEVEL = "server.compression.level";
+    public static final String SERVER_COMPRESSION_MIN_BYTES = "server.compression.minBytes";
 
     public static final int MAX_REQUEST_LEN = 1_000_000;
 
+    public static final int DEFAULT_PAGE_LIMIT = 100;
+    public static final int MAX_PAGE_LIMIT = 1_000;
+
     public static final int WORKER_THREADS = 200;
 }
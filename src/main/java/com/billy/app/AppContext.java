@@ -1,32 +1,78 @@
 package com.billy.app;
 
+import com.billy.api.AdminHandler;
+import com.billy.api.AdminRouter;
 import com.billy.api.CustomerHandler;
 import com.billy.api.CustomerRouter;
 import com.billy.api.ItemHandler;
 import com.billy.api.ItemRouter;
+import com.billy.common.Compression;
+import com.billy.common.ConcurrencyLimiter;
+import com.billy.common.Metrics;
+import com.billy.common.RequestGate;
+import com.billy.common.ResponseCache;
+import com.billy.database.CommitMode;
+import com.billy.database.CommitPolicy;
+import com.billy.database.Compaction;
+import com.billy.database.CompactionPolicy;
 import com.billy.database.CustomerDAO;
+import com.billy.database.CustomerSerializer;
 import com.billy.database.ItemDAO;
+import com.billy.database.ItemSerializer;
 import com.billy.database.MapDbWrapper;
+import com.billy.database.Quiescer;
+import com.billy.database.Shards;
+import com.billy.database.SnapshotTable;
+import com.billy.database.Snapshots;
+import com.billy.database.StoreOptions;
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import com.billy.objects.SnapshotReport;
 import com.billy.service.CustomerService;
 import com.billy.service.ItemService;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.RoutingHandler;
-import io.undertow.server.handlers.SetHeaderHandler;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static com.billy.app.AppConstants.APPLICATION_JSON;
+import static com.billy.app.AppConstants.CACHE_CUSTOMERS_MAX_BYTES;
+import static com.billy.app.AppConstants.CACHE_ITEMS_MAX_BYTES;
+import static com.billy.app.AppConstants.CACHE_RESPONSES_MAX_BYTES;
 import static com.billy.app.AppConstants.COMMIT_SCHEDULER;
-import static com.billy.app.AppConstants.CONTENT_TYPE;
+import static com.billy.app.AppConstants.CUSTOMERS;
+import static com.billy.app.AppConstants.DB_ALLOCATE_INCREMENT_BYTES;
+import static com.billy.app.AppConstants.DB_ALLOCATE_START_BYTES;
+import static com.billy.app.AppConstants.DB_COMMIT_MAX_BATCH;
+import static com.billy.app.AppConstants.DB_COMMIT_MAX_DELAY_MICROS;
+import static com.billy.app.AppConstants.DB_COMMIT_MODE;
+import static com.billy.app.AppConstants.DB_COMMIT_PERIOD_MS;
+import static com.billy.app.AppConstants.DB_COMPACT_BYTES_PER_SECOND;
+import static com.billy.app.AppConstants.DB_COMPACT_CHECK_PERIOD_MS;
+import static com.billy.app.AppConstants.DB_COMPACT_GROWTH_RATIO;
+import static com.billy.app.AppConstants.DB_COMPACT_MAX_PAUSE_MS;
+import static com.billy.app.AppConstants.DB_COMPACT_MIN_BYTES;
 import static com.billy.app.AppConstants.DB_FILE_NAME;
-import static com.billy.app.AppConstants.DELAY;
+import static com.billy.app.AppConstants.DB_MAX_CONCURRENCY;
+import static com.billy.app.AppConstants.DB_MMAP;
+import static com.billy.app.AppConstants.DB_SHARDS;
+import static com.billy.app.AppConstants.DB_SNAPSHOT_DIR;
+import static com.billy.app.AppConstants.ITEMS;
+import static com.billy.app.AppConstants.MAINTENANCE_THREAD;
 import static com.billy.app.AppConstants.PERIOD;
+import static com.billy.app.AppConstants.SERVER_COMPRESSION_LEVEL;
+import static com.billy.app.AppConstants.SERVER_COMPRESSION_MIN_BYTES;
+import static com.billy.app.AppConstants.SERVER_EXECUTION;
 import static com.billy.app.AppConstants.SERVER_HOST;
 import static com.billy.app.AppConstants.SERVER_PORT;
 import static com.billy.app.AppConstants.WORKER_THREADS;
@@ -34,10 +80,11 @@ import static com.billy.app.AppConstants.WORKER_THREADS;
 
 public class AppContext {
     private static final Logger logger = Logger.getLogger(AppContext.class.getName());
+    private static final long MAINTENANCE_SHUTDOWN_SECONDS = 10;
 
     // Configuration and DB
     private final Config config;
-    private final MapDbWrapper dbWrapper;
+    private final List<Store> stores = new ArrayList<>();
 
     // Persistence layer
     private final CustomerDAO customerDAO;
@@ -50,13 +97,49 @@ public class AppContext {
     // HTTP handlers
     private final CustomerHandler customerHandler;
     private final ItemHandler itemHandler;
+    private final AdminHandler adminHandler;
+    private final Metrics metrics;
+    private final RequestGate requestGate;
+    private final Compaction compaction;
+    private final Snapshots snapshots;
 
     // Routing and scheduling
     private final RoutingHandler routingHandler;
     private final ScheduledExecutorService scheduler;
+    private final ScheduledExecutorService maintenance;
+    private final ExecutionMode executionMode;
+    private final ExecutorService handlerExecutor;
 
     private Undertow server;
 
+    /**
+     * Settings of one MapDB store, read from the {@code db.*} keys of an entity's {@link Config#section(String)}.
+     */
+    private record StoreConfig(String file, int shards, CommitPolicy commitPolicy, StoreOptions options,
+                               long commitPeriodMs) {
+        static StoreConfig of(Config config) {
+            String file = config.get(DB_FILE_NAME);
+            if (file == null || file.isBlank()) {
+                throw new IllegalArgumentException("DB file name is missing in configuration");
+            }
+            return new StoreConfig(
+                    Path.of(file).toAbsolutePath().normalize().toString(),
+                    config.getInt(DB_SHARDS, 1),
+                    new CommitPolicy(
+                            CommitMode.fromConfig(config.get(DB_COMMIT_MODE)),
+                            config.getInt(DB_COMMIT_MAX_BATCH, CommitPolicy.DEFAULT_MAX_BATCH),
+                            config.getLong(DB_COMMIT_MAX_DELAY_MICROS, CommitPolicy.DEFAULT_MAX_DELAY_MICROS)),
+                    new StoreOptions(
+                            Boolean.parseBoolean(config.getOrDefault(DB_MMAP, "true").trim()),
+                            config.getLong(DB_ALLOCATE_START_BYTES, 0),
+                            config.getLong(DB_ALLOCATE_INCREMENT_BYTES, 0)),
+                    config.getLong(DB_COMMIT_PERIOD_MS, PERIOD));
+        }
+    }
+
+    private record Store(StoreConfig config, Shards shards) {
+    }
+
     /**
      * Constructs the application context and wires all dependencies.
      *
@@ -64,22 +147,55 @@ public class AppContext {
      */
     public AppContext(Config config) {
         this.config = config;
-        String dbFileName = config.get(DB_FILE_NAME);
-        if (dbFileName == null || dbFileName.isBlank()) {
-            throw new IllegalArgumentException("DB file name is missing in configuration");
-        }
-        this.dbWrapper = new MapDbWrapper(dbFileName);
-        this.customerDAO = new CustomerDAO(dbWrapper);
-        this.itemDAO = new ItemDAO(dbWrapper);
-        this.customerService = new CustomerService(customerDAO);
-        this.itemService = new ItemService(itemDAO);
-        this.customerHandler = new CustomerHandler(customerService);
-        this.itemHandler = new ItemHandler(itemService);
+        Shards customerShards = openStore(config, stores, CUSTOMERS);
+        Shards itemShards = openStore(config, stores, ITEMS);
+        this.customerDAO = new CustomerDAO(customerShards, config.getLong(CACHE_CUSTOMERS_MAX_BYTES, 0));
+        this.itemDAO = new ItemDAO(itemShards, config.getLong(CACHE_ITEMS_MAX_BYTES, 0));
+        int maxConcurrency = config.getInt(DB_MAX_CONCURRENCY, 0);
+        ConcurrencyLimiter limiter = maxConcurrency > 0
+                ? ConcurrencyLimiter.of(maxConcurrency)
+                : ConcurrencyLimiter.unlimited();
+        this.customerService = new CustomerService(customerDAO, limiter);
+        this.itemService = new ItemService(itemDAO, limiter);
+        this.executionMode = ExecutionMode.fromConfig(config.get(SERVER_EXECUTION));
+        this.handlerExecutor = executionMode == ExecutionMode.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : null;
+        long responseCacheBytes = config.getLong(CACHE_RESPONSES_MAX_BYTES, 0);
+        ResponseCache<Customer> customerResponses = new ResponseCache<>(responseCacheBytes);
+        ResponseCache<Item> itemResponses = new ResponseCache<>(responseCacheBytes);
+        customerService.onChange(customerResponses::invalidate);
+        itemService.onChange(itemResponses::invalidate);
+        this.customerHandler = new CustomerHandler(customerService, customerResponses, handlerExecutor);
+        this.itemHandler = new ItemHandler(itemService, itemResponses, handlerExecutor);
+        this.metrics = new Metrics();
+        stores.forEach(store -> store.shards().all().forEach(shard -> shard.onCommit(metrics::recordCommit)));
+        this.requestGate = new RequestGate();
+        CompactionPolicy compactionPolicy = new CompactionPolicy(
+                config.getDouble(DB_COMPACT_GROWTH_RATIO, CompactionPolicy.DEFAULT_GROWTH_RATIO),
+                config.getLong(DB_COMPACT_MIN_BYTES, CompactionPolicy.DEFAULT_MIN_BYTES),
+                config.getLong(DB_COMPACT_BYTES_PER_SECOND, CompactionPolicy.DEFAULT_BYTES_PER_SECOND),
+                config.getLong(DB_COMPACT_MAX_PAUSE_MS, CompactionPolicy.DEFAULT_MAX_PAUSE_MILLIS));
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName(MAINTENANCE_THREAD);
+            return t;
+        });
+        this.compaction = new Compaction(
+                stores.stream().flatMap(store -> store.shards().all().stream()).toList(),
+                compactionPolicy, () -> requestGate.pause(compactionPolicy.maxPauseMillis()), maintenance);
+        this.snapshots = new Snapshots(snapshotDirectory(config), snapshotTables(customerShards, itemShards),
+                compactionPolicy.bytesPerSecond(), () -> requestGate.pauseWrites(compactionPolicy.maxPauseMillis()),
+                maintenance);
+        this.adminHandler = new AdminHandler(customerService, itemService, metrics, compaction, snapshots,
+                handlerExecutor);
         this.routingHandler = Handlers.routing();
         CustomerRouter.register(routingHandler, customerHandler);
         ItemRouter.register(routingHandler, itemHandler);
+        AdminRouter.register(routingHandler, adminHandler);
 
-        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        this.scheduler = Executors.newScheduledThreadPool(stores.size(), r -> {
             Thread t = new Thread(r);
             t.setDaemon(true);
             t.setName(COMMIT_SCHEDULER);
@@ -88,12 +204,87 @@ public class AppContext {
     }
 
     /**
-     * Starts Undertow and the scheduled MapDB commit task.
+     * Opens the MapDB store of an entity, configured by the {@code db.<entity>.*} keys with the {@code db.*}
+     * keys as defaults. Entities configured with the same file share its store, so by default there is one;
+     * with separate files each entity gets its own commits, so a burst of writes to one does not wait on
+     * the commits of the other.
+     *
+     * @param config the application configuration
+     * @param stores the stores opened so far, to which a new one is added
+     * @param entity the section name of the entity, e.g. {@code items}
+     * @return the shards of the entity's store
      */
-    public void start() {
+    private static Shards openStore(Config config, List<Store> stores, String entity) {
+        StoreConfig storeConfig = StoreConfig.of(config.section(entity));
+        for (Store store : stores) {
+            if (store.config().file().equals(storeConfig.file())) {
+                if (!store.config().equals(storeConfig)) {
+                    throw new IllegalArgumentException("Entities sharing " + storeConfig.file()
+                            + " must use the same store settings");
+                }
+                return store.shards();
+            }
+        }
+        Shards shards = Shards.open(storeConfig.file(), storeConfig.shards(), storeConfig.commitPolicy(),
+                storeConfig.options());
+        stores.add(new Store(storeConfig, shards));
+        return shards;
+    }
 
-        HttpHandler handler =
-                new SetHeaderHandler(routingHandler, CONTENT_TYPE, APPLICATION_JSON);
+    private static Path snapshotDirectory(Config config) {
+        return Path.of(config.getOrDefault(DB_SNAPSHOT_DIR, Snapshots.DEFAULT_DIRECTORY)).toAbsolutePath().normalize();
+    }
+
+    private static List<SnapshotTable<?>> snapshotTables(Shards customerShards, Shards itemShards) {
+        return List.of(
+                new SnapshotTable<>(CUSTOMERS, customerShards, CustomerDAO.TABLE_NAME, CustomerDAO.SEQUENCE_NAME,
+                        new CustomerSerializer()),
+                new SnapshotTable<>(ITEMS, itemShards, ItemDAO.TABLE_NAME, ItemDAO.SEQUENCE_NAME, new ItemSerializer()));
+    }
+
+    /**
+     * Loads a snapshot taken with {@code POST /admin/snapshot} into the stores configured by {@code config},
+     * which must not hold any customers or items yet, then closes them. The server is started afterwards as usual;
+     * the DAOs rebuild the indexes when they open the restored tables.
+     *
+     * @param config   application configuration source
+     * @param snapshot the snapshot file
+     * @return the records restored
+     * @throws IOException if the file is not a snapshot or is corrupted; the stores are left empty then
+     */
+    public static SnapshotReport restore(Config config, Path snapshot) throws IOException {
+        List<Store> stores = new ArrayList<>();
+        try {
+            Shards customerShards = openStore(config, stores, CUSTOMERS);
+            Shards itemShards = openStore(config, stores, ITEMS);
+            return Snapshots.restore(snapshot, snapshotTables(customerShards, itemShards));
+        } finally {
+            stores.forEach(store -> store.shards().close());
+        }
+    }
+
+    /**
+     * Starts Undertow and, in {@link CommitMode#ASYNC} mode, the scheduled MapDB commit task of every shard
+     * of every store, on a scheduler with a thread per store, the shards of a store staggered over the period so they
+     * do not flush at the same time.
+     * In {@link ExecutionMode#VIRTUAL} mode handler tasks run on virtual threads instead of the worker pool.
+     * Responses are compressed as negotiated by {@link Compression} unless the level is 0; their
+     * {@code Content-Type} is set per response from the codec negotiated by {@link com.billy.common.Codecs}.
+     * Every request, compression included, is recorded by {@link Metrics}, exposed at {@code GET /metrics}.
+     * Requests pass a {@link RequestGate} that holds them while a {@link Compaction} swaps a file, and holds only
+     * the writes while {@link Snapshots} catch up; files that
+     * grew past {@code db.compact.growthRatio} are compacted by a check every {@code db.compact.checkPeriodMs}.
+     * Compactions and {@link Snapshots} run one after the other on a single maintenance thread; snapshot downloads
+     * only read files, so they bypass the gate and a long download does not hold up a pause.
+     */
+    public void start() {
+        HttpHandler handler = requestGate.handler(routingHandler, AdminRouter::isSnapshotDownload);
+        int compressionLevel = config.getInt(SERVER_COMPRESSION_LEVEL, Compression.DEFAULT_LEVEL);
+        if (compressionLevel > 0) {
+            handler = Compression.handler(handler, compressionLevel,
+                    config.getLong(SERVER_COMPRESSION_MIN_BYTES, Compression.DEFAULT_MIN_BYTES));
+        }
+        handler = metrics.handler(handler);
         String host = config.get(SERVER_HOST);
         int port = config.getInt(SERVER_PORT);
         this.server = Undertow.builder()
@@ -104,13 +295,36 @@ public class AppContext {
                 .build();
         server.start();
         logger.log(Level.INFO, String.format("Undertow started at http://%s:%d%n", host, port));
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                dbWrapper.commit();
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Commit failed", e);
+        for (Store store : stores) {
+            StoreConfig storeConfig = store.config();
+            Shards shards = store.shards();
+            if (storeConfig.commitPolicy().mode() == CommitMode.ASYNC) {
+                long period = storeConfig.commitPeriodMs();
+                for (int i = 0; i < shards.count(); i++) {
+                    MapDbWrapper shard = shards.shard(i);
+                    scheduler.scheduleAtFixedRate(() -> {
+                        try {
+                            shard.commit();
+                        } catch (Exception e) {
+                            logger.log(Level.SEVERE, "Commit failed", e);
+                        }
+                    }, period + period * i / shards.count(), period, TimeUnit.MILLISECONDS);
+                }
             }
-        }, DELAY, PERIOD, TimeUnit.MILLISECONDS);
+            logger.log(Level.INFO, String.format("MapDB store %s: commit mode %s, shards: %d, %s",
+                    storeConfig.file(), storeConfig.commitPolicy(), shards.count(), storeConfig.options()));
+        }
+        long compactCheckPeriod = config.getLong(DB_COMPACT_CHECK_PERIOD_MS, 0);
+        if (compactCheckPeriod > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    compaction.startIfDue();
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Compaction check failed", e);
+                }
+            }, compactCheckPeriod, compactCheckPeriod, TimeUnit.MILLISECONDS);
+        }
+        logger.log(Level.INFO, "Handler execution mode: " + executionMode);
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
     }
 
@@ -124,9 +338,20 @@ public class AppContext {
             }
 
             scheduler.shutdownNow();
-            if (!dbWrapper.db().isClosed()) {
-                dbWrapper.commit();
-                dbWrapper.close();
+            maintenance.shutdownNow();
+            if (!maintenance.awaitTermination(MAINTENANCE_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                logger.log(Level.WARNING, "Maintenance task still running at shutdown");
+            }
+            if (handlerExecutor != null) {
+                handlerExecutor.shutdown();
+            }
+            for (Store store : stores) {
+                for (MapDbWrapper shard : store.shards().all()) {
+                    if (!shard.db().isClosed()) {
+                        shard.commit();
+                        shard.close();
+                    }
+                }
             }
 
             logger.log(Level.INFO, "MapDB committed and closed. Server stopped.");
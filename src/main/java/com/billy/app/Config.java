@@ -18,6 +18,33 @@ public class Config {
         }
     }
 
+    /**
+     * Uses the given properties, e.g. the packaged ones with some keys overridden by a tool.
+     */
+    public Config(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the settings of one section, e.g. an entity: every key with the section name after its first
+     * segment overrides the key without it, so for section {@code items} {@code db.items.file} is read as
+     * {@code db.file}. Keys not set for the section keep their shared value.
+     *
+     * @param name the section name
+     * @return a view of this configuration with the section's overrides applied
+     */
+    public Config section(String name) {
+        Properties scoped = new Properties(properties);
+        String infix = "." + name + ".";
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot > 0 && key.startsWith(infix, dot)) {
+                scoped.setProperty(key.substring(0, dot + 1) + key.substring(dot + infix.length()), properties.getProperty(key));
+            }
+        }
+        return new Config(scoped);
+    }
+
     public String get(String key) {
         return properties.getProperty(key);
     }
@@ -29,4 +56,19 @@ public class Config {
     public int getInt(String key) {
         return Integer.parseInt(properties.getProperty(key));
     }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
+    }
 }
\ No newline at end of file
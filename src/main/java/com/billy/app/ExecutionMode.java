@@ -0,0 +1,29 @@
+package com.billy.app;
+
+import java.util.Locale;
+
+/**
+ * Threads that run the blocking part of request handlers.
+ * <ul>
+ *   <li>{@link #WORKER} – Undertow's fixed worker pool of {@link AppConstants#WORKER_THREADS} platform threads.</li>
+ *   <li>{@link #VIRTUAL} – one virtual thread per request, so a handler blocked on a MapDB page fault
+ *   does not hold a platform thread.</li>
+ * </ul>
+ */
+public enum ExecutionMode {
+    WORKER,
+    VIRTUAL;
+
+    /**
+     * Parses a mode name as written in config.properties, e.g. {@code virtual}.
+     *
+     * @param value the configured value, may be null
+     * @return the matching mode, or {@link #WORKER} if no value is configured
+     */
+    public static ExecutionMode fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return WORKER;
+        }
+        return ExecutionMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,18 +1,27 @@
 package com.billy.app;
 
+import com.billy.objects.SnapshotReport;
+
+import java.nio.file.Path;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.billy.app.AppConstants.CONFIG_PROPERTIES;
 
 public class UndertowApp {
+    static final String RESTORE = "--restore";
 
     private static final Logger logger = Logger.getLogger(UndertowApp.class.getName());
 
     public static void main(String[] args) {
         try {
-            logger.info("Starting Undertow application.");
             Config config = new Config(CONFIG_PROPERTIES);
+            if (args.length == 2 && RESTORE.equals(args[0])) {
+                SnapshotReport report = AppContext.restore(config, Path.of(args[1]));
+                logger.info(String.format("Restored %d records from %s.", report.records(), args[1]));
+                return;
+            }
+            logger.info("Starting Undertow application.");
             AppContext ctx = new AppContext(config);
             ctx.start();
             logger.info("Undertow application started successfully.");
@@ -0,0 +1,178 @@
+package com.billy.common;
+
+import com.billy.factory.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A wire format of request and response bodies: a media type and the Jackson mapper reading and writing it.
+ * All codecs share the application mapper settings, so records look the same in every format.
+ * <p>
+ * {@link #NDJSON} and {@link #CSV} are record formats: they only frame sequences of records, one per line,
+ * and are offered by the streaming list endpoints but never chosen for single documents.
+ */
+public class Codec {
+    public static final Codec JSON = new Codec("application/json", ObjectMapperFactory.get());
+    public static final Codec CBOR = new Codec("application/cbor", ObjectMapperFactory.create(new CBORFactory()));
+    public static final Codec SMILE = new Codec("application/x-jackson-smile", ObjectMapperFactory.create(new SmileFactory()));
+    public static final Codec MSGPACK = new Codec("application/msgpack", ObjectMapperFactory.create(new MessagePackFactory()));
+    public static final Codec NDJSON = new NdjsonCodec();
+    public static final Codec CSV = new CsvCodec();
+
+    private final String mediaType;
+    private final ObjectMapper mapper;
+    private final boolean recordsOnly;
+    protected final ObjectWriter streamWriter;
+
+    /**
+     * @param mediaType the media type matched against {@code Accept} and {@code Content-Type}
+     * @param mapper    reads and writes the format
+     */
+    public Codec(String mediaType, ObjectMapper mapper) {
+        this(mediaType, mapper, false);
+    }
+
+    /**
+     * @param recordsOnly true if the format can only frame record sequences, see {@link #recordsOnly()}
+     */
+    protected Codec(String mediaType, ObjectMapper mapper, boolean recordsOnly) {
+        this.mediaType = mediaType;
+        this.mapper = mapper;
+        this.recordsOnly = recordsOnly;
+        this.streamWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Distinguishes the entity tags of this format's representations from those of other formats,
+     * e.g. {@code ".cbor"} or {@code ".smile"}: the last word of the media subtype after a dot, and
+     * nothing for JSON, so JSON tags stay as they were.
+     */
+    public String tagSuffix() {
+        if (this == JSON) {
+            return "";
+        }
+        String subtype = mediaType.substring(mediaType.indexOf('/') + 1);
+        return "." + subtype.substring(subtype.lastIndexOf('-') + 1);
+    }
+
+    /**
+     * @return true if the format is only negotiated for streamed record lists, not for single documents
+     */
+    public boolean recordsOnly() {
+        return recordsOnly;
+    }
+
+    public <T> T read(byte[] bytes, Class<T> clazz) throws IOException {
+        return mapper.readValue(bytes, clazz);
+    }
+
+    public byte[] write(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + mediaType, e);
+        }
+    }
+
+    /**
+     * Opens a lazy reader over a stream of values, given as an array or as consecutive root values.
+     */
+    public <T> MappingIterator<T> readValues(InputStream input, Class<T> clazz) throws IOException {
+        return mapper.readerFor(clazz).readValues(input);
+    }
+
+    /**
+     * Opens a writer framing the values written to it as one array. Values are not flushed one by one.
+     */
+    public SequenceWriter writeArray(OutputStream out) throws IOException {
+        return streamWriter.writeValuesAsArray(out);
+    }
+
+    /**
+     * Opens a writer framing a sequence of records of one type, an array unless the format frames records itself.
+     *
+     * @param out  the stream to write to
+     * @param type the record type, e.g. to derive CSV columns
+     */
+    public SequenceWriter writeRecords(OutputStream out, Class<?> type) throws IOException {
+        return writeArray(out);
+    }
+
+    @Override
+    public String toString() {
+        return mediaType;
+    }
+
+    /**
+     * Newline delimited JSON: one record per line, every line ending with a newline.
+     */
+    private static final class NdjsonCodec extends Codec {
+        private NdjsonCodec() {
+            super("application/x-ndjson", ObjectMapperFactory.get(), true);
+        }
+
+        @Override
+        public SequenceWriter writeRecords(OutputStream out, Class<?> type) throws IOException {
+            // Jackson writes the separator between root values; the last line is terminated on close
+            return streamWriter.withRootValueSeparator("\n").writeValues(new FilterOutputStream(out) {
+                private boolean written;
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    written |= len > 0;
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    written = true;
+                    out.write(b);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (written) {
+                        out.write('\n');
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Comma separated values with a header row; the columns are the properties of the record type.
+     */
+    private static final class CsvCodec extends Codec {
+        private final CsvMapper csvMapper;
+
+        private CsvCodec() {
+            this(ObjectMapperFactory.configure(new CsvMapper()));
+        }
+
+        private CsvCodec(CsvMapper csvMapper) {
+            super("text/csv", csvMapper, true);
+            this.csvMapper = csvMapper;
+        }
+
+        @Override
+        public SequenceWriter writeRecords(OutputStream out, Class<?> type) throws IOException {
+            return streamWriter.with(csvMapper.schemaFor(type).withHeader()).writeValues(out);
+        }
+    }
+}
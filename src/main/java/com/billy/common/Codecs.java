@@ -0,0 +1,170 @@
+package com.billy.common;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the {@link Codec}s the API speaks and their negotiation.
+ * Request bodies are read with the codec of their {@code Content-Type} and responses are written with
+ * the best codec of the {@code Accept} header. JSON is the default whenever no registered codec matches,
+ * so clients that send neither header, or a generic one, keep getting JSON.
+ * Record formats such as NDJSON and CSV are only negotiated for streamed lists, see {@link #records(HttpServerExchange)}.
+ * Every response whose codec was negotiated carries {@code Vary: Accept}, so caches keep one copy per format.
+ */
+public final class Codecs {
+    private static final AttachmentKey<Codec> RESPONSE_CODEC = AttachmentKey.create(Codec.class);
+    private static final AttachmentKey<Codec> RECORDS_CODEC = AttachmentKey.create(Codec.class);
+    private static final List<Codec> CODECS = new CopyOnWriteArrayList<>(
+            List.of(Codec.JSON, Codec.CBOR, Codec.SMILE, Codec.MSGPACK, Codec.NDJSON, Codec.CSV));
+
+    private Codecs() {
+    }
+
+    /**
+     * Adds a codec, or replaces the registered one with the same media type.
+     */
+    public static void register(Codec codec) {
+        CODECS.removeIf(c -> c.mediaType().equals(codec.mediaType()));
+        CODECS.add(codec);
+    }
+
+    /**
+     * @return the codec of a {@code Content-Type} value, JSON if it is missing or not registered
+     */
+    public static Codec forContentType(String contentType) {
+        if (contentType == null) {
+            return Codec.JSON;
+        }
+        String mediaType = mediaType(contentType);
+        for (Codec codec : CODECS) {
+            if (codec.mediaType().equals(mediaType)) {
+                return codec;
+            }
+        }
+        return Codec.JSON;
+    }
+
+    /**
+     * Picks the codec of a single document for an {@code Accept} value: the highest quality wins,
+     * then the more specific range, then the earlier one. Wildcards resolve to JSON.
+     *
+     * @return the preferred registered codec, JSON if none is acceptable
+     */
+    public static Codec forAccept(String accept) {
+        return negotiate(accept, false);
+    }
+
+    /**
+     * Like {@link #forAccept(String)}, but also considers record formats such as NDJSON and CSV.
+     */
+    public static Codec forRecordsAccept(String accept) {
+        return negotiate(accept, true);
+    }
+
+    private static Codec negotiate(String accept, boolean records) {
+        if (accept == null || accept.isBlank()) {
+            return Codec.JSON;
+        }
+        Codec best = Codec.JSON;
+        double bestQuality = 0;
+        int bestSpecificity = -1;
+        for (String range : accept.split(",")) {
+            double quality = quality(range);
+            String mediaType = mediaType(range);
+            if (quality <= 0 || quality < bestQuality) {
+                continue;
+            }
+            Codec codec = null;
+            int specificity;
+            if (mediaType.equals("*") || mediaType.equals("*/*")) {
+                codec = Codec.JSON;
+                specificity = 0;
+            } else if (mediaType.endsWith("/*")) {
+                specificity = 1;
+                String type = mediaType.substring(0, mediaType.length() - 1);
+                codec = CODECS.stream()
+                        .filter(c -> (records || !c.recordsOnly()) && c.mediaType().startsWith(type))
+                        .findFirst().orElse(null);
+            } else {
+                specificity = 2;
+                for (Codec candidate : CODECS) {
+                    if ((records || !candidate.recordsOnly()) && candidate.mediaType().equals(mediaType)) {
+                        codec = candidate;
+                        break;
+                    }
+                }
+            }
+            if (codec != null && (quality > bestQuality || specificity > bestSpecificity)) {
+                best = codec;
+                bestQuality = quality;
+                bestSpecificity = specificity;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the codec for the request body of the exchange
+     */
+    public static Codec request(HttpServerExchange exchange) {
+        return forContentType(exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE));
+    }
+
+    /**
+     * @return the codec negotiated for the response of the exchange, resolved once per exchange
+     */
+    public static Codec response(HttpServerExchange exchange) {
+        Codec codec = exchange.getAttachment(RESPONSE_CODEC);
+        if (codec == null) {
+            codec = forAccept(exchange.getRequestHeaders().getFirst(Headers.ACCEPT));
+            exchange.putAttachment(RESPONSE_CODEC, codec);
+            varyOnAccept(exchange);
+        }
+        return codec;
+    }
+
+    /**
+     * @return the codec negotiated for a streamed list of records in the exchange, resolved once per exchange
+     */
+    public static Codec records(HttpServerExchange exchange) {
+        Codec codec = exchange.getAttachment(RECORDS_CODEC);
+        if (codec == null) {
+            codec = forRecordsAccept(exchange.getRequestHeaders().getFirst(Headers.ACCEPT));
+            exchange.putAttachment(RECORDS_CODEC, codec);
+            varyOnAccept(exchange);
+        }
+        return codec;
+    }
+
+    private static void varyOnAccept(HttpServerExchange exchange) {
+        HeaderValues vary = exchange.getResponseHeaders().get(Headers.VARY);
+        if (vary == null || !vary.contains(Headers.ACCEPT_STRING)) {
+            exchange.getResponseHeaders().add(Headers.VARY, Headers.ACCEPT_STRING);
+        }
+    }
+
+    private static String mediaType(String value) {
+        int params = value.indexOf(';');
+        return (params < 0 ? value : value.substring(0, params)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static double quality(String range) {
+        for (String param : range.split(";")) {
+            String p = param.trim();
+            if (p.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
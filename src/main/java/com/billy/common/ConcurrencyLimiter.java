@@ -0,0 +1,67 @@
+package com.billy.common;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many calls run at the same time. Callers over the limit wait for a permit,
+ * which is cheap on virtual threads, so the number of concurrent store accesses stays
+ * bounded even when every request has its own thread.
+ */
+public final class ConcurrencyLimiter {
+    private static final ConcurrencyLimiter UNLIMITED = new ConcurrencyLimiter(null);
+
+    private final Semaphore permits;
+
+    private ConcurrencyLimiter(Semaphore permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * @param maxConcurrent maximum number of calls running at once, must be positive
+     */
+    public static ConcurrencyLimiter of(int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be > 0");
+        }
+        return new ConcurrencyLimiter(new Semaphore(maxConcurrent));
+    }
+
+    /**
+     * A limiter that never waits.
+     */
+    public static ConcurrencyLimiter unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Runs the call once a permit is available.
+     *
+     * @param call the work to run
+     * @return the result of the call
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public <T> T call(Supplier<T> call) {
+        if (permits == null) {
+            return call.get();
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a permit", e);
+        }
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return the number of calls that could start now, or {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int availablePermits() {
+        return permits == null ? Integer.MAX_VALUE : permits.availablePermits();
+    }
+}
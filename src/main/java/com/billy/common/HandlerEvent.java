@@ -0,0 +1,61 @@
+package com.billy.common;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.PathTemplateMatch;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a handler task dispatched by {@link HandlerUtils#async}: it starts when the task leaves the
+ * executor queue and ends when the task returns, with the time spent waiting in the queue alongside.
+ * Nested {@code com.billy.DaoOperation} and {@code com.billy.Commit} events of the same thread
+ * show which part of the request went to the store; the rest is parsing, serialization and the handler.
+ */
+@Name(HandlerEvent.NAME)
+@Label("Handler Task")
+@Category({"Undertow App", "HTTP"})
+@Description("A request handler running on a worker or virtual thread")
+@StackTrace(false)
+@Threshold("1 ms")
+final class HandlerEvent extends Event {
+    static final String NAME = "com.billy.HandlerTask";
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Queued")
+    @Timespan(Timespan.NANOSECONDS)
+    long queued;
+
+    /**
+     * Ends the task and commits the event if it is enabled and over its threshold.
+     *
+     * @param exchange     the exchange the task handled
+     * @param dispatchedAt {@link System#nanoTime()} when the task was dispatched
+     * @param startedAt    {@link System#nanoTime()} when the task started
+     */
+    void finish(HttpServerExchange exchange, long dispatchedAt, long startedAt) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        PathTemplateMatch match = exchange.getAttachment(PathTemplateMatch.ATTACHMENT_KEY);
+        method = exchange.getRequestMethod().toString();
+        route = match == null ? exchange.getRelativePath() : match.getMatchedTemplate();
+        status = exchange.getStatusCode();
+        queued = startedAt - dispatchedAt;
+        commit();
+    }
+}
@@ -1,36 +1,70 @@
 package com.billy.common;
 
+import com.billy.database.VersionConflictException;
+import com.billy.objects.PageRequest;
 import com.billy.objects.Response;
+import com.billy.objects.Versioned;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.Headers;
 import io.undertow.util.PathTemplateMatch;
+import io.undertow.util.StatusCodes;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.billy.api.HandlersConstants.FAILED_TO_STREAM;
+import static com.billy.api.HandlersConstants.IF_MATCH_FAILED_ID_D;
 import static com.billy.api.HandlersConstants.INTERNAL_SERVER_ERROR;
+import static com.billy.app.AppConstants.DEFAULT_PAGE_LIMIT;
+import static com.billy.app.AppConstants.MAX_PAGE_LIMIT;
 
 public class HandlerUtils {
     public static final String ID = "id";
+    public static final String AFTER = "after";
+    public static final String LIMIT = "limit";
+
     public static void sendResponse(HttpServerExchange exchange, int status, String message) {
         exchange.setStatusCode(status);
         exchange.getResponseSender().send(message);
     }
 
+    public static void sendResponse(HttpServerExchange exchange, int status, ByteBuffer body) {
+        exchange.setStatusCode(status);
+        exchange.getResponseSender().send(body);
+    }
+
+    /**
+     * Sends a value encoded with the codec negotiated from the request's {@code Accept} header.
+     */
+    public static void send(HttpServerExchange exchange, int status, Object value) {
+        Codec codec = Codecs.response(exchange);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, codec.mediaType());
+        sendResponse(exchange, status, ByteBuffer.wrap(codec.write(value)));
+    }
+
     public static void sendErrorResponse(HttpServerExchange exchange, int statusCode, String message) {
-        sendResponse(exchange, statusCode, JsonUtils.toJson(Response.error(message)));
+        send(exchange, statusCode, Response.error(message));
     }
 
     public static void sendErrorResponse(HttpServerExchange exchange, int statusCode, String message, long id) {
-        sendResponse(exchange, statusCode, JsonUtils.toJson(Response.error(message, id)));
+        send(exchange, statusCode, Response.error(message, id));
     }
 
-    public  static <T> Optional<T> parseRequest(byte[] data, Class<T> clazz) {
+    /**
+     * Reads a request body with the codec of its {@code Content-Type}, JSON by default.
+     */
+    public static <T> Optional<T> parseRequest(HttpServerExchange exchange, byte[] data, Class<T> clazz) {
         try {
-            T obj = JsonUtils.fromJson(data, clazz);
+            T obj = Codecs.request(exchange).read(data, clazz);
             return Optional.of(obj);
         } catch (Exception e) {
             return Optional.empty();
@@ -53,17 +87,190 @@ public class HandlerUtils {
         }
     }
 
-    public static <T> Optional<T> parseRequestForUpdate(byte[] data, Class<T> clazz) {
+    public static Optional<String> queryParam(HttpServerExchange exchange, String name) {
+        Deque<String> values = exchange.getQueryParameters().get(name);
+        if (values == null || values.isEmpty() || values.peekFirst().isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(values.peekFirst());
+    }
+
+    public static boolean isPageRequested(HttpServerExchange exchange) {
+        return queryParam(exchange, AFTER).isPresent() || queryParam(exchange, LIMIT).isPresent();
+    }
+
+    /**
+     * Reads the {@code after} query parameter of an export, 0 when missing.
+     *
+     * @return the exclusive lower bound of the IDs to stream, or empty if malformed or negative
+     */
+    public static OptionalLong parseAfter(HttpServerExchange exchange) {
         try {
-            T customer = JsonUtils.fromJson(data, clazz);
+            long after = Long.parseLong(queryParam(exchange, AFTER).orElse("0"));
+            return after < 0 ? OptionalLong.empty() : OptionalLong.of(after);
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * @return true if the request accepts a record-per-line format (NDJSON, CSV) for a list, see {@link Codecs#records}
+     */
+    public static boolean isExportRequested(HttpServerExchange exchange) {
+        return Codecs.records(exchange).recordsOnly();
+    }
+
+    /**
+     * Reads the {@code after} and {@code limit} query parameters.
+     * A missing {@code after} starts from the first record, a missing limit uses the default
+     * and limits above {@link com.billy.app.AppConstants#MAX_PAGE_LIMIT} are capped.
+     *
+     * @param exchange the HTTP exchange
+     * @return the page request, or empty if a parameter is malformed or out of range
+     */
+    public static Optional<PageRequest> parsePageRequest(HttpServerExchange exchange) {
+        try {
+            long after = Long.parseLong(queryParam(exchange, AFTER).orElse("0"));
+            int limit = Integer.parseInt(queryParam(exchange, LIMIT).orElse(String.valueOf(DEFAULT_PAGE_LIMIT)));
+            if (after < 0 || limit <= 0) {
+                return Optional.empty();
+            }
+            return Optional.of(new PageRequest(after, Math.min(limit, MAX_PAGE_LIMIT)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Strong entity tag of the JSON representation of one version of a record, e.g. {@code "7-3"}
+     * for version 3 of record 7.
+     */
+    public static ETag recordETag(long id, long version) {
+        return recordETag(id, version, Codec.JSON);
+    }
+
+    /**
+     * Strong entity tag of one version of a record in a codec, e.g. {@code "7-3.cbor"}.
+     * The bytes differ per codec, so each codec needs its own tag.
+     */
+    public static ETag recordETag(long id, long version, Codec codec) {
+        return new ETag(false, id + "-" + version + codec.tagSuffix());
+    }
+
+    /**
+     * Strong entity tag of a whole table in a codec, used by the list endpoints.
+     */
+    public static ETag tableETag(long tableVersion, Codec codec) {
+        return new ETag(false, "t" + Long.toHexString(tableVersion) + codec.tagSuffix());
+    }
+
+    /**
+     * Strong entity tag of a window of a table in a codec, e.g. {@code "t2a-100-50"} for at most 50
+     * records after ID 100, used by pages and exports so that different windows never share a tag.
+     *
+     * @param after the ID the window starts after
+     * @param limit the most records in the window, 0 or less for all of them
+     */
+    public static ETag tableETag(long tableVersion, Codec codec, long after, int limit) {
+        String window = limit > 0 ? after + "-" + limit : String.valueOf(after);
+        return new ETag(false, "t" + Long.toHexString(tableVersion) + "-" + window + codec.tagSuffix());
+    }
+
+    /**
+     * Sets the {@code ETag} header and, when the request's {@code If-None-Match} matches it,
+     * completes the exchange with {@code 304 Not Modified}.
+     *
+     * @param exchange the HTTP exchange
+     * @param etag     the tag of the representation that would be sent
+     * @return true if the exchange was completed and no body must be sent
+     */
+    public static boolean notModified(HttpServerExchange exchange, ETag etag) {
+        setETag(exchange, etag);
+        if (ETagUtils.handleIfNoneMatch(exchange, etag, true)) {
+            return false;
+        }
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        exchange.endExchange();
+        return true;
+    }
+
+    public static void setETag(HttpServerExchange exchange, ETag etag) {
+        exchange.getResponseHeaders().put(Headers.ETAG, etag.toString());
+    }
+
+    /**
+     * Reads the record version a conditional write expects from the {@code If-Match} header.
+     * Without the header, or with {@code *}, any version is accepted. Otherwise the first strong
+     * {@link #recordETag(long, long, Codec)} of this record is used, in any codec; weak tags never match a write.
+     *
+     * @param exchange the HTTP exchange
+     * @param id       the ID of the record to write
+     * @return the expected version, {@link Versioned#ANY}, or empty if no tag can match this record
+     */
+    public static OptionalLong ifMatchVersion(HttpServerExchange exchange, long id) {
+        String ifMatch = exchange.getRequestHeaders().getFirst(Headers.IF_MATCH);
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return OptionalLong.of(Versioned.ANY);
+        }
+        String prefix = id + "-";
+        for (ETag etag : ETagUtils.parseETagList(ifMatch)) {
+            if (etag.isWeak() || !etag.getTag().startsWith(prefix)) {
+                continue;
+            }
+            String version = etag.getTag().substring(prefix.length());
+            int suffix = version.indexOf('.');
+            try {
+                return OptionalLong.of(Long.parseLong(suffix < 0 ? version : version.substring(0, suffix)));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Sends {@code 412 Precondition Failed} for an {@code If-Match} that cannot match the record.
+     */
+    public static void sendPreconditionFailed(HttpServerExchange exchange, long id) {
+        sendErrorResponse(exchange, StatusCodes.PRECONDITION_FAILED, String.format(IF_MATCH_FAILED_ID_D, id), id);
+    }
+
+    /**
+     * Sends {@code 412 Precondition Failed} with the {@code ETag} of the current version,
+     * so the client can read the record again and retry.
+     */
+    public static void sendVersionConflict(HttpServerExchange exchange, VersionConflictException e) {
+        setETag(exchange, recordETag(e.id(), e.currentVersion(), Codecs.response(exchange)));
+        sendErrorResponse(exchange, StatusCodes.PRECONDITION_FAILED, e.getMessage(), e.id());
+    }
+
+    public static <T> Optional<T> parseRequestForUpdate(HttpServerExchange exchange, byte[] data, Class<T> clazz) {
+        try {
+            T customer = Codecs.request(exchange).read(data, clazz);
             return Optional.of(customer);
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
-    public static void async(HttpServerExchange ex, Runnable task, Logger logger) {
-        ex.dispatch(() -> {
+    /**
+     * @param executor the executor a handler was given, e.g. a virtual thread per task executor, or null
+     * @return the executor handler tasks run on: the given one, else Undertow's worker pool
+     */
+    public static Executor executor(HttpServerExchange exchange, Executor executor) {
+        return executor != null ? executor : exchange.getConnection().getWorker();
+    }
+
+    /**
+     * Runs a handler task off the IO thread, on the handler's executor or, if it has none, the worker pool.
+     * Each task is timed by a {@link HandlerEvent} JFR event, which costs nothing measurable unless a
+     * recording enables it.
+     */
+    public static void async(HttpServerExchange ex, Executor executor, Runnable task, Logger logger) {
+        long dispatchedAt = System.nanoTime();
+        Runnable guarded = () -> {
+            HandlerEvent event = new HandlerEvent();
+            long startedAt = System.nanoTime();
+            event.begin();
             try {
                 task.run();
             } catch (Exception e) {
@@ -72,8 +279,32 @@ public class HandlerUtils {
                 try {
                     ex.endExchange();
                 } catch (Exception ignore) {}
+            } finally {
+                event.finish(ex, dispatchedAt, startedAt);
+            }
+        };
+        if (executor == null) {
+            ex.dispatch(guarded);
+        } else {
+            ex.dispatch(executor, guarded);
+        }
+    }
+
+    /**
+     * Reads the whole request body, then runs the task with it off the IO thread like
+     * {@link #async(HttpServerExchange, Executor, Runnable, Logger)}. Undertow calls back on the IO thread when
+     * the body was not buffered yet; the task is dispatched again then, as a write waiting for its commit there
+     * would stall every connection of that thread.
+     */
+    public static void receiveBody(HttpServerExchange ex, Executor executor, BiConsumer<HttpServerExchange, byte[]> task,
+                                   Logger logger) {
+        async(ex, executor, () -> ex.getRequestReceiver().receiveFullBytes((exchange, data) -> {
+            if (exchange.isInIoThread()) {
+                async(exchange, executor, () -> task.accept(exchange, data), logger);
+            } else {
+                task.accept(exchange, data);
             }
-        });
+        }), logger);
     }
 
 }
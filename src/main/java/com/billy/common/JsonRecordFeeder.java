@@ -0,0 +1,114 @@
+package com.billy.common;
+
+import com.billy.factory.ObjectMapperFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+/**
+ * Assembles records from JSON bytes fed in chunks of any size, using Jackson's non-blocking parser.
+ * The input is either a JSON array of records or records separated by whitespace or newlines (NDJSON).
+ * Only the tokens of the record being parsed are held, so memory does not grow with the input.
+ */
+public final class JsonRecordFeeder<T> {
+    static final String TRUNCATED_INPUT = "Input ended inside a record";
+
+    /**
+     * Receives the records in input order.
+     */
+    public interface Listener<T> {
+        void record(T record);
+
+        /**
+         * Called for well-formed JSON that does not bind to the record type; parsing continues.
+         */
+        void invalid(String error);
+    }
+
+    private final ObjectReader reader;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Listener<T> listener;
+    private TokenBuffer record;
+    private int depth;
+    private boolean inArray;
+
+    public JsonRecordFeeder(Class<T> type, Listener<T> listener) throws IOException {
+        ObjectMapper mapper = ObjectMapperFactory.get();
+        this.reader = mapper.readerFor(type);
+        this.parser = mapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.listener = listener;
+    }
+
+    /**
+     * Parses a chunk and reports every record it completes.
+     *
+     * @throws JsonParseException if the input is not a sequence or array of JSON objects
+     */
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        feeder.feedInput(data, offset, offset + length);
+        drain();
+    }
+
+    /**
+     * Signals the end of the input and reports the last record.
+     *
+     * @throws IOException if the input ended inside a record or array
+     */
+    public void endOfInput() throws IOException {
+        feeder.endOfInput();
+        drain();
+        if (record != null || inArray) {
+            throw new JsonParseException(parser, TRUNCATED_INPUT);
+        }
+        parser.close();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (record == null) {
+                startRecord(token);
+                continue;
+            }
+            record.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd() && --depth == 0) {
+                completeRecord();
+            }
+        }
+    }
+
+    private void startRecord(JsonToken token) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            record = new TokenBuffer(parser);
+            record.copyCurrentEvent(parser);
+            depth = 1;
+        } else if (token == JsonToken.START_ARRAY && !inArray) {
+            inArray = true;
+        } else if (token == JsonToken.END_ARRAY && inArray) {
+            inArray = false;
+        } else {
+            throw new JsonParseException(parser, "Expected a record object but found " + token);
+        }
+    }
+
+    private void completeRecord() throws IOException {
+        try (JsonParser recordParser = record.asParser()) {
+            listener.record(reader.readValue(recordParser));
+        } catch (JsonProcessingException e) {
+            listener.invalid(e.getOriginalMessage());
+        } finally {
+            record = null;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.billy.common;
 
 import com.billy.factory.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
@@ -28,6 +30,14 @@ public final class JsonUtils {
         }
     }
 
+    public static byte[] toJsonBytes(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write JSON", e);
+        }
+    }
+
     public static <T> T fromJson(InputStream input, Class<T> clazz) {
         try {
             return MAPPER.readValue(input, clazz);
@@ -44,4 +54,20 @@ public final class JsonUtils {
         }
     }
 
+    public static <T> T convert(JsonNode node, Class<T> clazz) {
+        try {
+            return MAPPER.treeToValue(node, clazz);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to convert JSON into " + clazz.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Opens a lazy reader over a stream of values, given either as a JSON array or as
+     * whitespace/newline separated values (NDJSON). Values are parsed one at a time.
+     */
+    public static <T> MappingIterator<T> readValues(InputStream input, Class<T> clazz) throws IOException {
+        return MAPPER.readerFor(clazz).readValues(input);
+    }
+
 }
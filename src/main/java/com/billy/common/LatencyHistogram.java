@@ -0,0 +1,164 @@
+package com.billy.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values are recorded in microseconds: every power of two is split into {@code 2^subBits}
+ * linear buckets, so a bucket is at most {@code 1/2^subBits} wider than its lower bound whatever the magnitude,
+ * from 1µs up to {@link #MAX_MICROS}. Recording is one atomic increment of a bucket and one
+ * {@link LongAdder} update, with no allocation and no lock, so it can run on the IO threads.
+ * <p>
+ * The default {@link #SUB_BITS} gives 25% wide buckets, few enough to export every bucket on each
+ * {@code /metrics} scrape; a load generator comparing percentiles between runs asks for finer ones.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BITS = 2;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /**
+     * Most sub-bucket bits accepted, 1024 buckets per power of two, about 0.1% precision.
+     */
+    public static final int MAX_SUB_BITS = 10;
+    /**
+     * Recorded values above this, about 19 hours, are counted in the last bucket.
+     */
+    static final long MAX_MICROS = (1L << 36) - 1;
+    static final int BUCKETS = bucketCount(SUB_BITS);
+
+    private final int subBits;
+    private final AtomicLongArray counts;
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * A histogram with the default, coarse {@link #SUB_BITS} precision.
+     */
+    public LatencyHistogram() {
+        this(SUB_BITS);
+    }
+
+    /**
+     * @param subBits every power of two is split into {@code 2^subBits} buckets, e.g. 6 for 64 buckets and
+     *                about 1.5% precision
+     * @throws IllegalArgumentException if {@code subBits} is negative or above {@link #MAX_SUB_BITS}
+     */
+    public LatencyHistogram(int subBits) {
+        if (subBits < 0 || subBits > MAX_SUB_BITS) {
+            throw new IllegalArgumentException("subBits must be between 0 and " + MAX_SUB_BITS);
+        }
+        this.subBits = subBits;
+        this.counts = new AtomicLongArray(bucketCount(subBits));
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos duration in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long clamped = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(Math.min(clamped / 1_000, MAX_MICROS), subBits));
+        sumNanos.add(clamped);
+    }
+
+    /**
+     * Copies the current counts. Buckets are read one by one while recording goes on,
+     * so the snapshot may miss values recorded during the copy, never count one twice.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sumNanos.sum(), subBits);
+    }
+
+    private static int bucketCount(int subBits) {
+        return bucketOf(MAX_MICROS, subBits) + 1;
+    }
+
+    static int bucketOf(long micros) {
+        return bucketOf(micros, SUB_BITS);
+    }
+
+    static int bucketOf(long micros, int subBits) {
+        int subBuckets = 1 << subBits;
+        if (micros < subBuckets) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - subBits;
+        int sub = (int) (micros >>> shift) & (subBuckets - 1);
+        return subBuckets + shift * subBuckets + sub;
+    }
+
+    /**
+     * @return the largest value in microseconds counted in the bucket of a default histogram
+     */
+    static long upperBoundMicros(int bucket) {
+        return upperBoundMicros(bucket, SUB_BITS);
+    }
+
+    static long upperBoundMicros(int bucket, int subBits) {
+        int subBuckets = 1 << subBits;
+        if (bucket < subBuckets) {
+            return bucket;
+        }
+        int shift = (bucket - subBuckets) / subBuckets;
+        int sub = (bucket - subBuckets) % subBuckets;
+        return ((long) (subBuckets + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final int subBits;
+
+        private Snapshot(long[] counts, long count, long sumNanos, int subBits) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.subBits = subBits;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sumNanos() {
+            return sumNanos;
+        }
+
+        /**
+         * @return the number of values in the bucket
+         */
+        public long countAt(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         * @return upper bound in microseconds of the bucket holding the quantile, 0 when empty
+         */
+        public long quantileMicros(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundMicros(i, subBits);
+                }
+            }
+            return upperBoundMicros(counts.length - 1, subBits);
+        }
+    }
+}
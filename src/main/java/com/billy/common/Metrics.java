@@ -0,0 +1,231 @@
+package com.billy.common;
+
+import io.undertow.server.ConduitWrapper;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.PathTemplateMatch;
+import org.xnio.channels.StreamSinkChannel;
+import org.xnio.conduits.AbstractStreamSourceConduit;
+import org.xnio.conduits.StreamSourceConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request and store metrics, exposed in the Prometheus text format.
+ * <p>
+ * {@link #handler(HttpHandler)} wraps the routing handler and records, per method, route template and status,
+ * a {@link LatencyHistogram} of the time until the exchange completes and the request and response bytes.
+ * The route is the template matched by the {@link io.undertow.server.RoutingHandler}, e.g. {@code /items/{id}},
+ * so ids do not multiply the series. MapDB commits in every commit mode are recorded with
+ * {@link #recordCommit(long, boolean)}, registered as a {@link com.billy.database.CommitListener}.
+ * <p>
+ * Recording only touches atomics; a scrape walks the series once and prints the same fixed buckets for
+ * each, so its cost follows the number of routes, not of requests.
+ */
+public final class Metrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    static final String UNMATCHED = "unmatched";
+    static final String PREFIX = "undertow_app_";
+
+    private static final Comparator<Map.Entry<RouteKey, RouteStats>> BY_ROUTE = Comparator
+            .comparing((Map.Entry<RouteKey, RouteStats> e) -> e.getKey().route())
+            .thenComparing(e -> e.getKey().method())
+            .thenComparingInt(e -> e.getKey().status());
+
+    private final Map<RouteKey, RouteStats> routes = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final LatencyHistogram commits = new LatencyHistogram();
+    private final LongAdder commitFailures = new LongAdder();
+
+    private record RouteKey(String method, String route, int status) {
+    }
+
+    private static final class RouteStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+    }
+
+    /**
+     * Wraps a handler with request instrumentation. The exchange is recorded when it completes,
+     * also when the response is sent asynchronously from a worker or streamed in chunks.
+     *
+     * @param next the routing handler
+     * @return the instrumented handler
+     */
+    public HttpHandler handler(HttpHandler next) {
+        return exchange -> {
+            Recorder recorder = new Recorder(System.nanoTime());
+            inFlight.increment();
+            exchange.addRequestWrapper(recorder);
+            exchange.addExchangeCompleteListener(recorder);
+            next.handleRequest(exchange);
+        };
+    }
+
+    private void record(HttpServerExchange exchange, long nanos, long bytesIn) {
+        inFlight.decrement();
+        PathTemplateMatch match = exchange.getAttachment(PathTemplateMatch.ATTACHMENT_KEY);
+        RouteKey key = new RouteKey(exchange.getRequestMethod().toString(),
+                match == null ? UNMATCHED : match.getMatchedTemplate(), exchange.getStatusCode());
+        RouteStats stats = routes.computeIfAbsent(key, k -> new RouteStats());
+        stats.latency.record(nanos);
+        stats.bytesIn.add(bytesIn);
+        stats.bytesOut.add(exchange.getResponseBytesSent());
+    }
+
+    /**
+     * Records one MapDB commit: its duration if it succeeded, a failure otherwise.
+     */
+    public void recordCommit(long nanos, boolean committed) {
+        if (committed) {
+            commits.record(nanos);
+        } else {
+            commitFailures.increment();
+        }
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format, version 0.0.4
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        List<Map.Entry<RouteKey, RouteStats>> series = new ArrayList<>(routes.entrySet());
+        series.sort(BY_ROUTE);
+
+        header(out, "http_requests_in_flight", "gauge", "Requests received and not completed yet.");
+        out.append(PREFIX).append("http_requests_in_flight ").append(inFlight.sum()).append('\n');
+
+        header(out, "http_request_duration_seconds", "histogram", "Time from receiving a request until its exchange completed.");
+        for (Map.Entry<RouteKey, RouteStats> e : series) {
+            histogram(out, "http_request_duration_seconds", labels(e.getKey()), e.getValue().latency.snapshot());
+        }
+        header(out, "http_request_bytes_total", "counter", "Request body bytes read.");
+        for (Map.Entry<RouteKey, RouteStats> e : series) {
+            sample(out, "http_request_bytes_total", labels(e.getKey()), e.getValue().bytesIn.sum());
+        }
+        header(out, "http_response_bytes_total", "counter", "Response bytes sent, after compression.");
+        for (Map.Entry<RouteKey, RouteStats> e : series) {
+            sample(out, "http_response_bytes_total", labels(e.getKey()), e.getValue().bytesOut.sum());
+        }
+
+        header(out, "mapdb_commit_duration_seconds", "histogram", "Duration of the successful MapDB commits.");
+        histogram(out, "mapdb_commit_duration_seconds", "", commits.snapshot());
+        header(out, "mapdb_commit_failures_total", "counter", "MapDB commits that failed.");
+        out.append(PREFIX).append("mapdb_commit_failures_total ").append(commitFailures.sum()).append('\n');
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String labels(RouteKey key) {
+        return "method=\"" + key.method() + "\",route=\"" + escape(key.route()) + "\",status=\"" + key.status() + "\"";
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Prints the cumulative count of every bucket, empty ones included, then {@code +Inf}, sum and count.
+     * Every series has the same {@code le} values from its first scrape on, so quantiles and rates can be
+     * computed across series and scrapes.
+     */
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            cumulative += snapshot.countAt(i);
+            out.append(PREFIX).append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(LatencyHistogram.upperBoundMicros(i) / 1e6).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        out.append(PREFIX).append(name).append("_bucket{").append(labels).append(separator)
+                .append("le=\"+Inf\"} ").append(snapshot.count()).append('\n');
+        String braces = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(PREFIX).append(name).append("_sum").append(braces).append(snapshot.sumNanos() / 1e9).append('\n');
+        out.append(PREFIX).append(name).append("_count").append(braces).append(snapshot.count()).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Counts the request bytes of one exchange and records it on completion.
+     */
+    private final class Recorder implements ConduitWrapper<StreamSourceConduit>, ExchangeCompletionListener {
+        private final long start;
+        private CountingConduit request;
+
+        private Recorder(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public StreamSourceConduit wrap(ConduitFactory<StreamSourceConduit> factory, HttpServerExchange exchange) {
+            request = new CountingConduit(factory.create());
+            return request;
+        }
+
+        @Override
+        public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+            try {
+                record(exchange, System.nanoTime() - start, request == null ? 0 : request.bytes);
+            } finally {
+                nextListener.proceed();
+            }
+        }
+    }
+
+    /**
+     * Counts the request body bytes read by the handlers. Reads of one exchange never run concurrently.
+     */
+    private static final class CountingConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private volatile long bytes;
+
+        private CountingConduit(StreamSourceConduit next) {
+            super(next);
+        }
+
+        private long count(long read) {
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return (int) count(next.read(dst));
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offs, int len) throws IOException {
+            return count(next.read(dsts, offs, len));
+        }
+
+        @Override
+        public long transferTo(long position, long count, FileChannel target) throws IOException {
+            return count(next.transferTo(position, count, target));
+        }
+
+        @Override
+        public long transferTo(long count, ByteBuffer throughBuffer, StreamSinkChannel target) throws IOException {
+            return count(next.transferTo(count, throughBuffer, target));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.billy.common;
+
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResult;
+import com.billy.objects.ImportSummary;
+import io.undertow.io.Receiver;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.billy.api.HandlersConstants.FAILED_TO_STREAM;
+
+/**
+ * Imports the records of a request body while it arrives, with a flat heap whatever the body size.
+ * The body is read with Undertow's partial receiver on the I/O thread and parsed by a {@link JsonRecordFeeder};
+ * every {@code batchSize} records are written on a worker thread. Reading is paused while a batch is
+ * written, so a client sending faster than the store can write is slowed down by TCP flow control.
+ * Batches are dispatched through the exchange, so it is not ended while reading is paused.
+ * The response is an {@link ImportSummary} sent once the last batch was written.
+ */
+public final class RecordImporter<T> implements JsonRecordFeeder.Listener<T> {
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+    public static final int MAX_REPORTED_FAILURES = 100;
+    static final String MALFORMED_BODY = "Malformed import body, stopped";
+
+    /**
+     * Writes one batch, typically in a single store batch.
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        /**
+         * @param batch      the records to save
+         * @param firstIndex position of the first record in the body
+         * @return the failed records, by position in the body
+         */
+        List<BulkResult> write(List<T> batch, int firstIndex);
+    }
+
+    private final HttpServerExchange exchange;
+    private final Receiver receiver;
+    private final Executor executor;
+    private final int batchSize;
+    private final BatchWriter<T> writer;
+    private final Logger logger;
+    private final JsonRecordFeeder<T> feeder;
+    private final List<BulkResult> failures = new ArrayList<>();
+    private List<T> pending;
+    private int received;
+    private long imported;
+    private long failed;
+    private int batches;
+    private int pendingIndex;
+    private String error;
+    private boolean finished;
+
+    private RecordImporter(HttpServerExchange exchange, Executor executor, Class<T> type, int batchSize,
+                           BatchWriter<T> writer, Logger logger) throws IOException {
+        this.exchange = exchange;
+        this.receiver = exchange.getRequestReceiver();
+        this.executor = HandlerUtils.executor(exchange, executor);
+        this.batchSize = batchSize;
+        this.writer = writer;
+        this.logger = logger;
+        this.feeder = new JsonRecordFeeder<>(type, this);
+        this.pending = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Starts importing the body of the exchange. Must be called from the handler, which then returns.
+     *
+     * @param exchange  the HTTP exchange with a JSON array or NDJSON body of records
+     * @param executor  the handler's executor the batches are written on, or null for the worker pool
+     * @param type      the record type
+     * @param batchSize records per written batch
+     * @param writer    saves a batch and reports its failures
+     * @param logger    logger of the calling handler
+     */
+    public static <T> void start(HttpServerExchange exchange, Executor executor, Class<T> type, int batchSize,
+                                 BatchWriter<T> writer, Logger logger) {
+        RequestGate.markLongRunning(exchange);
+        RecordImporter<T> importer;
+        try {
+            importer = new RecordImporter<>(exchange, executor, type, batchSize, writer, logger);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
+            HandlerUtils.sendErrorResponse(exchange, StatusCodes.INTERNAL_SERVER_ERROR, e.getMessage());
+            return;
+        }
+        importer.receiver.receivePartialBytes(importer::onBytes, importer::onError);
+    }
+
+    @Override
+    public void record(T record) {
+        if (pending.isEmpty()) {
+            pendingIndex = received;
+        }
+        received++;
+        pending.add(record);
+    }
+
+    @Override
+    public void invalid(String reason) {
+        fail(BulkResult.failure(received++, BulkOperation.CREATE, null, reason));
+    }
+
+    private synchronized void onBytes(HttpServerExchange exchange, byte[] data, boolean last) {
+        if (finished) {
+            return;
+        }
+        boolean stop = last;
+        try {
+            feeder.feed(data, 0, data.length);
+            if (last) {
+                feeder.endOfInput();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, MALFORMED_BODY, e);
+            error = MALFORMED_BODY + ": " + e.getMessage();
+            stop = true;
+        }
+        if (stop) {
+            finished = true;
+            List<T> batch = takePending();
+            int firstIndex = pendingIndex;
+            exchange.dispatch(executor, () -> {
+                try {
+                    writeBatch(batch, firstIndex);
+                    respond();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
+                    exchange.endExchange();
+                }
+            });
+        } else if (pending.size() >= batchSize) {
+            receiver.pause();
+            List<T> batch = takePending();
+            int firstIndex = pendingIndex;
+            exchange.dispatch(executor, () -> {
+                writeBatch(batch, firstIndex);
+                receiver.resume();
+            });
+        }
+    }
+
+    private List<T> takePending() {
+        List<T> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        return batch;
+    }
+
+    private void writeBatch(List<T> batch, int firstIndex) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<BulkResult> batchFailures;
+        long saved;
+        try {
+            batchFailures = writer.write(batch, firstIndex);
+            saved = batch.size() - batchFailures.size();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to import batch at record " + firstIndex, e);
+            batchFailures = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batchFailures.add(BulkResult.failure(firstIndex + i, BulkOperation.CREATE, null, e.getMessage()));
+            }
+            saved = 0;
+        }
+        synchronized (this) {
+            batches++;
+            imported += saved;
+            batchFailures.forEach(this::fail);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format("Imported %d of %d records in %d batches", imported, received, batches));
+            }
+        }
+    }
+
+    private void fail(BulkResult failure) {
+        failed++;
+        if (failures.size() < MAX_REPORTED_FAILURES) {
+            failures.add(failure);
+        }
+    }
+
+    private synchronized void respond() {
+        ImportSummary summary = new ImportSummary(received, imported, failed, batches,
+                error == null, error, List.copyOf(failures));
+        logger.log(Level.INFO, String.format("Import finished: %d received, %d imported, %d failed",
+                received, imported, failed));
+        HandlerUtils.send(exchange, error == null ? StatusCodes.OK : StatusCodes.BAD_REQUEST, summary);
+    }
+
+    private void onError(HttpServerExchange exchange, IOException e) {
+        logger.log(Level.WARNING, "Import body could not be read", e);
+        synchronized (this) {
+            finished = true;
+        }
+        exchange.endExchange();
+    }
+}
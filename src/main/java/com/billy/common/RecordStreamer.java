@@ -0,0 +1,216 @@
+package com.billy.common;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.billy.api.HandlersConstants.EXCEPTION_SENDING_RESPONSE;
+import static com.billy.api.HandlersConstants.FAILED_TO_STREAM;
+
+/**
+ * Streams a sequence of records to the client using non-blocking I/O.
+ * Records are serialized through a single Jackson {@link SequenceWriter}, in any {@link Codec}, into direct
+ * buffers taken from the connection's buffer pool. Once {@link #CHUNK_SIZE} bytes are
+ * buffered they are written with one {@link Sender#send(ByteBuffer[], IoCallback)} call,
+ * and serialization resumes when that write completes.
+ */
+public final class RecordStreamer<T> implements IoCallback {
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Iterator<T> records;
+    private final Logger logger;
+    private final ChunkOutputStream out;
+    private final SequenceWriter writer;
+    private boolean finished;
+
+    /**
+     * Opens a sequence over a chunk stream, e.g. a JSON array writer.
+     */
+    @FunctionalInterface
+    public interface SequenceWriterFactory {
+        SequenceWriter open(OutputStream out) throws IOException;
+    }
+
+    private RecordStreamer(HttpServerExchange exchange, Iterator<T> records,
+                           SequenceWriterFactory writerFactory, Logger logger) throws IOException {
+        this.records = records;
+        this.logger = logger;
+        this.out = new ChunkOutputStream(exchange.getConnection().getByteBufferPool());
+        this.writer = writerFactory.open(out);
+    }
+
+    /**
+     * Streams all records as a JSON array. The response status and headers must be set before calling.
+     *
+     * @param exchange the HTTP exchange to write to
+     * @param records  the records to stream
+     * @param logger   logger of the calling handler
+     */
+    public static <T> void streamJsonArray(HttpServerExchange exchange, Iterator<T> records, Logger logger) {
+        stream(exchange, records, Codec.JSON::writeArray, logger);
+    }
+
+    /**
+     * Streams all records in the codec negotiated from the request's {@code Accept} header, see
+     * {@link Codecs#records(HttpServerExchange)}, and sets the matching {@code Content-Type}: an array in
+     * the document formats, or one record per line in NDJSON and CSV. The response status must be set before calling.
+     *
+     * @param exchange the HTTP exchange to write to
+     * @param records  the records to stream
+     * @param type     the record type
+     * @param logger   logger of the calling handler
+     */
+    public static <T> void streamRecords(HttpServerExchange exchange, Iterator<T> records, Class<T> type, Logger logger) {
+        Codec codec = Codecs.records(exchange);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, codec.mediaType());
+        stream(exchange, records, out -> codec.writeRecords(out, type), logger);
+    }
+
+    /**
+     * Streams all records with the given sequence writer. The response status and headers must be set before calling.
+     *
+     * @param exchange      the HTTP exchange to write to
+     * @param records       the records to stream
+     * @param writerFactory opens the writer framing the records
+     * @param logger        logger of the calling handler
+     */
+    public static <T> void stream(HttpServerExchange exchange, Iterator<T> records,
+                                  SequenceWriterFactory writerFactory, Logger logger) {
+        RecordStreamer<T> streamer;
+        try {
+            streamer = new RecordStreamer<>(exchange, records, writerFactory, logger);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
+            safeAbort(exchange, logger);
+            return;
+        }
+        streamer.sendNextChunk(exchange);
+    }
+
+    private void sendNextChunk(HttpServerExchange exchange) {
+        try {
+            while (out.size() < CHUNK_SIZE && records.hasNext()) {
+                writer.write(records.next());
+            }
+            if (!records.hasNext()) {
+                writer.close();
+                finished = true;
+            } else {
+                writer.flush();
+            }
+            exchange.getResponseSender().send(out.drain(), this);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
+            out.release();
+            safeAbort(exchange, logger);
+        }
+    }
+
+    @Override
+    public void onComplete(HttpServerExchange exchange, Sender sender) {
+        out.release();
+        if (finished) {
+            IoCallback.END_EXCHANGE.onComplete(exchange, sender);
+            return;
+        }
+        sendNextChunk(exchange);
+    }
+
+    @Override
+    public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+        logger.log(Level.SEVERE, EXCEPTION_SENDING_RESPONSE, exception);
+        out.release();
+        safeAbort(exchange, logger);
+    }
+
+    private static void safeAbort(HttpServerExchange exchange, Logger logger) {
+        try {
+            exchange.endExchange();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, FAILED_TO_STREAM, e);
+        }
+    }
+
+    /**
+     * Output stream that fills pooled buffers until they are drained for sending.
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+        private final ByteBufferPool pool;
+        private final List<PooledByteBuffer> buffers = new ArrayList<>();
+        private ByteBuffer current;
+        private int size;
+
+        private ChunkOutputStream(ByteBufferPool pool) {
+            this.pool = pool;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity();
+            current.put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ensureCapacity();
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+                size += n;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (current == null || !current.hasRemaining()) {
+                PooledByteBuffer pooled = pool.allocate();
+                buffers.add(pooled);
+                current = pooled.getBuffer();
+                current.clear();
+            }
+        }
+
+        /**
+         * Flips the filled buffers for writing. They stay owned by this stream until {@link #release()}.
+         */
+        ByteBuffer[] drain() {
+            ByteBuffer[] chunk = new ByteBuffer[buffers.size()];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = buffers.get(i).getBuffer().flip();
+            }
+            current = null;
+            return chunk;
+        }
+
+        /**
+         * Returns all buffers to the pool.
+         */
+        void release() {
+            for (PooledByteBuffer pooled : buffers) {
+                pooled.close();
+            }
+            buffers.clear();
+            current = null;
+            size = 0;
+        }
+    }
+}
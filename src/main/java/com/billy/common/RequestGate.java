@@ -0,0 +1,258 @@
+package com.billy.common;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Lets requests through to the handlers except during a {@link #pause(long)}, which waits for the running
+ * exchanges to complete and holds new ones until it is resumed, e.g. while a MapDB file is swapped.
+ * {@link #pauseWrites(long)} does the same for the requests other than {@code GET} and {@code HEAD} only,
+ * e.g. while a snapshot catches up, and lets reads go on.
+ * <p>
+ * Outside a pause a request costs two atomic updates. A held exchange is dispatched without an executor task,
+ * so it takes no thread while it waits, and re-enters the gate on its IO thread on resume.
+ * <p>
+ * Requests that may run for minutes, e.g. exports and imports, {@link #markLongRunning(HttpServerExchange) mark}
+ * themselves. A pause does not wait for them: it fails at once while one it would wait for runs, before holding
+ * any request.
+ */
+public final class RequestGate {
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private static final AttachmentKey<Ticket> TICKET = AttachmentKey.create(Ticket.class);
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger activeWrites = new AtomicInteger();
+    private final AtomicInteger longRunning = new AtomicInteger();
+    private final AtomicInteger longRunningWrites = new AtomicInteger();
+    private final Queue<Held> held = new ConcurrentLinkedQueue<>();
+    private volatile Pause paused = Pause.NONE;
+
+    private enum Pause {
+        NONE, WRITES, ALL;
+
+        boolean holds(boolean write) {
+            return this == ALL || this == WRITES && write;
+        }
+    }
+
+    private record Held(HttpServerExchange exchange, HttpHandler gate) {
+    }
+
+    /**
+     * A request that passed the gate, until its exchange completes.
+     */
+    private final class Ticket {
+        private final boolean write;
+        private boolean longRunning;
+        private boolean completed;
+
+        Ticket(boolean write) {
+            this.write = write;
+        }
+
+        synchronized void markLongRunning() {
+            if (!longRunning && !completed) {
+                longRunning = true;
+                RequestGate.this.longRunning.incrementAndGet();
+                if (write) {
+                    longRunningWrites.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized void complete() {
+            completed = true;
+            if (longRunning) {
+                RequestGate.this.longRunning.decrementAndGet();
+                if (write) {
+                    longRunningWrites.decrementAndGet();
+                }
+            }
+            left(write);
+        }
+    }
+
+    /**
+     * Wraps a handler with the gate. A request counts as running until its exchange completes,
+     * also when the response is sent asynchronously from a worker or streamed.
+     *
+     * @param next the handler behind the gate
+     * @return the gated handler
+     */
+    public HttpHandler handler(HttpHandler next) {
+        return handler(next, exchange -> false);
+    }
+
+    /**
+     * Wraps a handler with the gate, except for the requests that never touch the store, e.g. file downloads,
+     * which pass at any time and are not waited for.
+     *
+     * @param next    the handler behind the gate
+     * @param ungated the requests that bypass the gate
+     * @return the gated handler
+     */
+    public HttpHandler handler(HttpHandler next, Predicate<HttpServerExchange> ungated) {
+        return new HttpHandler() {
+            @Override
+            public void handleRequest(HttpServerExchange exchange) throws Exception {
+                if (ungated.test(exchange)) {
+                    next.handleRequest(exchange);
+                    return;
+                }
+                boolean write = isWrite(exchange);
+                active.incrementAndGet();
+                if (write) {
+                    activeWrites.incrementAndGet();
+                }
+                if (paused.holds(write)) {
+                    left(write);
+                    hold(exchange, this);
+                    return;
+                }
+                Ticket ticket = new Ticket(write);
+                exchange.putAttachment(TICKET, ticket);
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    ticket.complete();
+                    nextListener.proceed();
+                });
+                next.handleRequest(exchange);
+            }
+        };
+    }
+
+    private static boolean isWrite(HttpServerExchange exchange) {
+        return !Methods.GET.equals(exchange.getRequestMethod()) && !Methods.HEAD.equals(exchange.getRequestMethod());
+    }
+
+    private void left(boolean write) {
+        if (write) {
+            activeWrites.decrementAndGet();
+        }
+        active.decrementAndGet();
+    }
+
+    /**
+     * Marks a request that passed a gate as one that may run for long, so a pause fails rather than waits
+     * for it. Does nothing for an exchange that bypassed the gates.
+     *
+     * @param exchange the exchange of the running request
+     */
+    public static void markLongRunning(HttpServerExchange exchange) {
+        Ticket ticket = exchange.getAttachment(TICKET);
+        if (ticket != null) {
+            ticket.markLongRunning();
+        }
+    }
+
+    /**
+     * Parks the exchange once the current handler call returned; a resume that happened meanwhile
+     * is caught by the second look at {@code paused}.
+     */
+    private void hold(HttpServerExchange exchange, HttpHandler gate) {
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            held.add(new Held(exchange, gate));
+            if (paused == Pause.NONE) {
+                release();
+            }
+        });
+    }
+
+    private void release() {
+        Held next;
+        while ((next = held.poll()) != null) {
+            next.exchange().dispatch(next.exchange().getIoThread(), next.gate());
+        }
+    }
+
+    /**
+     * Holds new requests and waits until the running ones completed.
+     *
+     * @param timeoutMillis how long to wait for the running requests
+     * @return resumes the held requests
+     * @throws TimeoutException if requests were still running after the timeout, or a long-running request runs;
+     *                          the gate is open again then
+     */
+    public Runnable pause(long timeoutMillis) throws TimeoutException, InterruptedException {
+        return pause(Pause.ALL, active, longRunning, timeoutMillis);
+    }
+
+    /**
+     * Holds new requests that may write, i.e. all but {@code GET} and {@code HEAD}, and waits until the running
+     * ones completed. Reads go on meanwhile.
+     *
+     * @param timeoutMillis how long to wait for the running writes
+     * @return resumes the held requests
+     * @throws TimeoutException if writes were still running after the timeout, or a long-running write runs;
+     *                          the gate is open again then
+     */
+    public Runnable pauseWrites(long timeoutMillis) throws TimeoutException, InterruptedException {
+        return pause(Pause.WRITES, activeWrites, longRunningWrites, timeoutMillis);
+    }
+
+    private Runnable pause(Pause pause, AtomicInteger running, AtomicInteger runningLong, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        if (runningLong.get() > 0) {
+            throw longRunningRequests();
+        }
+        paused = pause;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (running.get() > 0) {
+            if (runningLong.get() > 0) {
+                resume();
+                throw longRunningRequests();
+            }
+            if (Thread.interrupted()) {
+                resume();
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline > 0) {
+                resume();
+                throw new TimeoutException(running.get() + " requests still running after " + timeoutMillis + " ms");
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        return this::resume;
+    }
+
+    private static TimeoutException longRunningRequests() {
+        return new TimeoutException("Long-running requests, e.g. exports or imports, are running");
+    }
+
+    private void resume() {
+        paused = Pause.NONE;
+        release();
+    }
+
+    /**
+     * @return requests that passed the gate and did not complete yet
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return running requests marked as long-running
+     */
+    public int longRunning() {
+        return longRunning.get();
+    }
+
+    /**
+     * @return requests waiting for the end of a pause
+     */
+    public int held() {
+        return held.size();
+    }
+}
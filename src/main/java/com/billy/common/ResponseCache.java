@@ -0,0 +1,116 @@
+package com.billy.common;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of JSON encoded records, kept in read-only direct buffers so a hit is sent
+ * without serializing or copying. Entries are keyed by record ID and version and only used for
+ * the same version, so a stale entry is never served even if an invalidation is missed;
+ * {@link #invalidate(long)} frees the memory of changed records early. Encodings larger than the
+ * whole cache are returned in a heap buffer and never take direct memory.
+ */
+public final class ResponseCache<V> {
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long bytes;
+
+    /**
+     * @param maxBytes total size of the cached encodings, 0 or less disables the cache
+     */
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public static <V> ResponseCache<V> disabled() {
+        return new ResponseCache<>(0);
+    }
+
+    /**
+     * Returns the JSON encoding of a record, reusing the cached one when it was made from the same version.
+     *
+     * @param id      the record ID
+     * @param version the version of the record
+     * @param record  the current record
+     * @return a buffer positioned at the start of the encoding, owned by the caller
+     */
+    public ByteBuffer encode(long id, long version, V record) {
+        if (maxBytes == 0) {
+            return ByteBuffer.wrap(JsonUtils.toJsonBytes(record));
+        }
+        Entry cached;
+        lock.lock();
+        try {
+            cached = entries.get(id);
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null && cached.version() == version) {
+            hits.increment();
+            return cached.json().duplicate();
+        }
+        misses.increment();
+        byte[] json = JsonUtils.toJsonBytes(record);
+        if (json.length > maxBytes) {
+            // Too large to cache: a direct buffer would only be allocated to be dropped again
+            return ByteBuffer.wrap(json);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length).put(json).flip().asReadOnlyBuffer();
+        put(id, new Entry(version, direct));
+        return direct.duplicate();
+    }
+
+    /**
+     * Drops the cached encoding of a record, e.g. after it was updated or deleted.
+     */
+    public void invalidate(long id) {
+        if (maxBytes == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry removed = entries.remove(id);
+            if (removed != null) {
+                bytes -= removed.json().capacity();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private void put(long id, Entry entry) {
+        lock.lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                bytes -= previous.json().capacity();
+            }
+            bytes += entry.json().capacity();
+            Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().getValue().json().capacity();
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(long version, ByteBuffer json) {
+    }
+}
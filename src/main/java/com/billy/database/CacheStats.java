@@ -0,0 +1,22 @@
+package com.billy.database;
+
+/**
+ * Point-in-time counters of a {@link RecordCache}, used to size it.
+ *
+ * @param hits      lookups answered from the cache
+ * @param misses    lookups that went to the store
+ * @param evictions entries dropped to stay within {@code maxBytes}
+ * @param hitRate   hits divided by all lookups, 0 before the first lookup
+ * @param entries   records currently cached
+ * @param bytes     estimated size of the cached records
+ * @param maxBytes  configured capacity, 0 when the cache is disabled
+ */
+public record CacheStats(long hits, long misses, long evictions, double hitRate,
+                         long entries, long bytes, long maxBytes) {
+
+    static CacheStats of(long hits, long misses, long evictions, long entries, long bytes, long maxBytes) {
+        long lookups = hits + misses;
+        return new CacheStats(hits, misses, evictions, lookups == 0 ? 0 : (double) hits / lookups,
+                entries, bytes, maxBytes);
+    }
+}
@@ -0,0 +1,24 @@
+package com.billy.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of one MapDB commit, whether issued by a write in {@link CommitMode#SYNC} mode,
+ * a {@link GroupCommitter} batch or the periodic commit task.
+ */
+@Name(CommitEvent.NAME)
+@Label("MapDB Commit")
+@Category({"Undertow App", "Database"})
+@Description("A MapDB transaction commit, flushing the write-ahead log")
+@StackTrace(false)
+final class CommitEvent extends Event {
+    static final String NAME = "com.billy.Commit";
+
+    @Label("Commit Mode")
+    String mode;
+}
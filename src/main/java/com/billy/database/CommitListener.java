@@ -0,0 +1,15 @@
+package com.billy.database;
+
+/**
+ * Told about every commit of a {@link MapDbWrapper}, whichever {@link CommitMode} made it: a synchronous
+ * write, a {@link GroupCommitter} batch or the periodic commit task. Runs on the committing thread,
+ * so it must be quick, e.g. update a metric.
+ */
+@FunctionalInterface
+public interface CommitListener {
+    /**
+     * @param nanos     how long the commit took, including waiting for the store lock
+     * @param committed false if the commit failed
+     */
+    void committed(long nanos, boolean committed);
+}
@@ -0,0 +1,30 @@
+package com.billy.database;
+
+import java.util.Locale;
+
+/**
+ * Durability modes for writes going through {@link MapDbWrapper}.
+ * <ul>
+ *   <li>{@link #ASYNC} – writes return immediately and are committed by the periodic scheduler.</li>
+ *   <li>{@link #GROUP} – writes wait until a batch containing them has been committed.</li>
+ *   <li>{@link #SYNC} – every write commits before returning.</li>
+ * </ul>
+ */
+public enum CommitMode {
+    ASYNC,
+    GROUP,
+    SYNC;
+
+    /**
+     * Parses a mode name as written in config.properties, e.g. {@code group}.
+     *
+     * @param value the configured value, may be null
+     * @return the matching mode, or {@link #ASYNC} if no value is configured
+     */
+    public static CommitMode fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return ASYNC;
+        }
+        return CommitMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,26 @@
+package com.billy.database;
+
+/**
+ * Commit settings for a {@link MapDbWrapper}.
+ *
+ * @param mode           durability mode
+ * @param maxBatch       number of writes that closes a group commit batch
+ * @param maxDelayMicros maximum time a group commit batch stays open
+ */
+public record CommitPolicy(CommitMode mode, int maxBatch, long maxDelayMicros) {
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 2_000;
+
+    public CommitPolicy {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException("maxDelayMicros must not be negative");
+        }
+    }
+
+    public static CommitPolicy async() {
+        return new CommitPolicy(CommitMode.ASYNC, DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY_MICROS);
+    }
+}
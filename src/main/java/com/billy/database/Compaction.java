@@ -0,0 +1,172 @@
+package com.billy.database;
+
+import com.billy.objects.CompactionPostponement;
+import com.billy.objects.CompactionReport;
+import com.billy.objects.CompactionStatus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs {@link MapDbWrapper#compact(long, Quiescer)} in the background, one file after the other,
+ * either for every file on demand or for the files a {@link CompactionPolicy} finds due.
+ * At most one run is in progress; the reports of the latest compacted files are kept for
+ * {@link #status()}.
+ * <p>
+ * A file whose compaction could not pause the requests, e.g. while an export runs, is retried on its own,
+ * {@link #RETRY_DELAY_MILLIS} later and twice as late after every further postponement, up to
+ * {@link #MAX_RETRY_DELAY_MILLIS}, until it is compacted.
+ */
+public final class Compaction {
+    private static final Logger logger = Logger.getLogger(Compaction.class.getName());
+    static final int KEPT_REPORTS = 16;
+    static final long RETRY_DELAY_MILLIS = 1_000;
+    static final long MAX_RETRY_DELAY_MILLIS = 300_000;
+
+    private final List<MapDbWrapper> stores;
+    private final CompactionPolicy policy;
+    private final Quiescer quiescer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Deque<CompactionReport> reports = new ArrayDeque<>();
+    private final Map<MapDbWrapper, CompactionPostponement> postponed = new LinkedHashMap<>();
+    private final ScheduledExecutorService executor;
+    private volatile String lastError;
+
+    /**
+     * @param stores   every database file, e.g. all shards of all stores
+     * @param policy   trigger and throttling settings
+     * @param quiescer pauses the requests during the swap of a file
+     * @param executor a single thread running the maintenance of the stores one task after the other, also
+     *                 the retries of postponed files; shutting it down interrupts a running compaction,
+     *                 which then deletes its copy
+     */
+    public Compaction(List<MapDbWrapper> stores, CompactionPolicy policy, Quiescer quiescer,
+                      ScheduledExecutorService executor) {
+        this.stores = List.copyOf(stores);
+        this.policy = policy;
+        this.quiescer = quiescer;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts compacting every file.
+     *
+     * @return false if a compaction is already running
+     */
+    public boolean start() {
+        return start(stores);
+    }
+
+    /**
+     * Starts compacting the files that grew past the policy's ratio, if any. Meant to be called periodically.
+     *
+     * @return false if none is due or a compaction is already running
+     */
+    public boolean startIfDue() {
+        List<MapDbWrapper> due = stores.stream()
+                .filter(store -> !store.db().isClosed() && policy.isDue(store.fileSize(), store.compactedBytes()))
+                .toList();
+        return !due.isEmpty() && start(due);
+    }
+
+    private boolean start(List<MapDbWrapper> targets) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(targets);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    private void run(List<MapDbWrapper> targets) {
+        for (MapDbWrapper store : targets) {
+            try {
+                CompactionReport report = store.compact(policy.bytesPerSecond(), quiescer);
+                synchronized (reports) {
+                    if (reports.size() == KEPT_REPORTS) {
+                        reports.removeFirst();
+                    }
+                    reports.addLast(report);
+                }
+                lastError = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lastError = "Interrupted";
+                return;
+            } catch (TimeoutException e) {
+                postpone(store, e.getMessage());
+                continue;
+            } catch (Exception e) {
+                lastError = store.file() + ": " + e;
+                logger.log(Level.SEVERE, "Compaction of " + store.file() + " failed", e);
+            }
+            synchronized (reports) {
+                postponed.remove(store);
+            }
+        }
+    }
+
+    /**
+     * Records a postponed file and schedules its retry with a delay that doubles with every postponement in a row.
+     */
+    private void postpone(MapDbWrapper store, String reason) {
+        long delay;
+        synchronized (reports) {
+            CompactionPostponement previous = postponed.get(store);
+            int attempts = previous == null ? 1 : previous.attempts() + 1;
+            delay = Math.min(RETRY_DELAY_MILLIS << Math.min(attempts - 1, 30), MAX_RETRY_DELAY_MILLIS);
+            postponed.put(store, new CompactionPostponement(store.file(), attempts, reason,
+                    System.currentTimeMillis() + delay));
+        }
+        logger.log(Level.WARNING, String.format("Compaction of %s postponed, retried in %d ms: %s",
+                store.file(), delay, reason));
+        executor.schedule(this::retry, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the postponed files whose retry time has come; if another compaction is running, looks again later.
+     */
+    private void retry() {
+        List<MapDbWrapper> due;
+        long now = System.currentTimeMillis();
+        synchronized (reports) {
+            due = postponed.entrySet().stream()
+                    .filter(entry -> entry.getValue().retryAtMillis() <= now && !entry.getKey().db().isClosed())
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+        if (!due.isEmpty() && !start(due)) {
+            executor.schedule(this::retry, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public CompactionStatus status() {
+        synchronized (reports) {
+            return new CompactionStatus(running.get(), List.copyOf(reports), List.copyOf(postponed.values()),
+                    lastError);
+        }
+    }
+}
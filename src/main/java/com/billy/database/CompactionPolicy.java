@@ -0,0 +1,44 @@
+package com.billy.database;
+
+/**
+ * When and how fast {@link Compaction} rewrites the MapDB files.
+ * <p>
+ * MapDB's transactional store keeps no count of its free space, so fragmentation is measured by growth:
+ * a file is due once it is {@code growthRatio} times the size it had after its last compaction, which on
+ * a store churned by updates and deletes is mostly space freed by old record versions.
+ *
+ * @param growthRatio    size relative to the last compacted size that triggers a compaction, 0 disables the trigger
+ * @param minBytes       files below this size are never compacted by the trigger
+ * @param bytesPerSecond write rate of the copy, 0 for unthrottled
+ * @param maxPauseMillis how long requests may be held while the copy catches up and the file is swapped
+ */
+public record CompactionPolicy(double growthRatio, long minBytes, long bytesPerSecond, long maxPauseMillis) {
+    public static final double DEFAULT_GROWTH_RATIO = 2.0;
+    public static final long DEFAULT_MIN_BYTES = 64L << 20;
+    public static final long DEFAULT_BYTES_PER_SECOND = 32L << 20;
+    public static final long DEFAULT_MAX_PAUSE_MILLIS = 2_000;
+
+    public CompactionPolicy {
+        if (growthRatio < 0 || minBytes < 0 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Compaction settings must not be negative");
+        }
+        if (growthRatio > 0 && growthRatio <= 1) {
+            throw new IllegalArgumentException("growthRatio must be above 1, or 0 to disable the trigger");
+        }
+        if (maxPauseMillis <= 0) {
+            throw new IllegalArgumentException("maxPauseMillis must be positive");
+        }
+    }
+
+    public static CompactionPolicy defaults() {
+        return new CompactionPolicy(DEFAULT_GROWTH_RATIO, DEFAULT_MIN_BYTES, DEFAULT_BYTES_PER_SECOND,
+                DEFAULT_MAX_PAUSE_MILLIS);
+    }
+
+    /**
+     * @return whether a file of this size, last compacted to {@code compactedBytes}, is due
+     */
+    public boolean isDue(long fileBytes, long compactedBytes) {
+        return growthRatio > 0 && fileBytes >= minBytes && fileBytes > growthRatio * compactedBytes;
+    }
+}
@@ -0,0 +1,273 @@
+package com.billy.database;
+
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.serializer.GroupSerializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Copies the named collections of a live MapDB store into a new file, which then holds the records
+ * packed without the free space left behind by updates and deletes.
+ * <p>
+ * {@link #copy()} bulk-loads every tree map and tree set in key order while the store keeps serving,
+ * throttled to a write rate. From its start the source tells the compactor every key written, see
+ * {@link MapDbWrapper#changed(String, Object)}, and {@link #catchUp()}, run while nothing writes to the
+ * store, copies just those keys again and then the atomics, so it takes as long as the writes made during
+ * the copy, not as long as the collections are large.
+ * <p>
+ * Collections are copied with the serializers they were registered with through
+ * {@link MapDbWrapper#treeMap(String, GroupSerializer, GroupSerializer)} and
+ * {@link MapDbWrapper#treeSet(String, GroupSerializer)}; a tree collection of the store that nobody
+ * registered cannot be copied.
+ */
+final class Compactor implements AutoCloseable {
+    static final String TREE_MAP = "TreeMap";
+    static final String TREE_SET = "TreeSet";
+    private static final int CHECK_EVERY = 1_024;
+
+    /**
+     * A collection opened through {@link MapDbWrapper}, with what it takes to copy it.
+     */
+    sealed interface Source permits MapSource, SetSource {
+    }
+
+    /**
+     * A tree map opened through {@link MapDbWrapper}, with the serializers to create its copy.
+     */
+    record MapSource<K, V>(BTreeMap<K, V> live, GroupSerializer<K> keys, GroupSerializer<V> values)
+            implements Source {
+    }
+
+    /**
+     * A tree set opened through {@link MapDbWrapper}, with the serializer to create its copy.
+     */
+    record SetSource<E>(NavigableSet<E> live, GroupSerializer<E> serializer) implements Source {
+    }
+
+    private final MapDbWrapper source;
+    private final DB target;
+    private final Path targetFile;
+    private final long bytesPerSecond;
+    private final Predicate<String> names;
+    private final Map<String, Object> copies = new HashMap<>();
+    private final Map<String, NavigableSet<Object>> changed = new ConcurrentHashMap<>();
+    private long entries;
+    private long changes;
+    private long startNanos;
+
+    /**
+     * @param source         the live store
+     * @param target         the empty store the collections are copied into
+     * @param targetFile     file of the target, whose size measures the bytes written
+     * @param bytesPerSecond write rate of {@link #copy()}, 0 for unthrottled
+     */
+    Compactor(MapDbWrapper source, DB target, Path targetFile, long bytesPerSecond) {
+        this(source, target, targetFile, bytesPerSecond, name -> true);
+    }
+
+    /**
+     * Copies only the collections whose name is accepted, e.g. the tables of a snapshot.
+     */
+    Compactor(MapDbWrapper source, DB target, Path targetFile, long bytesPerSecond, Predicate<String> names) {
+        this.source = source;
+        this.target = target;
+        this.targetFile = targetFile;
+        this.bytesPerSecond = bytesPerSecond;
+        this.names = names;
+    }
+
+    /**
+     * @return the copy of a collection, once {@link #copy()} or {@link #catchUp()} created it
+     */
+    @SuppressWarnings("unchecked")
+    <T> T copyOf(String name) {
+        return (T) copies.get(name);
+    }
+
+    long entries() {
+        return entries;
+    }
+
+    long changes() {
+        return changes;
+    }
+
+    /**
+     * Starts recording the changed keys, then copies every tree map and tree set as it is being read.
+     *
+     * @throws IllegalStateException if the store holds a collection that cannot be copied
+     * @throws InterruptedException  if interrupted, e.g. on shutdown
+     */
+    void copy() throws IOException, InterruptedException {
+        startNanos = System.nanoTime();
+        source.track(this);
+        DB db = source.db();
+        for (String name : db.getAllNames()) {
+            if (!names.test(name)) {
+                continue;
+            }
+            String type = typeOf(db, name);
+            switch (type) {
+                case TREE_MAP, TREE_SET -> copyCollection(name, true);
+                case "AtomicLong", "AtomicInteger", "AtomicBoolean", "AtomicString" -> {
+                }
+                default -> throw new IllegalStateException("Cannot compact " + type + " " + name);
+            }
+        }
+    }
+
+    /**
+     * Brings the copy up to date with the keys changed since {@link #copy()} started and copies the atomics.
+     * Must run while nothing writes to the source, and is not throttled.
+     */
+    void catchUp() throws IOException, InterruptedException {
+        DB db = source.db();
+        for (String name : db.getAllNames()) {
+            if (!names.test(name)) {
+                continue;
+            }
+            String type = typeOf(db, name);
+            switch (type) {
+                case TREE_MAP, TREE_SET -> {
+                    if (copies.containsKey(name)) {
+                        catchUpCollection(name);
+                    } else {
+                        copyCollection(name, false);
+                    }
+                }
+                case "AtomicLong" -> target.atomicLong(name, db.atomicLong(name).open().get()).create();
+                case "AtomicInteger" -> target.atomicInteger(name, db.atomicInteger(name).open().get()).create();
+                case "AtomicBoolean" -> target.atomicBoolean(name, db.atomicBoolean(name).open().get()).create();
+                case "AtomicString" -> target.atomicString(name, db.atomicString(name).open().get()).create();
+                default -> throw new IllegalStateException("Cannot compact " + type + " " + name);
+            }
+        }
+    }
+
+    /**
+     * Stops recording changes.
+     */
+    @Override
+    public void close() {
+        source.untrack(this);
+    }
+
+    /**
+     * Records a key written to a collection of the source. Called by writers on any thread.
+     */
+    void changed(String name, Object key) {
+        NavigableSet<Object> keys = changed.get(name);
+        if (keys != null) {
+            keys.add(key);
+        }
+    }
+
+    private static String typeOf(DB db, String name) {
+        return db.nameCatalogParamsFor(name).get(name + DB.Keys.INSTANCE.getType());
+    }
+
+    private Source sourceOf(String name) {
+        Source collection = source.collection(name);
+        if (collection == null) {
+            throw new IllegalStateException("Cannot compact " + name + ", it was not opened through MapDbWrapper");
+        }
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void copyCollection(String name, boolean throttled) throws IOException, InterruptedException {
+        switch (sourceOf(name)) {
+            case MapSource<?, ?> map -> copyMap(name, (MapSource<Object, Object>) map, throttled);
+            case SetSource<?> set -> copySet(name, (SetSource<Object>) set, throttled);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void catchUpCollection(String name) {
+        NavigableSet<Object> keys = changed.get(name);
+        switch (sourceOf(name)) {
+            case MapSource<?, ?> map -> {
+                BTreeMap<Object, Object> live = ((MapSource<Object, Object>) map).live();
+                BTreeMap<Object, Object> copy = copyOf(name);
+                for (Object key : keys) {
+                    Object value = live.get(key);
+                    if (value == null) {
+                        copy.remove(key);
+                    } else {
+                        copy.put(key, value);
+                    }
+                }
+            }
+            case SetSource<?> set -> {
+                NavigableSet<Object> live = ((SetSource<Object>) set).live();
+                NavigableSet<Object> copy = copyOf(name);
+                for (Object element : keys) {
+                    if (live.contains(element)) {
+                        copy.add(element);
+                    } else {
+                        copy.remove(element);
+                    }
+                }
+            }
+        }
+        changes += keys.size();
+    }
+
+    private <K, V> void copyMap(String name, MapSource<K, V> map, boolean throttled)
+            throws IOException, InterruptedException {
+        changed.put(name, new ConcurrentSkipListSet<>(castComparator(map.keys())));
+        DB.TreeMapSink<K, V> sink = target.treeMap(name, map.keys(), map.values()).createFromSink();
+        for (Map.Entry<K, V> entry : map.live().entrySet()) {
+            sink.put(entry.getKey(), entry.getValue());
+            copied(throttled);
+        }
+        copies.put(name, sink.create());
+    }
+
+    private <E> void copySet(String name, SetSource<E> set, boolean throttled)
+            throws IOException, InterruptedException {
+        changed.put(name, new ConcurrentSkipListSet<>(castComparator(set.serializer())));
+        NavigableSet<E> copy = target.treeSet(name, set.serializer()).create();
+        copies.put(name, copy);
+        for (E element : set.live()) {
+            copy.add(element);
+            copied(throttled);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> castComparator(GroupSerializer<?> serializer) {
+        return (Comparator<Object>) serializer;
+    }
+
+    /**
+     * Counts a copied entry and, every {@link #CHECK_EVERY} entries, checks for interruption and sleeps
+     * as long as the bytes written so far are ahead of the rate.
+     */
+    private void copied(boolean throttled) throws IOException, InterruptedException {
+        if (++entries % CHECK_EVERY != 0 || !throttled) {
+            return;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Compaction interrupted");
+        }
+        if (bytesPerSecond > 0) {
+            long dueNanos = (long) (Files.size(targetFile) * 1e9 / bytesPerSecond);
+            long aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+            if (aheadNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            }
+        }
+    }
+}
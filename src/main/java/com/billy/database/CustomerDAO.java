@@ -2,12 +2,24 @@ package com.billy.database;
 
 import com.billy.objects.Customer;
 import com.billy.objects.CustomerUpdateRequest;
-import org.mapdb.Atomic;
+import com.billy.objects.Page;
+import com.billy.objects.Versioned;
 import org.mapdb.BTreeMap;
 import org.mapdb.Serializer;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,22 +27,179 @@ import java.util.logging.Logger;
  * Data Access Object (DAO) for Customer entities using MapDB.
  * Provides CRUD operations, iteration, and persistent storage
  * with periodic commits and safe shutdown handling.
+ * Lookups by ID and email go through an optional {@link RecordCache} that every write invalidates.
+ * Records are stored {@link Versioned}: the version starts at 1 and grows with every update.
+ * Finds and writes of single records are timed by {@link DaoEvent} JFR events.
  */
 public class CustomerDAO {
     private static final Logger logger = Logger.getLogger(CustomerDAO.class.getName());
-    public static final String TABLE_NAME = "customers";
+    public static final String TABLE_NAME = "customer_records";
+    public static final String LEGACY_TABLE_NAME = "customers";
+    public static final String FORMAT_NAME = "customer_format";
     public static final String SEQUENCE_NAME = "customer_seq";
-    private final BTreeMap<Long, Customer> customers;
-    private final Atomic.Long customerIdSeq;
+    public static final String EMAIL_INDEX_NAME = "customer_email_index";
+    public static final String EMAIL_ALREADY_IN_USE = "Email already in use: %s";
+    private final Shards shards;
+    private final CustomerSerializer serializer = new CustomerSerializer();
+    private final List<BTreeMap<Long, Versioned<Customer>>> customers;
+    private final List<BTreeMap<String, Long>> emailIndex;
+    private final List<IdAllocator> customerIds;
+    private final Map<String, Long> claims = new ConcurrentHashMap<>();
+    private final RecordCache<Versioned<Customer>> cache;
+    private final AtomicLong tableVersion = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final List<LongConsumer> changeListeners = new CopyOnWriteArrayList<>();
 
     public CustomerDAO(MapDbWrapper dbWrapper) {
-        customerIdSeq = dbWrapper.db().atomicLong(SEQUENCE_NAME).createOrOpen();
+        this(dbWrapper, 0);
+    }
+
+    /**
+     * @param dbWrapper     the database holding the customer tables
+     * @param cacheMaxBytes capacity of the read cache in estimated bytes, 0 disables it
+     */
+    public CustomerDAO(MapDbWrapper dbWrapper, long cacheMaxBytes) {
+        this(Shards.single(dbWrapper), cacheMaxBytes);
+    }
+
+    /**
+     * Opens the customer tables partitioned across shards. Each shard holds the customers whose ID it
+     * allocates and the part of the unique email index for the emails that hash to it.
+     *
+     * @param shards        the database files holding the customer tables
+     * @param cacheMaxBytes capacity of the read cache in estimated bytes, 0 disables it
+     */
+    public CustomerDAO(Shards shards, long cacheMaxBytes) {
+        this.shards = shards;
+        this.cache = new RecordCache<>(cacheMaxBytes, CustomerDAO::weigh);
+        this.customers = new CopyOnWriteArrayList<>();
+        this.emailIndex = new CopyOnWriteArrayList<>();
+        this.customerIds = new CopyOnWriteArrayList<>();
+        for (MapDbWrapper shard : shards.all()) {
+            customerIds.add(new IdAllocator(shard, SEQUENCE_NAME));
+            BTreeMap<Long, Versioned<Customer>> table = openTable(shard);
+            StorageFormat.openOrMigrate(shard, FORMAT_NAME, LEGACY_TABLE_NAME, table);
+            customers.add(table);
+            emailIndex.add(openEmailIndex(shard));
+            int index = customers.size() - 1;
+            shard.onReopen(() -> reopen(index, shard));
+        }
+        if (emailIndex.stream().allMatch(BTreeMap::isEmpty) && customers.stream().anyMatch(table -> !table.isEmpty())) {
+            rebuildEmailIndex();
+        }
+    }
+
+    private BTreeMap<Long, Versioned<Customer>> openTable(MapDbWrapper shard) {
+        return shard.treeMap(TABLE_NAME, Serializer.LONG, serializer);
+    }
+
+    private static BTreeMap<String, Long> openEmailIndex(MapDbWrapper shard) {
+        return shard.treeMap(EMAIL_INDEX_NAME, Serializer.STRING, Serializer.LONG);
+    }
+
+    /**
+     * Reopens the tables of a shard after its database was replaced by a compaction.
+     */
+    private void reopen(int index, MapDbWrapper shard) {
+        customerIds.set(index, new IdAllocator(shard, SEQUENCE_NAME));
+        customers.set(index, openTable(shard));
+        emailIndex.set(index, openEmailIndex(shard));
+    }
+
+    private BTreeMap<Long, Versioned<Customer>> table(long id) {
+        return customers.get(shards.shardOf(id));
+    }
+
+    private BTreeMap<String, Long> emailIndexOf(String key) {
+        return emailIndex.get(shards.shardOf(key));
+    }
+
+    private void rebuildEmailIndex() {
+        int indexed = 0;
+        for (Customer customer : (Iterable<Customer>) this::iteratorAllCustomers) {
+            String key = emailKey(customer.email());
+            if (key == null) {
+                continue;
+            }
+            Long previous = emailIndexOf(key).putIfAbsent(key, customer.id());
+            if (previous != null) {
+                logger.log(Level.WARNING, String.format("Customer %d shares email with customer %d, not indexed",
+                        customer.id(), previous));
+            } else {
+                indexed++;
+            }
+        }
+        shards.commit();
+        logger.log(Level.INFO, String.format("Rebuilt %s with %d entries", EMAIL_INDEX_NAME, indexed));
+    }
 
-        @SuppressWarnings("unchecked")
-        BTreeMap<Long, Customer> map = (BTreeMap<Long, Customer>) dbWrapper.db()
-                .treeMap(TABLE_NAME, Serializer.LONG, Serializer.JAVA)
-                .createOrOpen();
-        this.customers = map;
+    private static int weigh(Versioned<Customer> record) {
+        Customer customer = record.value();
+        return RecordCache.RECORD_OVERHEAD
+                + RecordCache.stringBytes(customer.name())
+                + RecordCache.stringBytes(customer.lastName())
+                + RecordCache.stringBytes(customer.gender())
+                + RecordCache.stringBytes(customer.email());
+    }
+
+    /**
+     * Normalizes an email for the unique index: emails are compared ignoring case and surrounding spaces.
+     */
+    static String emailKey(String email) {
+        return email == null || email.isBlank() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Claims an email for a customer until {@link #claimDone(String, long)} once the record is written.
+     * With several shards the index entry and the record live in different files that commit separately,
+     * so after a crash an entry may point at a customer that was never stored or has another email; such an
+     * entry is taken over instead of rejecting the email. Claims in progress are tracked in memory so that
+     * an entry whose record is still being written is never mistaken for one.
+     */
+    private void claimEmail(String key, long id) {
+        if (key == null) {
+            return;
+        }
+        Long claimant = claims.putIfAbsent(key, id);
+        if (claimant != null && claimant != id) {
+            throw new DuplicateKeyException(String.format(EMAIL_ALREADY_IN_USE, key), key);
+        }
+        try {
+            BTreeMap<String, Long> index = emailIndexOf(key);
+            shards.touched(shards.shardOf(key));
+            while (true) {
+                Long owner = index.putIfAbsent(key, id);
+                if (owner == null || owner == id) {
+                    return;
+                }
+                if (ownsEmail(owner, key)) {
+                    throw new DuplicateKeyException(String.format(EMAIL_ALREADY_IN_USE, key), key);
+                }
+                if (index.replace(key, owner, id)) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            claims.remove(key, id);
+            throw e;
+        }
+    }
+
+    private void claimDone(String key, long id) {
+        if (key != null) {
+            claims.remove(key, id);
+        }
+    }
+
+    private boolean ownsEmail(long id, String key) {
+        Versioned<Customer> owner = table(id).get(id);
+        return owner != null && key.equals(emailKey(owner.value().email()));
+    }
+
+    private void releaseEmail(String key, long id) {
+        if (key != null) {
+            emailIndexOf(key).remove(key, id);
+            shards.touched(shards.shardOf(key));
+        }
     }
 
     /**
@@ -38,32 +207,81 @@ public class CustomerDAO {
      *
      * @param customer the customer to save
      * @return the saved customer with assigned ID
+     * @throws DuplicateKeyException if another customer already uses the email
      */
     public Optional<Customer> save(Customer customer) {
         if (customer == null) {
             return Optional.empty();
         }
-        long id = customerIdSeq.incrementAndGet();
-        Customer customerWithId = new Customer(id, customer);
-        customers.put(id, customerWithId);
-        return Optional.of(customerWithId);
+        DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.SAVE);
+        int shard = shards.nextShard();
+        Customer saved = shards.write(shard, () -> {
+            long id = shards.recordId(shard, customerIds.get(shard).next());
+            Customer customerWithId = new Customer(id, customer);
+            String key = emailKey(customerWithId.email());
+            claimEmail(key, id);
+            try {
+                customers.get(shard).put(id, Versioned.first(customerWithId));
+            } finally {
+                claimDone(key, id);
+            }
+            changed(id);
+            return customerWithId;
+        });
+        event.finish(saved.id(), Versioned.FIRST, saved, serializer);
+        return Optional.of(saved);
     }
 
     /**
-     * Finds a customer by ID.
+     * Finds a customer by ID, through the read cache when enabled.
      *
      * @param id the customer ID as Long
      * @return the customer if found, otherwise null
      */
     public Optional<Customer> find(long id) {
+        return findVersioned(id).map(Versioned::value);
+    }
+
+    /**
+     * Finds a customer with its version by ID, through the read cache when enabled.
+     *
+     * @param id the customer ID
+     * @return the customer and its version if found
+     */
+    public Optional<Versioned<Customer>> findVersioned(long id) {
         try {
-            return Optional.ofNullable(customers.get(id));
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.FIND);
+            Versioned<Customer> found = cache.getOrLoad(id, key -> table(key).get(key));
+            event.finish(id, found, serializer);
+            return Optional.ofNullable(found);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to find customer " + id, e);
             return Optional.empty();
         }
     }
 
+    /**
+     * Finds a customer by email through the unique email index.
+     *
+     * @param email the email, compared ignoring case
+     * @return the customer if found
+     */
+    public Optional<Customer> findByEmail(String email) {
+        String key = emailKey(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        try {
+            Long id = emailIndexOf(key).get(key);
+            return id == null ? Optional.empty() : Optional.ofNullable(cache.getOrLoad(id, k -> table(k).get(k)))
+                    .map(Versioned::value)
+                    .filter(customer -> key.equals(emailKey(customer.email())));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to find customer by email", e);
+            return Optional.empty();
+        }
+    }
+
     /**
      * Deletes a customer by ID.
      *
@@ -71,21 +289,134 @@ public class CustomerDAO {
      * @return true if the customer was removed, false otherwise
      */
     public boolean delete(long id) {
+        return delete(id, Versioned.ANY);
+    }
+
+    /**
+     * Deletes a customer by ID if it still has the expected version.
+     *
+     * @param id              the customer ID
+     * @param expectedVersion the version the caller read, or {@link Versioned#ANY}
+     * @return true if the customer was removed, false if it does not exist
+     * @throws VersionConflictException if the customer has another version
+     * @throws IllegalStateException    if the deletion could not be made durable, e.g. a failed group commit
+     */
+    public boolean delete(long id, long expectedVersion) {
         try {
-            return customers.remove(id) != null;
-        } catch (Exception e) {
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.DELETE);
+            BTreeMap<Long, Versioned<Customer>> table = table(id);
+            boolean deleted = shards.write(shards.shardOf(id), () -> {
+                while (true) {
+                    Versioned<Customer> current = table.get(id);
+                    if (current == null) {
+                        return false;
+                    }
+                    if (!current.matches(expectedVersion)) {
+                        throw new VersionConflictException(id, expectedVersion, current.version());
+                    }
+                    if (table.remove(id, current)) {
+                        changed(id);
+                        releaseEmail(emailKey(current.value().email()), id);
+                        return true;
+                    }
+                }
+            });
+            event.finish(id, null, serializer);
+            return deleted;
+        } catch (VersionConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
             logger.log(Level.SEVERE, "Failed to delete customer " + id, e);
-            return false;
+            throw e;
+        }
+    }
+
+    /**
+     * Applies many writes with a single durability wait per shard, see {@link MapDbWrapper#batch(Supplier)}.
+     *
+     * @param work the writes to apply through this DAO
+     * @return the result of the work
+     */
+    public <T> T batch(Supplier<T> work) {
+        return shards.batch(work);
+    }
+
+    /**
+     * Registers a callback invoked with the ID of every saved, updated or deleted record,
+     * after the store was changed.
+     *
+     * @param listener receives the changed ID
+     */
+    public void addChangeListener(LongConsumer listener) {
+        changeListeners.add(listener);
+    }
+
+    private void changed(long id) {
+        tableVersion.incrementAndGet();
+        cache.invalidate(id);
+        for (LongConsumer listener : changeListeners) {
+            listener.accept(id);
         }
     }
 
+    /**
+     * Returns a value that changes whenever a customer is saved, updated or deleted.
+     * It starts from a random value on every open, so it also changes across restarts.
+     *
+     * @return the current version of the whole table
+     */
+    public long tableVersion() {
+        return tableVersion.get();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the read cache
+     */
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
     /**
      * Returns an iterator over all customers.
      *
      * @return iterator for streaming customers
      */
     public Iterator<Customer> iteratorAllCustomers() {
-        return customers.values().iterator();
+        return iteratorCustomersAfter(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the customers with an ID greater than {@code afterId}, in ID order.
+     * Backed by a lazy range scan of the B-tree of each shard, merged in ID order, so an export can resume from any ID.
+     *
+     * @param afterId exclusive lower bound of the IDs
+     * @return iterator for streaming customers
+     */
+    public Iterator<Customer> iteratorCustomersAfter(long afterId) {
+        List<Iterator<Customer>> scans = new ArrayList<>(customers.size());
+        for (BTreeMap<Long, Versioned<Customer>> table : customers) {
+            scans.add(Versioned.values(table.tailMap(afterId, false).values().iterator()));
+        }
+        return Shards.mergeById(scans, Customer::id);
+    }
+
+    /**
+     * Returns up to {@code limit} customers with an ID greater than {@code afterId}, in ID order.
+     * Backed by a range scan of the B-tree of each shard, so the cost does not depend on the table size;
+     * with several shards each one is read in parallel and the parts are merged in ID order.
+     *
+     * @param afterId exclusive lower bound of the IDs to return
+     * @param limit   maximum number of customers in the page
+     * @return the page, with the cursor of the next page if more customers follow
+     */
+    public Page<Customer> findPage(long afterId, int limit) {
+        List<Customer> data = new ArrayList<>(limit);
+        Iterator<Customer> it = Shards.scanPage(customers, afterId, limit, Customer::id);
+        while (data.size() < limit && it.hasNext()) {
+            data.add(it.next());
+        }
+        Long next = it.hasNext() && !data.isEmpty() ? data.get(data.size() - 1).id() : null;
+        return new Page<>(data, next);
     }
 
     /**
@@ -93,24 +424,83 @@ public class CustomerDAO {
      *
      * @param updated the update request
      * @return Optional containing updated customer if present
+     * @throws DuplicateKeyException if the new email is used by another customer
      */
     public Optional<Customer> update(long idToUpdate, CustomerUpdateRequest updated) {
+        return update(idToUpdate, updated, Versioned.ANY).map(Versioned::value);
+    }
+
+    /**
+     * Updates an existing customer if it still has the expected version.
+     * The record is replaced with a compare-and-set, so concurrent updates never overwrite each
+     * other: without an expected version a lost race is retried on the fresh record, with one it fails.
+     * A changed email is claimed in the index before the record is replaced and the old email
+     * is released afterwards, so the index never points at a customer with another email.
+     *
+     * @param idToUpdate      the customer ID
+     * @param updated         the update request
+     * @param expectedVersion the version the caller read, or {@link Versioned#ANY}
+     * @return the updated customer with its new version, or empty if not found
+     * @throws DuplicateKeyException    if the new email is used by another customer
+     * @throws VersionConflictException if the customer has another version
+     * @throws IllegalStateException    if the update could not be made durable, e.g. a failed group commit
+     */
+    public Optional<Versioned<Customer>> update(long idToUpdate, CustomerUpdateRequest updated, long expectedVersion) {
         try {
             if (updated == null) {
                 return Optional.empty();
             }
-            return Optional.ofNullable(
-                    customers.computeIfPresent(idToUpdate, (id, existing) -> new Customer(
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.UPDATE);
+            BTreeMap<Long, Versioned<Customer>> table = table(idToUpdate);
+            Optional<Versioned<Customer>> result = shards.write(shards.shardOf(idToUpdate), () -> {
+                while (true) {
+                    Versioned<Customer> current = table.get(idToUpdate);
+                    if (current == null) {
+                        return Optional.<Versioned<Customer>>empty();
+                    }
+                    if (!current.matches(expectedVersion)) {
+                        throw new VersionConflictException(idToUpdate, expectedVersion, current.version());
+                    }
+                    Customer existing = current.value();
+                    Customer merged = new Customer(
                             existing.id(),
                             updated.name().orElse(existing.name()),
                             updated.lastName().orElse(existing.lastName()),
                             updated.gender().orElse(existing.gender()),
                             updated.email().orElse(existing.email())
-                    ))
-            );
-        } catch (Exception e) {
+                    );
+                    String oldKey = emailKey(existing.email());
+                    String newKey = emailKey(merged.email());
+                    boolean emailChanged = !Objects.equals(oldKey, newKey);
+                    if (emailChanged) {
+                        claimEmail(newKey, idToUpdate);
+                    }
+                    Versioned<Customer> next = current.next(merged);
+                    boolean replaced;
+                    try {
+                        replaced = table.replace(idToUpdate, current, next);
+                    } finally {
+                        claimDone(emailChanged ? newKey : null, idToUpdate);
+                    }
+                    if (replaced) {
+                        changed(idToUpdate);
+                        if (emailChanged) {
+                            releaseEmail(oldKey, idToUpdate);
+                        }
+                        return Optional.of(next);
+                    }
+                    if (emailChanged) {
+                        releaseEmail(newKey, idToUpdate);
+                    }
+                }
+            });
+            event.finish(idToUpdate, result.orElse(null), serializer);
+            return result;
+        } catch (DuplicateKeyException | VersionConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
             logger.log(Level.SEVERE, "Failed to update customer " + idToUpdate, e);
-            return Optional.empty();
+            throw e;
         }
     }
 }
@@ -0,0 +1,52 @@
+package com.billy.database;
+
+import com.billy.objects.Customer;
+import com.billy.objects.Versioned;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.serializer.GroupSerializerObjectArray;
+
+import java.io.IOException;
+
+import static com.billy.database.RecordIO.readString;
+import static com.billy.database.RecordIO.unknownLayout;
+import static com.billy.database.RecordIO.writeString;
+
+/**
+ * Compact MapDB serializer for versioned {@link Customer} records.
+ * Layout: layout byte, packed version, packed id, then name, last name, gender and email as UTF-8 strings.
+ * Records of the unversioned {@link #LAYOUT_V1} read as {@link Versioned#UNVERSIONED}.
+ */
+public class CustomerSerializer extends GroupSerializerObjectArray<Versioned<Customer>> {
+    static final int LAYOUT_V1 = 1;
+    static final int LAYOUT_V2 = 2;
+
+    @Override
+    public void serialize(DataOutput2 out, Versioned<Customer> record) throws IOException {
+        Customer value = record.value();
+        out.writeByte(LAYOUT_V2);
+        out.packLong(record.version());
+        out.packLong(value.id());
+        writeString(out, value.name());
+        writeString(out, value.lastName());
+        writeString(out, value.gender());
+        writeString(out, value.email());
+    }
+
+    @Override
+    public Versioned<Customer> deserialize(DataInput2 in, int available) throws IOException {
+        int layout = in.readUnsignedByte();
+        long version = switch (layout) {
+            case LAYOUT_V1 -> Versioned.UNVERSIONED;
+            case LAYOUT_V2 -> in.unpackLong();
+            default -> throw unknownLayout(layout, "customer");
+        };
+        long id = in.unpackLong();
+        return new Versioned<>(version, new Customer(id, readString(in), readString(in), readString(in), readString(in)));
+    }
+
+    @Override
+    public boolean isTrusted() {
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+package com.billy.database;
+
+import com.billy.objects.Versioned;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import java.io.IOException;
+
+/**
+ * JFR event of one DAO operation: table, operation, record ID and the serialized size of the record.
+ * The duration covers the B-tree access and, for writes, the wait for durability, so it can be told apart
+ * from the time spent in the handler and in {@link CommitEvent commits}.
+ * <p>
+ * When the event is disabled {@link #start} and {@link #finish} reduce to a few intrinsic checks on an
+ * event the JIT can scalar-replace; the record is only serialized again for its size when the event is committed.
+ */
+@Name(DaoEvent.NAME)
+@Label("DAO Operation")
+@Category({"Undertow App", "Database"})
+@Description("A read or write of one record through a DAO")
+@StackTrace(false)
+@Threshold("1 ms")
+final class DaoEvent extends Event {
+    static final String NAME = "com.billy.DaoOperation";
+    static final String FIND = "find";
+    static final String SAVE = "save";
+    static final String UPDATE = "update";
+    static final String DELETE = "delete";
+
+    @Label("Table")
+    String table;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    long key;
+
+    @Label("Serialized Size")
+    @DataAmount
+    long size;
+
+    /**
+     * Begins timing an operation.
+     */
+    static DaoEvent start(String table, String operation) {
+        DaoEvent event = new DaoEvent();
+        event.table = table;
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the operation and commits the event if it is enabled and over its threshold.
+     *
+     * @param key        the record ID
+     * @param version    the version of the record read or written
+     * @param value      the record read or written, null if there was none
+     * @param serializer the serializer of the table, used for the size
+     */
+    <V> void finish(long key, long version, V value, Serializer<Versioned<V>> serializer) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.key = key;
+        this.size = value == null ? 0 : serializedSize(new Versioned<>(version, value), serializer);
+        commit();
+    }
+
+    /**
+     * Ends the operation on a stored record, see {@link #finish(long, long, Object, Serializer)}.
+     *
+     * @param record the record read or written, null if there was none
+     */
+    <V> void finish(long key, Versioned<V> record, Serializer<Versioned<V>> serializer) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.key = key;
+        this.size = record == null ? 0 : serializedSize(record, serializer);
+        commit();
+    }
+
+    private static <V> long serializedSize(Versioned<V> record, Serializer<Versioned<V>> serializer) {
+        DataOutput2 out = new DataOutput2();
+        try {
+            serializer.serialize(out, record);
+            return out.pos;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.billy.database;
+
+/**
+ * Thrown when a write would violate a unique index, e.g. a second customer with the same email.
+ */
+public class DuplicateKeyException extends RuntimeException {
+    private final String key;
+
+    public DuplicateKeyException(String message, String key) {
+        super(message);
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
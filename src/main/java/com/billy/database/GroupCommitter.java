@@ -0,0 +1,140 @@
+package com.billy.database;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batches durability requests from concurrent writers into shared commits.
+ * A batch is committed once it holds {@code maxBatch} writes or has been open
+ * for {@code maxDelayMicros}, whichever comes first. Writers block in
+ * {@link #awaitDurable()} until the batch they joined has been committed.
+ */
+final class GroupCommitter implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(GroupCommitter.class.getName());
+    static final String THREAD_NAME = "GroupCommitter";
+
+    private final Runnable commitAction;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition batchDone = lock.newCondition();
+    private final Thread thread;
+
+    private Batch open = new Batch();
+    private volatile boolean running = true;
+
+    GroupCommitter(Runnable commitAction, int maxBatch, long maxDelayMicros) {
+        this.commitAction = commitAction;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.thread = new Thread(this::run, THREAD_NAME);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Joins the open batch and blocks until it has been committed.
+     *
+     * @throws IllegalStateException if the commit of the batch failed or the committer is closed
+     */
+    void awaitDurable() {
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Group committer is closed");
+            }
+            Batch batch = open;
+            if (batch.writes++ == 0) {
+                batch.openedAt = System.nanoTime();
+                batchReady.signal();
+            } else if (batch.writes >= maxBatch) {
+                batchReady.signal();
+            }
+            while (!batch.done) {
+                batchDone.awaitUninterruptibly();
+            }
+            if (batch.failure != null) {
+                throw new IllegalStateException("Group commit failed", batch.failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                while (running && open.writes == 0) {
+                    batchReady.awaitUninterruptibly();
+                }
+                if (open.writes == 0) {
+                    return;
+                }
+                long deadline = open.openedAt + maxDelayNanos;
+                long remaining;
+                while (running && open.writes < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+                    batchReady.awaitNanos(remaining);
+                }
+                batch = open;
+                open = new Batch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(Batch batch) {
+        RuntimeException failure = null;
+        try {
+            commitAction.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Group commit failed", e);
+            failure = e;
+        }
+        lock.lock();
+        try {
+            batch.failure = failure;
+            batch.done = true;
+            batchDone.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits any pending batch and stops the committer thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Batch {
+        int writes;
+        long openedAt;
+        boolean done;
+        RuntimeException failure;
+    }
+}
@@ -0,0 +1,74 @@
+package com.billy.database;
+
+import org.mapdb.Atomic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out record IDs from blocks reserved on a persistent sequence.
+ * The sequence holds the highest ID ever reserved. A block is reserved by advancing it by
+ * {@link #DEFAULT_BLOCK_SIZE} and committing before any ID of the block is used, so after a
+ * crash allocation restarts above every ID handed out; only the unused rest of a block is lost.
+ * Inside a block IDs are taken with a single atomic increment, so concurrent saves never touch the store.
+ */
+final class IdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 1_000;
+
+    private final MapDbWrapper dbWrapper;
+    private final Atomic.Long sequence;
+    private final int blockSize;
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block block = new Block(1, 0);
+
+    IdAllocator(MapDbWrapper dbWrapper, String sequenceName) {
+        this(dbWrapper, sequenceName, DEFAULT_BLOCK_SIZE);
+    }
+
+    IdAllocator(MapDbWrapper dbWrapper, String sequenceName, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be > 0");
+        }
+        this.dbWrapper = dbWrapper;
+        this.sequence = dbWrapper.db().atomicLong(sequenceName).createOrOpen();
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next unused ID. IDs increase within a block but may interleave between threads.
+     */
+    long next() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id <= current.last) {
+                return id;
+            }
+            refill(current);
+        }
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            if (block != exhausted) {
+                return;
+            }
+            long last = sequence.addAndGet(blockSize);
+            dbWrapper.commit();
+            block = new Block(last - blockSize + 1, last);
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long last;
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+}
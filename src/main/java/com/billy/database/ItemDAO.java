@@ -1,35 +1,150 @@
 package com.billy.database;
 
 import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
 import com.billy.objects.ItemUpdateRequest;
-import org.mapdb.Atomic;
+import com.billy.objects.Page;
+import com.billy.objects.Versioned;
 import org.mapdb.BTreeMap;
-import org.mapdb.HTreeMap;
 import org.mapdb.Serializer;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Data Access Object (DAO) for Item entities using MapDB.
+ * Keeps secondary indexes on color, weight and size in sync with every write;
+ * records are written with compare-and-set like {@link CustomerDAO}, and only the index maintenance
+ * of one ID is serialized by lock striping, see {@link #reindex(int, long, Item)}.
+ * Lookups by ID go through an optional {@link RecordCache} that every write invalidates.
+ * Records are stored {@link Versioned}: the version starts at 1 and grows with every update.
+ * Finds and writes of single records are timed by {@link DaoEvent} JFR events.
  */
 public class ItemDAO {
     private static final Logger logger = Logger.getLogger(ItemDAO.class.getName());
-    public static final String TABLE_NAME = "items";
+    public static final String TABLE_NAME = "item_records";
+    public static final String LEGACY_TABLE_NAME = "items";
+    public static final String FORMAT_NAME = "item_format";
     public static final String SEQUENCE_NAME = "item_seq";
-    private final BTreeMap<Long, Item> items;
-    private final Atomic.Long itemIdSeq;
+    private static final int LOCK_STRIPES = 64;
+    private final Shards shards;
+    private final ItemSerializer serializer = new ItemSerializer();
+    private final List<BTreeMap<Long, Versioned<Item>>> items;
+    private final List<ItemIndexes> indexes;
+    private final List<IdAllocator> itemIds;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final RecordCache<Versioned<Item>> cache;
+    private final AtomicLong tableVersion = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final List<LongConsumer> changeListeners = new CopyOnWriteArrayList<>();
 
     public ItemDAO(MapDbWrapper dbWrapper) {
-        itemIdSeq = dbWrapper.db().atomicLong(SEQUENCE_NAME).createOrOpen();
+        this(dbWrapper, 0);
+    }
+
+    /**
+     * @param dbWrapper     the database holding the item tables
+     * @param cacheMaxBytes capacity of the read cache in estimated bytes, 0 disables it
+     */
+    public ItemDAO(MapDbWrapper dbWrapper, long cacheMaxBytes) {
+        this(Shards.single(dbWrapper), cacheMaxBytes);
+    }
+
+    /**
+     * Opens the item tables partitioned across shards. Each shard holds the items whose ID it allocates
+     * and the secondary indexes of those items, so every write changes a single shard.
+     *
+     * @param shards        the database files holding the item tables
+     * @param cacheMaxBytes capacity of the read cache in estimated bytes, 0 disables it
+     */
+    public ItemDAO(Shards shards, long cacheMaxBytes) {
+        this.shards = shards;
+        this.cache = new RecordCache<>(cacheMaxBytes, ItemDAO::weigh);
+        this.items = new CopyOnWriteArrayList<>();
+        this.indexes = new CopyOnWriteArrayList<>();
+        this.itemIds = new CopyOnWriteArrayList<>();
+        for (MapDbWrapper shard : shards.all()) {
+            itemIds.add(new IdAllocator(shard, SEQUENCE_NAME));
+            BTreeMap<Long, Versioned<Item>> table = openTable(shard);
+            StorageFormat.openOrMigrate(shard, FORMAT_NAME, LEGACY_TABLE_NAME, table);
+            ItemIndexes shardIndexes = new ItemIndexes(shard);
+            if (shardIndexes.isEmpty() && !table.isEmpty()) {
+                shardIndexes.rebuild(() -> Versioned.values(table.values().iterator()));
+                shard.commit();
+            }
+            items.add(table);
+            indexes.add(shardIndexes);
+            int index = items.size() - 1;
+            shard.onReopen(() -> reopen(index, shard));
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
 
-        @SuppressWarnings("unchecked")
-        BTreeMap<Long, Item> map = (BTreeMap<Long, Item>) dbWrapper.db()
-                .treeMap(TABLE_NAME, Serializer.LONG, Serializer.JAVA)
-                .createOrOpen();
-        this.items = map;
+    private BTreeMap<Long, Versioned<Item>> openTable(MapDbWrapper shard) {
+        return shard.treeMap(TABLE_NAME, Serializer.LONG, serializer);
+    }
+
+    /**
+     * Reopens the tables of a shard after its database was replaced by a compaction.
+     */
+    private void reopen(int index, MapDbWrapper shard) {
+        itemIds.set(index, new IdAllocator(shard, SEQUENCE_NAME));
+        items.set(index, openTable(shard));
+        indexes.set(index, new ItemIndexes(shard));
+    }
+
+    private static int weigh(Versioned<Item> record) {
+        Item item = record.value();
+        return RecordCache.RECORD_OVERHEAD
+                + RecordCache.stringBytes(item.name())
+                + RecordCache.stringBytes(item.color());
+    }
+
+    private BTreeMap<Long, Versioned<Item>> table(long id) {
+        return items.get(shards.shardOf(id));
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return locks[(int) (id & (LOCK_STRIPES - 1))];
+    }
+
+    /**
+     * Moves the index entries of an item from the value a write replaced to the value its table holds now.
+     * Records are written lock-free, but two writers of one item could apply their index changes in either
+     * order and leave the entries of an overwritten value behind. Re-reading the table under the item's lock
+     * stripe makes the last writer to get here index the final value, whatever order the writes came in.
+     *
+     * @param shard    the shard of the item
+     * @param id       the item ID
+     * @param replaced the value the write replaced, or null for a new item
+     */
+    private void reindex(int shard, long id, Item replaced) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            ItemIndexes shardIndexes = indexes.get(shard);
+            if (replaced != null) {
+                shardIndexes.remove(replaced);
+            }
+            Versioned<Item> current = items.get(shard).get(id);
+            if (current != null) {
+                shardIndexes.add(current.value());
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -44,10 +159,18 @@ public class ItemDAO {
             if (item == null) {
                 return Optional.empty();
             }
-            long id = itemIdSeq.incrementAndGet();
-            Item itemWithId = new Item(id, item);
-            items.put(id, itemWithId);
-            return Optional.of(itemWithId);
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.SAVE);
+            int shard = shards.nextShard();
+            Item saved = shards.write(shard, () -> {
+                long id = shards.recordId(shard, itemIds.get(shard).next());
+                Item itemWithId = new Item(id, item);
+                items.get(shard).put(id, Versioned.first(itemWithId));
+                changed(id);
+                reindex(shard, id, null);
+                return itemWithId;
+            });
+            event.finish(saved.id(), Versioned.FIRST, saved, serializer);
+            return Optional.of(saved);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to save item ", e);
             return Optional.empty();
@@ -55,14 +178,27 @@ public class ItemDAO {
     }
 
     /**
-     * Finds an item by its ID.
+     * Finds an item by its ID, through the read cache when enabled.
      *
      * @param id the item ID
      * @return the found item, or empty if not found
      */
     public Optional<Item> find(long id) {
+        return findVersioned(id).map(Versioned::value);
+    }
+
+    /**
+     * Finds an item with its version by ID, through the read cache when enabled.
+     *
+     * @param id the item ID
+     * @return the item and its version if found
+     */
+    public Optional<Versioned<Item>> findVersioned(long id) {
         try {
-            return Optional.ofNullable(items.get(id));
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.FIND);
+            Versioned<Item> found = cache.getOrLoad(id, key -> table(key).get(key));
+            event.finish(id, found, serializer);
+            return Optional.ofNullable(found);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to find item " + id, e);
             return Optional.empty();
@@ -76,21 +212,151 @@ public class ItemDAO {
      * @return true if deleted, false otherwise
      */
     public boolean delete(long id) {
+        return delete(id, Versioned.ANY);
+    }
+
+    /**
+     * Deletes an item by its ID if it still has the expected version.
+     *
+     * @param id              the item ID
+     * @param expectedVersion the version the caller read, or {@link Versioned#ANY}
+     * @return true if deleted, false if the item does not exist
+     * @throws VersionConflictException if the item has another version
+     * @throws IllegalStateException    if the deletion could not be made durable, e.g. a failed group commit
+     */
+    public boolean delete(long id, long expectedVersion) {
         try {
-            return items.remove(id) != null;
-        } catch (Exception e) {
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.DELETE);
+            int shard = shards.shardOf(id);
+            boolean deleted = shards.write(shard, () -> {
+                BTreeMap<Long, Versioned<Item>> table = items.get(shard);
+                while (true) {
+                    Versioned<Item> current = table.get(id);
+                    if (current == null) {
+                        return false;
+                    }
+                    if (!current.matches(expectedVersion)) {
+                        throw new VersionConflictException(id, expectedVersion, current.version());
+                    }
+                    if (table.remove(id, current)) {
+                        changed(id);
+                        reindex(shard, id, current.value());
+                        return true;
+                    }
+                }
+            });
+            event.finish(id, null, serializer);
+            return deleted;
+        } catch (VersionConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
             logger.log(Level.SEVERE, "Failed to delete item " + id, e);
-            return false;
+            throw e;
         }
     }
 
+    /**
+     * Applies many writes with a single durability wait per shard, see {@link MapDbWrapper#batch(Supplier)}.
+     *
+     * @param work the writes to apply through this DAO
+     * @return the result of the work
+     */
+    public <T> T batch(Supplier<T> work) {
+        return shards.batch(work);
+    }
+
+    /**
+     * Registers a callback invoked with the ID of every saved, updated or deleted record,
+     * after the store was changed.
+     *
+     * @param listener receives the changed ID
+     */
+    public void addChangeListener(LongConsumer listener) {
+        changeListeners.add(listener);
+    }
+
+    private void changed(long id) {
+        tableVersion.incrementAndGet();
+        cache.invalidate(id);
+        for (LongConsumer listener : changeListeners) {
+            listener.accept(id);
+        }
+    }
+
+    /**
+     * Returns a value that changes whenever an item is saved, updated or deleted.
+     * It starts from a random value on every open, so it also changes across restarts.
+     *
+     * @return the current version of the whole table
+     */
+    public long tableVersion() {
+        return tableVersion.get();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the read cache
+     */
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
     /**
      * Returns an iterator over all items.
      *
      * @return iterator for streaming all items
      */
     public Iterator<Item> iteratorAllItems() {
-        return items.values().iterator();
+        return iteratorItemsAfter(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the items with an ID greater than {@code afterId}, in ID order.
+     * Backed by a lazy range scan of the B-tree of each shard, merged in ID order, so an export can resume from any ID.
+     *
+     * @param afterId exclusive lower bound of the IDs
+     * @return iterator for streaming items
+     */
+    public Iterator<Item> iteratorItemsAfter(long afterId) {
+        List<Iterator<Item>> scans = new ArrayList<>(items.size());
+        for (BTreeMap<Long, Versioned<Item>> table : items) {
+            scans.add(Versioned.values(table.tailMap(afterId, false).values().iterator()));
+        }
+        return Shards.mergeById(scans, Item::id);
+    }
+
+    /**
+     * Streams the items matching a query. The most selective index among the query's criteria
+     * drives the scan; without criteria all items are returned. With several shards the shards are
+     * scanned one after the other, each through its own indexes.
+     *
+     * @param query the search criteria
+     * @return lazy iterator over matching items, in the order of the chosen index within each shard
+     */
+    public Iterator<Item> query(ItemQuery query) {
+        Optional<Iterator<Long>> candidates = indexes.get(0).plan(query);
+        if (candidates.isEmpty()) {
+            return iteratorAllItems();
+        }
+        return new Matches(query, candidates.get());
+    }
+
+    /**
+     * Returns up to {@code limit} items with an ID greater than {@code afterId}, in ID order.
+     * Backed by a range scan of the B-tree of each shard, so the cost does not depend on the table size;
+     * with several shards each one is read in parallel and the parts are merged in ID order.
+     *
+     * @param afterId exclusive lower bound of the IDs to return
+     * @param limit   maximum number of items in the page
+     * @return the page, with the cursor of the next page if more items follow
+     */
+    public Page<Item> findPage(long afterId, int limit) {
+        List<Item> data = new ArrayList<>(limit);
+        Iterator<Item> it = Shards.scanPage(items, afterId, limit, Item::id);
+        while (data.size() < limit && it.hasNext()) {
+            data.add(it.next());
+        }
+        Long next = it.hasNext() && !data.isEmpty() ? data.get(data.size() - 1).id() : null;
+        return new Page<>(data, next);
     }
 
     /**
@@ -101,23 +367,109 @@ public class ItemDAO {
      * @return the updated item, or empty if not found
      */
     public Optional<Item> update(long idToUpdate, ItemUpdateRequest updated) {
+        return update(idToUpdate, updated, Versioned.ANY).map(Versioned::value);
+    }
+
+    /**
+     * Updates an existing item by its ID if it still has the expected version.
+     * The write is a compare-and-set against the value the update was merged with, retried on conflict,
+     * so concurrent updates of one item never lose each other's fields.
+     *
+     * @param idToUpdate      the ID of the item to update
+     * @param updated         the update request with new field values
+     * @param expectedVersion the version the caller read, or {@link Versioned#ANY}
+     * @return the updated item with its new version, or empty if not found
+     * @throws VersionConflictException if the item has another version
+     * @throws IllegalStateException    if the update could not be made durable, e.g. a failed group commit
+     */
+    public Optional<Versioned<Item>> update(long idToUpdate, ItemUpdateRequest updated, long expectedVersion) {
         if (updated == null) {
             return Optional.empty();
         }
         try {
-            return Optional.ofNullable(
-                    items.computeIfPresent(idToUpdate, (id, existing) -> new Item(
+            DaoEvent event = DaoEvent.start(TABLE_NAME, DaoEvent.UPDATE);
+            int shard = shards.shardOf(idToUpdate);
+            Optional<Versioned<Item>> result = shards.write(shard, () -> {
+                BTreeMap<Long, Versioned<Item>> table = items.get(shard);
+                while (true) {
+                    Versioned<Item> current = table.get(idToUpdate);
+                    if (current == null) {
+                        return Optional.<Versioned<Item>>empty();
+                    }
+                    if (!current.matches(expectedVersion)) {
+                        throw new VersionConflictException(idToUpdate, expectedVersion, current.version());
+                    }
+                    Item existing = current.value();
+                    Item merged = new Item(
                             existing.id(),
                             updated.name().orElse(existing.name()),
                             updated.size().orElse(existing.size()),
                             updated.weight().orElse(existing.weight()),
                             updated.color().orElse(existing.color())
-                    ))
-            );
-        } catch (Exception e) {
+                    );
+                    Versioned<Item> next = current.next(merged);
+                    if (table.replace(idToUpdate, current, next)) {
+                        changed(idToUpdate);
+                        reindex(shard, idToUpdate, existing);
+                        return Optional.of(next);
+                    }
+                }
+            });
+            event.finish(idToUpdate, result.orElse(null), serializer);
+            return result;
+        } catch (VersionConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
             logger.log(Level.SEVERE, "Failed to update item " + idToUpdate, e);
-            return Optional.empty();
+            throw e;
         }
 
     }
+
+    /**
+     * The items matching a query, shard after shard, each read only when asked for: the candidates of a shard
+     * are planned when the previous shard is exhausted and looked up one at a time.
+     */
+    private final class Matches implements Iterator<Item> {
+        private final ItemQuery query;
+        private int shard;
+        private BTreeMap<Long, Versioned<Item>> table;
+        private Iterator<Long> candidates;
+        private Item next;
+
+        private Matches(ItemQuery query, Iterator<Long> firstCandidates) {
+            this.query = query;
+            this.table = items.get(0);
+            this.candidates = firstCandidates;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (!candidates.hasNext()) {
+                    if (++shard == items.size()) {
+                        return false;
+                    }
+                    table = items.get(shard);
+                    candidates = indexes.get(shard).plan(query).orElseThrow();
+                    continue;
+                }
+                Versioned<Item> record = table.get(candidates.next());
+                if (record != null && query.matches(record.value())) {
+                    next = record.value();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Item item = next;
+            next = null;
+            return item;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.billy.database;
+
+import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
+import org.mapdb.Serializer;
+import org.mapdb.serializer.SerializerArrayTuple;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.billy.objects.ItemQuery.colorKey;
+
+/**
+ * Secondary indexes over items, stored as MapDB tree sets of (value, id) keys:
+ * color as an equality index, weight and size as range indexes.
+ * Doubles are mapped to order-preserving longs so range scans are plain B-tree sub sets.
+ * Every entry added or removed is reported to the shard, see {@link MapDbWrapper#changed(String, Object)}.
+ */
+final class ItemIndexes {
+    private static final Logger logger = Logger.getLogger(ItemIndexes.class.getName());
+    static final String COLOR_INDEX_NAME = "item_color_index";
+    static final String WEIGHT_INDEX_NAME = "item_weight_index";
+    static final String SIZE_INDEX_NAME = "item_size_index";
+
+    /**
+     * Number of index entries the planner counts per access path before calling it "large".
+     */
+    static final int PLANNER_PROBE_LIMIT = 512;
+
+    private final MapDbWrapper shard;
+    private final NavigableSet<Object[]> byColor;
+    private final NavigableSet<long[]> byWeight;
+    private final NavigableSet<long[]> bySize;
+
+    ItemIndexes(MapDbWrapper shard) {
+        this.shard = shard;
+        this.byColor = shard.treeSet(COLOR_INDEX_NAME, new SerializerArrayTuple(Serializer.STRING, Serializer.LONG));
+        this.byWeight = shard.treeSet(WEIGHT_INDEX_NAME, Serializer.LONG_ARRAY);
+        this.bySize = shard.treeSet(SIZE_INDEX_NAME, Serializer.LONG_ARRAY);
+    }
+
+    boolean isEmpty() {
+        return byWeight.isEmpty();
+    }
+
+    void rebuild(Iterable<Item> items) {
+        clear(COLOR_INDEX_NAME, byColor);
+        clear(WEIGHT_INDEX_NAME, byWeight);
+        clear(SIZE_INDEX_NAME, bySize);
+        int count = 0;
+        for (Item item : items) {
+            add(item);
+            count++;
+        }
+        logger.log(Level.INFO, String.format("Rebuilt item indexes with %d items", count));
+    }
+
+    private <E> void clear(String name, NavigableSet<E> index) {
+        for (E entry : index) {
+            shard.changed(name, entry);
+        }
+        index.clear();
+    }
+
+    void add(Item item) {
+        String color = colorKey(item.color());
+        if (color != null) {
+            add(COLOR_INDEX_NAME, byColor, new Object[]{color, item.id()});
+        }
+        add(WEIGHT_INDEX_NAME, byWeight, new long[]{sortable(item.weight()), item.id()});
+        add(SIZE_INDEX_NAME, bySize, new long[]{sortable(item.size()), item.id()});
+    }
+
+    void remove(Item item) {
+        String color = colorKey(item.color());
+        if (color != null) {
+            remove(COLOR_INDEX_NAME, byColor, new Object[]{color, item.id()});
+        }
+        remove(WEIGHT_INDEX_NAME, byWeight, new long[]{sortable(item.weight()), item.id()});
+        remove(SIZE_INDEX_NAME, bySize, new long[]{sortable(item.size()), item.id()});
+    }
+
+    private <E> void add(String name, NavigableSet<E> index, E entry) {
+        index.add(entry);
+        shard.changed(name, entry);
+    }
+
+    private <E> void remove(String name, NavigableSet<E> index, E entry) {
+        index.remove(entry);
+        shard.changed(name, entry);
+    }
+
+    /**
+     * Picks the most selective index for the query and returns the candidate IDs it yields.
+     * Each usable index is probed by counting up to {@link #PLANNER_PROBE_LIMIT} entries in its
+     * range; the smallest count wins, with ties going to the color equality index.
+     * Candidates still have to be checked against the full query.
+     *
+     * @param query the search criteria
+     * @return candidate IDs, or empty if no index applies and the table must be scanned
+     */
+    Optional<Iterator<Long>> plan(ItemQuery query) {
+        AccessPath best = null;
+        if (query.color().isPresent()) {
+            best = new AccessPath(colorRange(query.color().get()), t -> (Long) ((Object[]) t)[1]);
+        }
+        if (query.minWeight().isPresent() || query.maxWeight().isPresent()) {
+            best = cheaper(best, new AccessPath(range(byWeight, query.minWeight(), query.maxWeight()), t -> ((long[]) t)[1]));
+        }
+        if (query.minSize().isPresent() || query.maxSize().isPresent()) {
+            best = cheaper(best, new AccessPath(range(bySize, query.minSize(), query.maxSize()), t -> ((long[]) t)[1]));
+        }
+        return Optional.ofNullable(best).map(AccessPath::ids);
+    }
+
+    private NavigableSet<Object[]> colorRange(String color) {
+        String key = colorKey(color);
+        return byColor.subSet(new Object[]{key, Long.MIN_VALUE}, true, new Object[]{key, Long.MAX_VALUE}, true);
+    }
+
+    private static NavigableSet<long[]> range(NavigableSet<long[]> index, Optional<Double> min, Optional<Double> max) {
+        long from = min.map(ItemIndexes::sortable).orElse(Long.MIN_VALUE);
+        long to = max.map(ItemIndexes::sortable).orElse(Long.MAX_VALUE);
+        return index.subSet(new long[]{from, Long.MIN_VALUE}, true, new long[]{to, Long.MAX_VALUE}, true);
+    }
+
+    private static AccessPath cheaper(AccessPath current, AccessPath candidate) {
+        return current == null || candidate.estimate() < current.estimate() ? candidate : current;
+    }
+
+    /**
+     * Maps a double to a long with the same ordering.
+     */
+    static long sortable(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static final class AccessPath {
+        private final NavigableSet<?> entries;
+        private final Function<Object, Long> idOf;
+        private int estimate = -1;
+
+        private AccessPath(NavigableSet<?> entries, Function<Object, Long> idOf) {
+            this.entries = entries;
+            this.idOf = idOf;
+        }
+
+        int estimate() {
+            if (estimate < 0) {
+                int count = 0;
+                Iterator<?> it = entries.iterator();
+                while (count < PLANNER_PROBE_LIMIT && it.hasNext()) {
+                    it.next();
+                    count++;
+                }
+                estimate = count;
+            }
+            return estimate;
+        }
+
+        Iterator<Long> ids() {
+            Iterator<?> it = entries.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Long next() {
+                    return idOf.apply(it.next());
+                }
+            };
+        }
+    }
+}
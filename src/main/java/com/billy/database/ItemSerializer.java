@@ -0,0 +1,55 @@
+package com.billy.database;
+
+import com.billy.objects.Item;
+import com.billy.objects.Versioned;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.serializer.GroupSerializerObjectArray;
+
+import java.io.IOException;
+
+import static com.billy.database.RecordIO.readString;
+import static com.billy.database.RecordIO.unknownLayout;
+import static com.billy.database.RecordIO.writeString;
+
+/**
+ * Compact MapDB serializer for versioned {@link Item} records.
+ * Layout: layout byte, packed version, packed id, name, fixed 8 byte size and weight, then color.
+ * Records of the unversioned {@link #LAYOUT_V1} read as {@link Versioned#UNVERSIONED}.
+ */
+public class ItemSerializer extends GroupSerializerObjectArray<Versioned<Item>> {
+    static final int LAYOUT_V1 = 1;
+    static final int LAYOUT_V2 = 2;
+
+    @Override
+    public void serialize(DataOutput2 out, Versioned<Item> record) throws IOException {
+        Item value = record.value();
+        out.writeByte(LAYOUT_V2);
+        out.packLong(record.version());
+        out.packLong(value.id());
+        writeString(out, value.name());
+        out.writeDouble(value.size());
+        out.writeDouble(value.weight());
+        writeString(out, value.color());
+    }
+
+    @Override
+    public Versioned<Item> deserialize(DataInput2 in, int available) throws IOException {
+        int layout = in.readUnsignedByte();
+        long version = switch (layout) {
+            case LAYOUT_V1 -> Versioned.UNVERSIONED;
+            case LAYOUT_V2 -> in.unpackLong();
+            default -> throw unknownLayout(layout, "item");
+        };
+        long id = in.unpackLong();
+        String name = readString(in);
+        double size = in.readDouble();
+        double weight = in.readDouble();
+        return new Versioned<>(version, new Item(id, name, size, weight, readString(in)));
+    }
+
+    @Override
+    public boolean isTrusted() {
+        return true;
+    }
+}
@@ -1,35 +1,401 @@
 package com.billy.database;
 
+import com.billy.objects.CompactionReport;
+import org.mapdb.BTreeMap;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
+import org.mapdb.serializer.GroupSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MapDbWrapper implements AutoCloseable {
-    private final DB db;
+    private static final Logger logger = Logger.getLogger(MapDbWrapper.class.getName());
+    static final String COMPACTED_BYTES_NAME = "compacted_bytes";
+    static final String COMPACT_SUFFIX = ".compact";
+    private final String file;
+    private final StoreOptions options;
+    private volatile DB db;
+    private final CommitPolicy commitPolicy;
+    private final GroupCommitter groupCommitter;
+    private final ThreadLocal<int[]> batchWrites = new ThreadLocal<>();
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactLock = new ReentrantLock();
+    private final List<Runnable> reopenListeners = new CopyOnWriteArrayList<>();
+    private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Compactor.Source> collections = new ConcurrentHashMap<>();
+    private final List<Compactor> trackers = new CopyOnWriteArrayList<>();
+    private volatile long compactedBytes;
 
     public MapDbWrapper(String file) {
-        this.db = DBMaker
+        this(file, CommitPolicy.async());
+    }
+
+    public MapDbWrapper(String file, CommitPolicy commitPolicy) {
+        this(file, commitPolicy, StoreOptions.defaults());
+    }
+
+    public MapDbWrapper(String file, CommitPolicy commitPolicy, StoreOptions options) {
+        this.file = file;
+        this.options = options;
+        this.db = open(file, options);
+        this.commitPolicy = commitPolicy;
+        this.groupCommitter = commitPolicy.mode() == CommitMode.GROUP
+                ? new GroupCommitter(this::commit, commitPolicy.maxBatch(), commitPolicy.maxDelayMicros())
+                : null;
+        this.compactedBytes = db.exists(COMPACTED_BYTES_NAME)
+                ? db.atomicLong(COMPACTED_BYTES_NAME).open().get()
+                : fileSize();
+    }
+
+    private static DB open(String file, StoreOptions options) {
+        DBMaker.Maker maker = DBMaker
                 .fileDB(file)
                 .transactionEnable()
-                .fileMmapEnableIfSupported()
                 .checksumHeaderBypass()
-                .closeOnJvmShutdown()
-                .make();
+                .closeOnJvmShutdown();
+        if (options.mmap()) {
+            maker.fileMmapEnableIfSupported();
+        }
+        if (options.allocateStartSize() > 0) {
+            maker.allocateStartSize(options.allocateStartSize());
+        }
+        if (options.allocateIncrement() > 0) {
+            maker.allocateIncrement(options.allocateIncrement());
+        }
+        return maker.make();
     }
 
+    /**
+     * @return the open database; after {@link #compact(long, Quiescer)} a new instance, so collections
+     * are reopened by the {@link #onReopen(Runnable)} listeners rather than kept. Tree collections are opened
+     * with {@link #treeMap(String, GroupSerializer, GroupSerializer)} and {@link #treeSet(String, GroupSerializer)}
+     * instead: MapDB hands out an instance that is already open as it is, so one opened here first would hide
+     * its writes from the compactions
+     */
     public DB db() {
         return db;
     }
 
+    public String file() {
+        return file;
+    }
+
+    /**
+     * Creates or opens a tree map and registers it, so that compactions and snapshots copy it with these
+     * serializers and learn about every key written to it while they copy.
+     */
+    public <K, V> BTreeMap<K, V> treeMap(String name, GroupSerializer<K> keys, GroupSerializer<V> values) {
+        BTreeMap<K, V> map = db.treeMap(name, keys, values)
+                .modificationListener((key, oldValue, newValue, triggered) -> changed(name, key))
+                .createOrOpen();
+        collections.put(name, new Compactor.MapSource<>(map, keys, values));
+        return map;
+    }
+
+    /**
+     * Starts bulk-loading a new tree map, which reports its writes like
+     * {@link #treeMap(String, GroupSerializer, GroupSerializer)} once created.
+     */
+    public <K, V> DB.TreeMapSink<K, V> treeMapSink(String name, GroupSerializer<K> keys, GroupSerializer<V> values) {
+        return db.treeMap(name, keys, values)
+                .modificationListener((key, oldValue, newValue, triggered) -> changed(name, key))
+                .createFromSink();
+    }
+
+    /**
+     * Creates or opens a tree set and registers it like {@link #treeMap(String, GroupSerializer, GroupSerializer)}.
+     * MapDB cannot watch a tree set, so its writers must report every element they add or remove with
+     * {@link #changed(String, Object)}.
+     */
+    public <E> NavigableSet<E> treeSet(String name, GroupSerializer<E> serializer) {
+        NavigableSet<E> set = db.treeSet(name, serializer).createOrOpen();
+        collections.put(name, new Compactor.SetSource<>(set, serializer));
+        return set;
+    }
+
+    /**
+     * Tells a running compaction or snapshot copy that a key of a collection was written, so its catch-up
+     * copies that key again. Costs nothing while none runs.
+     */
+    public void changed(String name, Object key) {
+        for (Compactor tracker : trackers) {
+            tracker.changed(name, key);
+        }
+    }
+
+    Compactor.Source collection(String name) {
+        return collections.get(name);
+    }
+
+    void track(Compactor compactor) {
+        trackers.add(compactor);
+    }
+
+    void untrack(Compactor compactor) {
+        trackers.remove(compactor);
+    }
+
+    /**
+     * Opens the registered collections again on a new database, before the reopen listeners run.
+     */
+    private void reopenCollections() {
+        for (Map.Entry<String, Compactor.Source> entry : collections.entrySet()) {
+            switch (entry.getValue()) {
+                case Compactor.MapSource<?, ?> map -> treeMap(entry.getKey(), map.keys(), map.values());
+                case Compactor.SetSource<?> set -> treeSet(entry.getKey(), set.serializer());
+            }
+        }
+    }
+
+    /**
+     * @return the current size of the database file in bytes
+     */
+    public long fileSize() {
+        try {
+            return Files.size(Path.of(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the size of the file after its last compaction, or when it was first opened by this version
+     */
+    public long compactedBytes() {
+        return compactedBytes;
+    }
+
+    /**
+     * Registers a callback run after {@link #compact(long, Quiescer)} replaced the database, while
+     * requests are still paused, to reopen the collections held by the caller on {@link #db()}.
+     *
+     * @param listener reopens the caller's collections
+     */
+    public void onReopen(Runnable listener) {
+        reopenListeners.add(listener);
+    }
+
+    /**
+     * Registers a callback told about the duration and outcome of every {@link #commit()}.
+     */
+    public void onCommit(CommitListener listener) {
+        commitListeners.add(listener);
+    }
+
+    public CommitPolicy commitPolicy() {
+        return commitPolicy;
+    }
+
+    /**
+     * Runs a mutation and returns once it is as durable as the commit mode requires.
+     * Inside {@link #batch(Supplier)} the wait is deferred to the end of the batch.
+     *
+     * @param mutation the write to apply to the database
+     * @return the result of the mutation
+     */
+    public <T> T write(Supplier<T> mutation) {
+        T result = mutation.get();
+        int[] writes = batchWrites.get();
+        if (writes != null) {
+            writes[0]++;
+            return result;
+        }
+        awaitDurable();
+        return result;
+    }
+
+    /**
+     * Runs many writes of the calling thread as one unit of durability: the writes inside do
+     * not wait individually and the batch waits once, so in {@link CommitMode#SYNC} and
+     * {@link CommitMode#GROUP} modes it costs a single commit. Nested batches join the outer one.
+     *
+     * @param work the writes to apply
+     * @return the result of the work
+     */
+    public <T> T batch(Supplier<T> work) {
+        if (batchWrites.get() != null) {
+            return work.get();
+        }
+        int[] writes = new int[1];
+        batchWrites.set(writes);
+        T result;
+        try {
+            result = work.get();
+        } finally {
+            batchWrites.remove();
+        }
+        if (writes[0] > 0) {
+            awaitDurable();
+        }
+        return result;
+    }
+
+    /**
+     * Blocks until all writes made so far by the calling thread are committed,
+     * according to the configured {@link CommitMode}.
+     */
+    public void awaitDurable() {
+        switch (commitPolicy.mode()) {
+            case SYNC -> commit();
+            case GROUP -> groupCommitter.awaitDurable();
+            case ASYNC -> {
+            }
+        }
+    }
+
+    /**
+     * Commits the transaction, recording a {@link CommitEvent} JFR event and telling the
+     * {@link #onCommit(CommitListener)} listeners.
+     */
     public void commit() {
-        db.commit();
+        CommitEvent event = new CommitEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean committed = false;
+        storeLock.readLock().lock();
+        try {
+            db.commit();
+            committed = true;
+        } finally {
+            storeLock.readLock().unlock();
+            long nanos = System.nanoTime() - start;
+            for (CommitListener listener : commitListeners) {
+                listener.committed(nanos, committed);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.mode = commitPolicy.mode().name();
+            event.commit();
+        }
     }
 
     public void rollback() {
-        db.rollback();
+        storeLock.readLock().lock();
+        try {
+            db.rollback();
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the file without the free space left by updates and deletes, which MapDB's transactional
+     * store never gives back. The collections are copied into {@code <file>.compact} by a {@link Compactor}
+     * while the store keeps serving, at most {@code bytesPerSecond} so the copy does not starve requests of
+     * disk bandwidth. Then the quiescer pauses requests, the copy catches up by copying again the keys written
+     * meanwhile, the copy replaces the file and the database is reopened; the pause grows with the writes made
+     * during the copy, not with the size of the store. Only collections opened through
+     * {@link #treeMap(String, GroupSerializer, GroupSerializer)} and {@link #treeSet(String, GroupSerializer)}
+     * can be copied. On failure the copy is deleted and the store keeps its file.
+     *
+     * @param bytesPerSecond write rate of the copy, 0 for unthrottled
+     * @param quiescer       pauses the requests using this store
+     * @return sizes and durations of the compaction
+     * @throws IllegalStateException if a compaction of this store is already running
+     * @throws TimeoutException      if the quiescer could not pause requests; the store is unchanged
+     */
+    public CompactionReport compact(long bytesPerSecond, Quiescer quiescer)
+            throws IOException, InterruptedException, TimeoutException {
+        if (!compactLock.tryLock()) {
+            throw new IllegalStateException("Compaction of " + file + " is already running");
+        }
+        try {
+            long start = System.nanoTime();
+            Path path = Path.of(file);
+            Path copyPath = Path.of(file + COMPACT_SUFFIX);
+            Files.deleteIfExists(copyPath);
+            long bytesBefore = Files.size(path);
+            DB copy = DBMaker.fileDB(copyPath.toFile()).make();
+            Compactor compactor = new Compactor(this, copy, copyPath, bytesPerSecond);
+            long pauseNanos;
+            try (compactor) {
+                compactor.copy();
+                Runnable resume = quiescer.pause();
+                long pauseStart = System.nanoTime();
+                try {
+                    swap(compactor, copy, copyPath, path);
+                } finally {
+                    resume.run();
+                }
+                pauseNanos = System.nanoTime() - pauseStart;
+            } finally {
+                if (!copy.isClosed()) {
+                    copy.close();
+                }
+                Files.deleteIfExists(copyPath);
+            }
+            long bytesAfter = compactedBytes;
+            CompactionReport report = new CompactionReport(file, bytesBefore, bytesAfter,
+                    Math.max(0, bytesBefore - bytesAfter), compactor.entries(), compactor.changes(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+            logger.log(Level.INFO, String.format("Compacted %s from %d to %d bytes in %d ms, paused %d ms",
+                    file, bytesBefore, bytesAfter, report.durationMillis(), report.pauseMillis()));
+            return report;
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    /**
+     * Catches the copy up and moves it over the file, with commits held off. Once the database is closed it is
+     * reopened, from the compacted file or from the old one if the move failed, and the listeners reattach.
+     */
+    private void swap(Compactor compactor, DB copy, Path copyPath, Path path) throws IOException, InterruptedException {
+        boolean closed = false;
+        boolean moved = false;
+        storeLock.writeLock().lock();
+        try {
+            db.commit();
+            compactor.catchUp();
+            copy.close();
+            db.close();
+            closed = true;
+            Files.move(copyPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (closed) {
+                db = open(file, options);
+                reopenCollections();
+            }
+            if (moved) {
+                compactedBytes = fileSize();
+                db.atomicLong(COMPACTED_BYTES_NAME).createOrOpen().set(compactedBytes);
+                db.commit();
+            }
+            storeLock.writeLock().unlock();
+            if (closed) {
+                reopenListeners.forEach(Runnable::run);
+            }
+        }
     }
 
     @Override
     public void close() {
-        db.close();
+        if (groupCommitter != null) {
+            groupCommitter.close();
+        }
+        storeLock.writeLock().lock();
+        try {
+            db.close();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
     }
 }
@@ -0,0 +1,26 @@
+package com.billy.database;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stops the traffic reaching a store for the short pause in which {@link MapDbWrapper#compact(long, Quiescer)}
+ * catches up with the last writes and swaps the file, e.g. by holding new HTTP requests and waiting for
+ * the running ones to complete.
+ */
+@FunctionalInterface
+public interface Quiescer {
+    /**
+     * For stores whose callers are known to be idle, e.g. in tests.
+     */
+    Quiescer NONE = () -> () -> {
+    };
+
+    /**
+     * Blocks until no caller uses the store and new ones wait.
+     *
+     * @return lets the waiting callers proceed
+     * @throws TimeoutException     if the running callers did not finish in time; nothing is paused then
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Runnable pause() throws TimeoutException, InterruptedException;
+}
@@ -0,0 +1,236 @@
+package com.billy.database;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded, size-aware read-through cache of deserialized records keyed by ID.
+ * <p>
+ * Eviction is segmented LRU: a record enters the probation segment and is promoted to the
+ * protected segment on its second hit, so a scan of cold records only churns probation and
+ * cannot flush the hot set. The protected segment holds at most {@link #PROTECTED_PERCENT}% of
+ * the capacity, overflow is demoted back to probation. Sizes are estimates given by a weigher.
+ * <p>
+ * The cache is split in {@link #SHARDS} independently locked shards. Writers must call
+ * {@link #invalidate(long)} after changing the store; a load that raced with an invalidation
+ * of its shard is returned but not cached, so a stale record is never put back.
+ */
+final class RecordCache<V> {
+    static final int SHARDS = 16;
+    static final int PROTECTED_PERCENT = 80;
+    /**
+     * Estimated heap size of a record object and its cache entry, without its strings.
+     */
+    static final int RECORD_OVERHEAD = 96;
+
+    private final Shard<V>[] shards;
+    private final ToIntFunction<V> weigher;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes capacity in estimated bytes, 0 or less disables the cache
+     * @param weigher  estimated size in bytes of a record
+     */
+    @SuppressWarnings("unchecked")
+    RecordCache(long maxBytes, ToIntFunction<V> weigher) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.weigher = weigher;
+        this.shards = new Shard[this.maxBytes == 0 ? 0 : SHARDS];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard<>(this.maxBytes / SHARDS, evictions);
+        }
+    }
+
+    /**
+     * Estimated heap size of a string field.
+     */
+    static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+
+    boolean isEnabled() {
+        return shards.length > 0;
+    }
+
+    private Shard<V> shardFor(long id) {
+        return shards[Long.hashCode(id * 0x9E3779B97F4A7C15L) & (SHARDS - 1)];
+    }
+
+    /**
+     * Returns the cached record, or loads it and caches it when found.
+     *
+     * @param id     the record ID
+     * @param loader reads the record from the store, returns null if absent
+     * @return the record, or null if absent
+     */
+    V getOrLoad(long id, LongFunction<V> loader) {
+        if (!isEnabled()) {
+            return loader.apply(id);
+        }
+        Shard<V> shard = shardFor(id);
+        V cached = shard.get(id);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long epoch = shard.epoch;
+        V loaded = loader.apply(id);
+        if (loaded != null) {
+            shard.putIfUnchanged(id, loaded, weigher.applyAsInt(loaded), epoch);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the record from the cache. Call after the store was changed.
+     */
+    void invalidate(long id) {
+        if (isEnabled()) {
+            shardFor(id).invalidate(id);
+        }
+    }
+
+    void clear() {
+        for (Shard<V> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    CacheStats stats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Shard<V> shard : shards) {
+            shard.lock.lock();
+            try {
+                entries += shard.probation.size() + shard.protectedSegment.size();
+                bytes += shard.probationBytes + shard.protectedBytes;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return CacheStats.of(hits.sum(), misses.sum(), evictions.sum(), entries, bytes, maxBytes);
+    }
+
+    private record Entry<V>(V value, int weight) {
+    }
+
+    private static final class Shard<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long maxBytes;
+        private final long maxProtectedBytes;
+        private final LongAdder evictions;
+        private final LinkedHashMap<Long, Entry<V>> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<Long, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private long probationBytes;
+        private long protectedBytes;
+        private volatile long epoch;
+
+        private Shard(long maxBytes, LongAdder evictions) {
+            this.maxBytes = maxBytes;
+            this.evictions = evictions;
+            this.maxProtectedBytes = maxBytes * PROTECTED_PERCENT / 100;
+        }
+
+        V get(long id) {
+            lock.lock();
+            try {
+                Entry<V> entry = protectedSegment.get(id);
+                if (entry != null) {
+                    return entry.value();
+                }
+                entry = probation.remove(id);
+                if (entry == null) {
+                    return null;
+                }
+                probationBytes -= entry.weight();
+                protectedSegment.put(id, entry);
+                protectedBytes += entry.weight();
+                demoteOverflow();
+                return entry.value();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void putIfUnchanged(long id, V value, int weight, long expectedEpoch) {
+            lock.lock();
+            try {
+                if (epoch != expectedEpoch || weight > maxBytes
+                        || protectedSegment.containsKey(id) || probation.containsKey(id)) {
+                    return;
+                }
+                probation.put(id, new Entry<>(value, weight));
+                probationBytes += weight;
+                evictOverflow();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void invalidate(long id) {
+            lock.lock();
+            try {
+                epoch++;
+                Entry<V> entry = probation.remove(id);
+                if (entry != null) {
+                    probationBytes -= entry.weight();
+                }
+                entry = protectedSegment.remove(id);
+                if (entry != null) {
+                    protectedBytes -= entry.weight();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                epoch++;
+                probation.clear();
+                protectedSegment.clear();
+                probationBytes = 0;
+                protectedBytes = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void demoteOverflow() {
+            Iterator<Map.Entry<Long, Entry<V>>> it = protectedSegment.entrySet().iterator();
+            while (protectedBytes > maxProtectedBytes && it.hasNext()) {
+                Map.Entry<Long, Entry<V>> lru = it.next();
+                it.remove();
+                protectedBytes -= lru.getValue().weight();
+                probation.put(lru.getKey(), lru.getValue());
+                probationBytes += lru.getValue().weight();
+            }
+            evictOverflow();
+        }
+
+        private void evictOverflow() {
+            while (probationBytes + protectedBytes > maxBytes) {
+                LinkedHashMap<Long, Entry<V>> segment = probation.isEmpty() ? protectedSegment : probation;
+                Iterator<Map.Entry<Long, Entry<V>>> it = segment.entrySet().iterator();
+                Map.Entry<Long, Entry<V>> lru = it.next();
+                it.remove();
+                if (segment == probation) {
+                    probationBytes -= lru.getValue().weight();
+                } else {
+                    protectedBytes -= lru.getValue().weight();
+                }
+                evictions.increment();
+            }
+        }
+    }
+}
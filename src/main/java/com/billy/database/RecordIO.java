@@ -0,0 +1,42 @@
+package com.billy.database;
+
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Low level helpers shared by the record serializers.
+ * Strings are written as a packed length followed by UTF-8 bytes,
+ * where length 0 means null and length n+1 means n bytes.
+ */
+final class RecordIO {
+
+    private RecordIO() {
+    }
+
+    static void writeString(DataOutput2 out, String value) throws IOException {
+        if (value == null) {
+            out.packInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.packInt(bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput2 in) throws IOException {
+        int len = in.unpackInt();
+        if (len == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static IOException unknownLayout(int layout, String record) {
+        return new IOException("Unknown " + record + " record layout: " + layout);
+    }
+}
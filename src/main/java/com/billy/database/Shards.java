@@ -0,0 +1,282 @@
+package com.billy.database;
+
+import com.billy.objects.Versioned;
+import org.mapdb.Atomic;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The MapDB files holding the tables, each behind its own {@link MapDbWrapper} with its own
+ * transaction log, store lock and commit cadence. Every table is hash-partitioned by ID:
+ * shard {@code k} of {@code n} allocates the IDs {@code k+1, k+1+n, k+1+2n, ...}, so the shard of a record
+ * is {@code (id - 1) % n} and saves are spread round-robin. With one shard IDs are the plain sequence,
+ * so a single-file database is the one-shard case.
+ * <p>
+ * The shard count is recorded in every file; opening files with another count fails instead of
+ * losing track of records, so changing it means exporting and importing the data.
+ */
+public final class Shards implements AutoCloseable {
+    static final String SHARD_COUNT_NAME = "shard_count";
+    static final String SHARD_INDEX_NAME = "shard_index";
+
+    private final List<MapDbWrapper> wrappers;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    private Shards(List<MapDbWrapper> wrappers) {
+        this.wrappers = List.copyOf(wrappers);
+        for (int i = 0; i < this.wrappers.size(); i++) {
+            checkLayout(this.wrappers.get(i).db(), i, this.wrappers.size());
+        }
+    }
+
+    /**
+     * A single database file as the only shard.
+     */
+    public static Shards single(MapDbWrapper dbWrapper) {
+        return new Shards(List.of(dbWrapper));
+    }
+
+    /**
+     * Opens {@code count} files, {@code data-0.db} to {@code data-<count-1>.db} for a {@code file} of
+     * {@code data.db}, or the file itself when {@code count} is 1.
+     *
+     * @param file         the database file name
+     * @param count        number of shards, at least 1
+     * @param commitPolicy commit settings of every shard
+     */
+    public static Shards open(String file, int count, CommitPolicy commitPolicy) {
+        return open(file, count, commitPolicy, StoreOptions.defaults());
+    }
+
+    /**
+     * Opens {@code count} files as {@link #open(String, int, CommitPolicy)} does, with the given file settings.
+     */
+    public static Shards open(String file, int count, CommitPolicy commitPolicy, StoreOptions options) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        if (count == 1) {
+            return single(new MapDbWrapper(file, commitPolicy, options));
+        }
+        int dot = file.lastIndexOf('.');
+        boolean extension = dot > file.lastIndexOf('/') && dot > file.lastIndexOf('\\');
+        String base = extension ? file.substring(0, dot) : file;
+        String suffix = extension ? file.substring(dot) : "";
+        List<MapDbWrapper> wrappers = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                wrappers.add(new MapDbWrapper(base + "-" + i + suffix, commitPolicy, options));
+            }
+            return new Shards(wrappers);
+        } catch (RuntimeException e) {
+            wrappers.forEach(MapDbWrapper::close);
+            throw e;
+        }
+    }
+
+    /**
+     * Records the layout in a new file, or checks it against the one recorded. Files written before
+     * sharding existed hold no layout and count as the only shard.
+     */
+    private static void checkLayout(DB db, int index, int count) {
+        boolean fresh = !db.getAllNames().iterator().hasNext();
+        Atomic.Integer storedCount = db.atomicInteger(SHARD_COUNT_NAME).createOrOpen();
+        Atomic.Integer storedIndex = db.atomicInteger(SHARD_INDEX_NAME).createOrOpen();
+        if (!fresh) {
+            int recordedCount = storedCount.get() == 0 ? 1 : storedCount.get();
+            if (recordedCount != count || storedIndex.get() != index) {
+                throw new IllegalStateException(String.format(
+                        "Database file is shard %d of %d, opened as shard %d of %d",
+                        storedIndex.get(), recordedCount, index, count));
+            }
+            if (storedCount.get() != 0) {
+                return;
+            }
+        }
+        storedCount.set(count);
+        storedIndex.set(index);
+        db.commit();
+    }
+
+    public int count() {
+        return wrappers.size();
+    }
+
+    public MapDbWrapper shard(int index) {
+        return wrappers.get(index);
+    }
+
+    public List<MapDbWrapper> all() {
+        return wrappers;
+    }
+
+    /**
+     * @return the shard holding the record with this ID
+     */
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id - 1, (long) wrappers.size());
+    }
+
+    /**
+     * @return the shard holding a secondary key, e.g. an email in a unique index
+     */
+    public int shardOf(String key) {
+        return Math.floorMod(key.hashCode(), wrappers.size());
+    }
+
+    /**
+     * @return the shard the next new record goes to, round-robin
+     */
+    public int nextShard() {
+        return wrappers.size() == 1 ? 0 : Math.floorMod(nextShard.getAndIncrement(), wrappers.size());
+    }
+
+    /**
+     * Maps the n-th ID allocated by a shard's sequence, starting at 1, to the record ID.
+     */
+    public long recordId(int shard, long sequence) {
+        return (sequence - 1) * wrappers.size() + shard + 1;
+    }
+
+    /**
+     * Runs a mutation of the records of one shard, see {@link MapDbWrapper#write(Supplier)}. When it also
+     * changes other shards, e.g. a unique index, it calls {@link #touched(int)} for them and the write
+     * returns once every changed shard is durable.
+     *
+     * @param shard    the shard of the record
+     * @param mutation the write to apply
+     * @return the result of the mutation
+     */
+    public <T> T write(int shard, Supplier<T> mutation) {
+        if (wrappers.size() == 1) {
+            return wrappers.get(0).write(mutation);
+        }
+        return batch(() -> wrappers.get(shard).write(mutation));
+    }
+
+    /**
+     * Marks another shard as changed by the running {@link #write(int, Supplier)}.
+     */
+    public void touched(int shard) {
+        if (wrappers.size() > 1) {
+            wrappers.get(shard).write(() -> null);
+        }
+    }
+
+    /**
+     * Runs many writes with a single durability wait per changed shard, see {@link MapDbWrapper#batch(Supplier)}.
+     */
+    public <T> T batch(Supplier<T> work) {
+        return batch(0, work);
+    }
+
+    private <T> T batch(int shard, Supplier<T> work) {
+        if (shard == wrappers.size()) {
+            return work.get();
+        }
+        return wrappers.get(shard).batch(() -> batch(shard + 1, work));
+    }
+
+    /**
+     * Commits every shard.
+     */
+    public void commit() {
+        wrappers.forEach(MapDbWrapper::commit);
+    }
+
+    @Override
+    public void close() {
+        wrappers.forEach(MapDbWrapper::close);
+    }
+
+    /**
+     * Merges iterators that are each sorted by ID into one iterator in ID order, lazily:
+     * only the head of each shard is held at a time.
+     *
+     * @param iterators one iterator per shard
+     * @param idOf      ID of an element
+     * @return the merged iterator
+     */
+    public static <T> Iterator<T> mergeById(List<Iterator<T>> iterators, ToLongFunction<T> idOf) {
+        if (iterators.size() == 1) {
+            return iterators.get(0);
+        }
+        return new MergingIterator<>(iterators, idOf);
+    }
+
+    /**
+     * Reads the first records after an ID from the table of every shard, the shards in parallel, and merges them
+     * in ID order. Each shard contributes at most {@code limit + 1} records, enough to fill a page of {@code limit}
+     * and tell whether more follow.
+     *
+     * @param tables  the table of each shard
+     * @param afterId exclusive lower bound of the IDs
+     * @param limit   size of the page
+     * @param idOf    ID of a record
+     * @return the merged records
+     */
+    public static <T> Iterator<T> scanPage(List<BTreeMap<Long, Versioned<T>>> tables, long afterId, int limit,
+                                           ToLongFunction<T> idOf) {
+        if (tables.size() == 1) {
+            return Versioned.values(tables.get(0).tailMap(afterId, false).values().iterator());
+        }
+        List<Iterator<T>> parts = IntStream.range(0, tables.size()).parallel()
+                .mapToObj(i -> {
+                    List<T> part = new ArrayList<>(limit + 1);
+                    Iterator<T> it = Versioned.values(tables.get(i).tailMap(afterId, false).values().iterator());
+                    while (part.size() <= limit && it.hasNext()) {
+                        part.add(it.next());
+                    }
+                    return part.iterator();
+                })
+                .toList();
+        return mergeById(parts, idOf);
+    }
+
+    private static final class MergingIterator<T> implements Iterator<T> {
+        private final PriorityQueue<Head<T>> heads;
+        private final ToLongFunction<T> idOf;
+
+        private record Head<T>(T value, long id, Iterator<T> rest) {
+        }
+
+        private MergingIterator(List<Iterator<T>> iterators, ToLongFunction<T> idOf) {
+            this.idOf = idOf;
+            this.heads = new PriorityQueue<>(iterators.size(), Comparator.comparingLong(Head::id));
+            iterators.forEach(this::advance);
+        }
+
+        private void advance(Iterator<T> iterator) {
+            if (iterator.hasNext()) {
+                T value = iterator.next();
+                heads.add(new Head<>(value, idOf.applyAsLong(value), iterator));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.rest());
+            return head.value();
+        }
+    }
+}
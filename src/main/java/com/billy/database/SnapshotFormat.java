@@ -0,0 +1,194 @@
+package com.billy.database;
+
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout of a snapshot file, all numbers big-endian:
+ * <pre>
+ * header   magic "BSNP", format version (int), creation time in epoch millis (long)
+ * table    SECTION byte, entity name (modified UTF-8), highest ID ever allocated (long), blocks, empty block
+ * block    record count (int), byte length (int), records, CRC32C of the records (int)
+ * record   packed ID, then the value as written by the table's MapDB serializer
+ * trailer  END byte, total record count (long)
+ * </pre>
+ * Records are written in ID order in blocks of about {@link #BLOCK_BYTES}, each checked on read, so a
+ * corrupted or truncated file is rejected instead of restoring part of the data.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x42534E50;
+    static final int VERSION = 1;
+    static final int SECTION = 1;
+    static final int END = 2;
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Header of a table in a snapshot.
+     *
+     * @param entity    the entity, e.g. {@code items}
+     * @param highestId the highest ID handed out when the snapshot was taken, deleted records included
+     */
+    record Table(String entity, long highestId) {
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer<V> {
+        void accept(long id, V value) throws IOException;
+    }
+
+    static final class Writer {
+        private final DataOutputStream out;
+        private final DataOutput2 block = new DataOutput2();
+        private final CRC32C crc = new CRC32C();
+        private int blockRecords;
+        private long records;
+
+        Writer(OutputStream stream, long createdMillis) throws IOException {
+            this.out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(createdMillis);
+        }
+
+        void beginTable(Table table) throws IOException {
+            out.writeByte(SECTION);
+            out.writeUTF(table.entity());
+            out.writeLong(table.highestId());
+        }
+
+        <V> void write(long id, V value, Serializer<V> serializer) throws IOException {
+            block.packLong(id);
+            serializer.serialize(block, value);
+            blockRecords++;
+            records++;
+            if (block.pos >= BLOCK_BYTES) {
+                flushBlock();
+            }
+        }
+
+        void endTable() throws IOException {
+            flushBlock();
+            out.writeInt(0);
+        }
+
+        long records() {
+            return records;
+        }
+
+        /**
+         * Writes the trailer and flushes; the caller closes and syncs the stream.
+         */
+        void finish() throws IOException {
+            out.writeByte(END);
+            out.writeLong(records);
+            out.flush();
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRecords == 0) {
+                return;
+            }
+            crc.reset();
+            crc.update(block.buf, 0, block.pos);
+            out.writeInt(blockRecords);
+            out.writeInt(block.pos);
+            out.write(block.buf, 0, block.pos);
+            out.writeInt((int) crc.getValue());
+            block.pos = 0;
+            blockRecords = 0;
+        }
+    }
+
+    static final class Reader {
+        private final DataInputStream in;
+        private final CRC32C crc = new CRC32C();
+        private final long createdMillis;
+        private long records;
+
+        /**
+         * @throws IOException if the stream does not start with a snapshot header of a known version
+         */
+        Reader(InputStream stream) throws IOException {
+            this.in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+            this.createdMillis = in.readLong();
+        }
+
+        long createdMillis() {
+            return createdMillis;
+        }
+
+        long records() {
+            return records;
+        }
+
+        /**
+         * @return the next table, whose records are read with {@link #readRecords}, or null after the last one
+         * @throws IOException if the file is truncated or its record count does not match
+         */
+        Table nextTable() throws IOException {
+            int tag = in.readUnsignedByte();
+            if (tag == END) {
+                long total = in.readLong();
+                if (total != records) {
+                    throw new IOException("Snapshot holds " + total + " records, read " + records);
+                }
+                return null;
+            }
+            if (tag != SECTION) {
+                throw new IOException("Corrupted snapshot: unexpected tag " + tag);
+            }
+            return new Table(in.readUTF(), in.readLong());
+        }
+
+        /**
+         * Reads the records of the current table in ID order, checking the checksum of each block before
+         * any of its records is passed on.
+         */
+        <V> void readRecords(Serializer<V> serializer, RecordConsumer<V> consumer) throws IOException {
+            byte[] bytes = new byte[BLOCK_BYTES];
+            int count;
+            while ((count = in.readInt()) > 0) {
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Corrupted snapshot: block length " + length);
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                in.readFully(bytes, 0, length);
+                crc.reset();
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != in.readInt()) {
+                    throw new IOException("Corrupted snapshot: checksum mismatch after record " + records);
+                }
+                DataInput2.ByteArray block = new DataInput2.ByteArray(bytes);
+                for (int i = 0; i < count; i++) {
+                    long id = block.unpackLong();
+                    consumer.accept(id, serializer.deserialize(block, -1));
+                }
+                records += count;
+            }
+            if (count < 0) {
+                throw new IOException("Corrupted snapshot: record count " + count);
+            }
+        }
+    }
+}
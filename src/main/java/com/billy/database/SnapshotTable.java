@@ -0,0 +1,16 @@
+package com.billy.database;
+
+import org.mapdb.serializer.GroupSerializer;
+
+/**
+ * A record table as {@link Snapshots} saves and restores it.
+ *
+ * @param entity       name of the table in the snapshot file, e.g. {@code items}
+ * @param shards       the database files holding the table
+ * @param tableName    MapDB name of the table in every shard
+ * @param sequenceName MapDB name of the ID sequence of every shard, see {@link IdAllocator}
+ * @param serializer   serializer of the records, also used for the snapshot file
+ */
+public record SnapshotTable<V>(String entity, Shards shards, String tableName, String sequenceName,
+                               GroupSerializer<V> serializer) {
+}
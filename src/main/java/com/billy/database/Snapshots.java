@@ -0,0 +1,325 @@
+package com.billy.database;
+
+import com.billy.objects.SnapshotReport;
+import com.billy.objects.SnapshotStatus;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Point-in-time snapshots of the record tables, taken while the server runs, in the {@link SnapshotFormat}.
+ * <p>
+ * A snapshot first copies the tables of every database file into a temporary MapDB file with a
+ * {@link Compactor}, throttled, while requests go on. The quiescer then pauses the writes just long enough
+ * for all copies to copy again the records written meanwhile, so the tables are consistent with each other
+ * as of that instant; reads go on, as the live store is only read. The frozen
+ * copies are then written in ID order to {@code snapshot-<time>.bsnap} with no request waiting; the file
+ * only gets its name once it is complete and synced.
+ * <p>
+ * {@link #restore(Path, List)} bulk-loads a snapshot into an empty store with MapDB's sorted B-tree import,
+ * into any number of shards, and moves the ID sequences past the highest ID of the snapshot. The DAOs
+ * rebuild the secondary indexes when they open the restored tables.
+ */
+public final class Snapshots {
+    private static final Logger logger = Logger.getLogger(Snapshots.class.getName());
+    public static final String EXTENSION = ".bsnap";
+    public static final String DEFAULT_DIRECTORY = "db/snapshots";
+    static final int KEPT_REPORTS = 16;
+    private static final Pattern NAME = Pattern.compile("snapshot-[0-9-]+\\" + EXTENSION);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final List<SnapshotTable<?>> tables;
+    private final long bytesPerSecond;
+    private final Quiescer quiescer;
+    private final Executor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Deque<SnapshotReport> reports = new ArrayDeque<>();
+    private volatile String lastError;
+
+    /**
+     * @param directory      where snapshots are written
+     * @param tables         the tables saved in every snapshot
+     * @param bytesPerSecond write rate of the online copy, 0 for unthrottled
+     * @param quiescer       pauses the writes while the copies catch up
+     * @param executor       a single thread running the maintenance of the stores one task after the other,
+     *                       so a snapshot never overlaps a {@link Compaction}
+     */
+    public Snapshots(Path directory, List<SnapshotTable<?>> tables, long bytesPerSecond, Quiescer quiescer,
+                     Executor executor) {
+        this.directory = directory;
+        this.tables = List.copyOf(tables);
+        this.bytesPerSecond = bytesPerSecond;
+        this.quiescer = quiescer;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts taking a snapshot in the background.
+     *
+     * @return false if a snapshot is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    SnapshotReport report = take();
+                    synchronized (reports) {
+                        if (reports.size() == KEPT_REPORTS) {
+                            reports.removeFirst();
+                        }
+                        reports.addLast(report);
+                    }
+                    lastError = null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    lastError = "Interrupted";
+                } catch (Exception e) {
+                    lastError = e.toString();
+                    logger.log(Level.SEVERE, "Snapshot failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public SnapshotStatus status() {
+        synchronized (reports) {
+            return new SnapshotStatus(running.get(), List.copyOf(reports), lastError);
+        }
+    }
+
+    /**
+     * @param name name of a snapshot file, as in {@link SnapshotReport#file()}
+     * @return the file, if the name is one of a snapshot and it exists
+     */
+    public Optional<Path> file(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(name);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Takes a snapshot on the calling thread.
+     *
+     * @return the file, its size, the records written and the durations
+     * @throws TimeoutException if the quiescer could not pause requests; no snapshot is written then
+     */
+    public SnapshotReport take() throws IOException, InterruptedException, TimeoutException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        String name = "snapshot-" + TIMESTAMP.format(Instant.now()) + EXTENSION;
+        Path file = directory.resolve(name);
+        Path partial = directory.resolve(name + ".partial");
+
+        Map<MapDbWrapper, Set<String>> tablesByFile = new LinkedHashMap<>();
+        for (SnapshotTable<?> table : tables) {
+            for (MapDbWrapper shard : table.shards().all()) {
+                tablesByFile.computeIfAbsent(shard, s -> new HashSet<>()).add(table.tableName());
+            }
+        }
+        Map<MapDbWrapper, Compactor> copies = new HashMap<>();
+        List<DB> copyStores = new ArrayList<>();
+        try {
+            for (Map.Entry<MapDbWrapper, Set<String>> entry : tablesByFile.entrySet()) {
+                Path copyFile = directory.resolve(name + "." + copyStores.size() + ".tmp");
+                DB copyStore = DBMaker.fileDB(copyFile.toFile()).fileDeleteAfterClose().make();
+                copyStores.add(copyStore);
+                copies.put(entry.getKey(), new Compactor(entry.getKey(), copyStore, copyFile, bytesPerSecond,
+                        entry.getValue()::contains));
+            }
+            for (Compactor copy : copies.values()) {
+                copy.copy();
+            }
+            Map<SnapshotTable<?>, Long> allocated = new HashMap<>();
+            Runnable resume = quiescer.pause();
+            long pauseStart = System.nanoTime();
+            try {
+                for (Compactor copy : copies.values()) {
+                    copy.catchUp();
+                }
+                for (SnapshotTable<?> table : tables) {
+                    allocated.put(table, highestAllocatedId(table));
+                }
+            } finally {
+                resume.run();
+                copies.values().forEach(Compactor::close);
+            }
+            long pauseNanos = System.nanoTime() - pauseStart;
+
+            long records;
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+                SnapshotFormat.Writer writer = new SnapshotFormat.Writer(out, System.currentTimeMillis());
+                for (SnapshotTable<?> table : tables) {
+                    writeTable(writer, table, copies, allocated.get(table));
+                }
+                writer.finish();
+                channel.force(true);
+                records = writer.records();
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            SnapshotReport report = new SnapshotReport(name, Files.size(file), records,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+            logger.log(Level.INFO, String.format("Snapshot %s: %d records, %d bytes in %d ms, paused %d ms",
+                    name, records, report.bytes(), report.durationMillis(), report.pauseMillis()));
+            return report;
+        } finally {
+            copies.values().forEach(Compactor::close);
+            copyStores.forEach(DB::close);
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * The highest ID the sequences of a table reserved, read while requests are paused. IDs of deleted records
+     * are included, so a restored store never hands them out again.
+     */
+    private static long highestAllocatedId(SnapshotTable<?> table) {
+        Shards shards = table.shards();
+        long highest = 0;
+        for (int i = 0; i < shards.count(); i++) {
+            DB db = shards.shard(i).db();
+            if (db.exists(table.sequenceName())) {
+                highest = Math.max(highest, shards.recordId(i, db.atomicLong(table.sequenceName()).open().get()));
+            }
+        }
+        return highest;
+    }
+
+    private static <V> void writeTable(SnapshotFormat.Writer writer, SnapshotTable<V> table,
+                                       Map<MapDbWrapper, Compactor> copies, long allocated) throws IOException {
+        List<Iterator<Map.Entry<Long, V>>> parts = new ArrayList<>();
+        long highest = allocated;
+        for (MapDbWrapper shard : table.shards().all()) {
+            BTreeMap<Long, V> copy = copies.get(shard).copyOf(table.tableName());
+            if (copy == null) {
+                parts.add(Collections.emptyIterator());
+                continue;
+            }
+            if (!copy.isEmpty()) {
+                highest = Math.max(highest, copy.lastKey());
+            }
+            parts.add(copy.entrySet().iterator());
+        }
+        writer.beginTable(new SnapshotFormat.Table(table.entity(), highest));
+        Iterator<Map.Entry<Long, V>> records = Shards.mergeById(parts, Map.Entry::getKey);
+        while (records.hasNext()) {
+            Map.Entry<Long, V> record = records.next();
+            writer.write(record.getKey(), record.getValue(), table.serializer());
+        }
+        writer.endTable();
+    }
+
+    /**
+     * Loads a snapshot into a store that holds none of the tables yet, before any DAO opened it. Each table
+     * is bulk-loaded through one sorted B-tree import per shard, records placed by ID, so the shard count may
+     * differ from the one the snapshot was taken with. Everything is committed at once at the end; a corrupted
+     * file is rolled back and leaves the store empty.
+     *
+     * @param snapshot the snapshot file
+     * @param tables   where each table of the snapshot goes
+     * @return the records restored and the duration
+     * @throws IllegalStateException if a table already exists in the store or is not in {@code tables}
+     * @throws IOException           if the file is not a snapshot or is corrupted
+     */
+    public static SnapshotReport restore(Path snapshot, List<SnapshotTable<?>> tables) throws IOException {
+        long start = System.nanoTime();
+        Map<String, SnapshotTable<?>> byEntity = new HashMap<>();
+        Set<MapDbWrapper> stores = new HashSet<>();
+        for (SnapshotTable<?> table : tables) {
+            byEntity.put(table.entity(), table);
+            for (MapDbWrapper shard : table.shards().all()) {
+                if (shard.db().exists(table.tableName())) {
+                    throw new IllegalStateException("Restore needs an empty store: " + shard.file()
+                            + " already holds " + table.tableName());
+                }
+                stores.add(shard);
+            }
+        }
+        long records;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshot), BUFFER_BYTES)) {
+            SnapshotFormat.Reader reader = new SnapshotFormat.Reader(in);
+            SnapshotFormat.Table header;
+            while ((header = reader.nextTable()) != null) {
+                SnapshotTable<?> table = byEntity.get(header.entity());
+                if (table == null) {
+                    throw new IllegalStateException("Snapshot table " + header.entity() + " is not configured");
+                }
+                restoreTable(reader, header, table);
+            }
+            records = reader.records();
+        } catch (IOException | RuntimeException e) {
+            stores.forEach(MapDbWrapper::rollback);
+            throw e;
+        }
+        stores.forEach(MapDbWrapper::commit);
+        SnapshotReport report = new SnapshotReport(snapshot.getFileName().toString(), Files.size(snapshot), records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 0);
+        logger.log(Level.INFO, String.format("Restored %d records from %s in %d ms",
+                records, snapshot, report.durationMillis()));
+        return report;
+    }
+
+    private static <V> void restoreTable(SnapshotFormat.Reader reader, SnapshotFormat.Table header,
+                                         SnapshotTable<V> table) throws IOException {
+        Shards shards = table.shards();
+        List<DB.TreeMapSink<Long, V>> sinks = new ArrayList<>(shards.count());
+        for (MapDbWrapper shard : shards.all()) {
+            sinks.add(shard.treeMapSink(table.tableName(), Serializer.LONG, table.serializer()));
+        }
+        reader.readRecords(table.serializer(), (id, value) -> sinks.get(shards.shardOf(id)).put(id, value));
+        sinks.forEach(DB.TreeMapSink::create);
+        long sequence = header.highestId() <= 0 ? 0 : (header.highestId() + shards.count() - 1) / shards.count();
+        for (MapDbWrapper shard : shards.all()) {
+            shard.db().atomicLong(table.sequenceName()).createOrOpen().set(sequence);
+        }
+    }
+}
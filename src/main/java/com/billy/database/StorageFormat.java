@@ -0,0 +1,66 @@
+package com.billy.database;
+
+import com.billy.objects.Versioned;
+import org.mapdb.Atomic;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the on-disk format of each table and performs the one-time migration
+ * from the legacy {@link Serializer#JAVA} tables to the compact record serializers.
+ * <p>
+ * Format 1 records carry no version; format 2 serializers read them as {@link Versioned#UNVERSIONED},
+ * so moving from 1 to 2 only records the new format and later writes use the versioned layout.
+ */
+final class StorageFormat {
+    private static final Logger logger = Logger.getLogger(StorageFormat.class.getName());
+
+    /**
+     * Format written by this version: compact versioned record serializers.
+     */
+    static final int CURRENT_VERSION = 2;
+
+    private StorageFormat() {
+    }
+
+    /**
+     * Checks the stored format version of a table and migrates legacy data when needed.
+     *
+     * @param shard       the database holding the table
+     * @param formatName  name of the atomic holding the table format version
+     * @param legacyTable name of the legacy table written with Java serialization
+     * @param target      the table opened with the compact serializer
+     * @throws IllegalStateException if the file was written by a newer format
+     */
+    static <V> void openOrMigrate(MapDbWrapper shard, String formatName, String legacyTable,
+                                  BTreeMap<Long, Versioned<V>> target) {
+        DB db = shard.db();
+        if (db.exists(legacyTable)) {
+            // opened through the shard even when already migrated, so compactions can copy the emptied table
+            shard.treeMap(legacyTable, Serializer.LONG, Serializer.JAVA);
+        }
+        Atomic.Integer version = db.atomicInteger(formatName).createOrOpen();
+        int onDisk = version.get();
+        if (onDisk == CURRENT_VERSION) {
+            return;
+        }
+        if (onDisk > CURRENT_VERSION) {
+            throw new IllegalStateException(String.format(
+                    "Table format %s=%d is newer than supported version %d", formatName, onDisk, CURRENT_VERSION));
+        }
+        if (db.exists(legacyTable)) {
+            @SuppressWarnings("unchecked")
+            BTreeMap<Long, V> legacy = (BTreeMap<Long, V>) shard.treeMap(legacyTable, Serializer.LONG, Serializer.JAVA);
+            int count = legacy.size();
+            legacy.forEach((id, value) -> target.put(id, new Versioned<>(Versioned.UNVERSIONED, value)));
+            legacy.clear();
+            logger.log(Level.INFO, String.format("Migrated %d records from %s to format %d", count, legacyTable, CURRENT_VERSION));
+        }
+        version.set(CURRENT_VERSION);
+        db.commit();
+    }
+}
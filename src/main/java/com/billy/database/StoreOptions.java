@@ -0,0 +1,21 @@
+package com.billy.database;
+
+/**
+ * File settings of a MapDB store.
+ *
+ * @param mmap              map the file into memory when the platform supports it, instead of reading through a channel
+ * @param allocateStartSize initial size of a new file in bytes, 0 for the MapDB default
+ * @param allocateIncrement bytes by which the file grows when full, 0 for the MapDB default
+ */
+public record StoreOptions(boolean mmap, long allocateStartSize, long allocateIncrement) {
+
+    public StoreOptions {
+        if (allocateStartSize < 0 || allocateIncrement < 0) {
+            throw new IllegalArgumentException("Allocation sizes must not be negative");
+        }
+    }
+
+    public static StoreOptions defaults() {
+        return new StoreOptions(true, 0, 0);
+    }
+}
@@ -0,0 +1,25 @@
+package com.billy.database;
+
+/**
+ * Thrown when a conditional write expected another version of a record than the stored one,
+ * i.e. the record was changed since the client read it.
+ */
+public class VersionConflictException extends RuntimeException {
+    public static final String VERSION_CONFLICT = "Version conflict on id=%d: expected version %d, current version %d";
+    private final long id;
+    private final long currentVersion;
+
+    public VersionConflictException(long id, long expectedVersion, long currentVersion) {
+        super(String.format(VERSION_CONFLICT, id, expectedVersion, currentVersion));
+        this.id = id;
+        this.currentVersion = currentVersion;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public long currentVersion() {
+        return currentVersion;
+    }
+}
@@ -1,14 +1,12 @@
 package com.billy.factory;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
 public class ObjectMapperFactory {
-    private static final ObjectMapper MAPPER = new ObjectMapper()
-            .registerModule(new Jdk8Module())
-            .findAndRegisterModules()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectMapper MAPPER = create(new JsonFactory());
 
     private ObjectMapperFactory() {
     }
@@ -16,4 +14,21 @@ public class ObjectMapperFactory {
     public static ObjectMapper get() {
         return MAPPER;
     }
+
+    /**
+     * Creates a mapper with the application settings for another data format, e.g. a CBOR or Smile factory.
+     */
+    public static ObjectMapper create(JsonFactory factory) {
+        return configure(new ObjectMapper(factory));
+    }
+
+    /**
+     * Applies the application settings to a format specific mapper, e.g. a {@code CsvMapper}.
+     */
+    public static <M extends ObjectMapper> M configure(M mapper) {
+        mapper.registerModule(new Jdk8Module())
+                .findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
 }
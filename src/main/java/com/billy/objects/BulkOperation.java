@@ -0,0 +1,16 @@
+package com.billy.objects;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One operation of a bulk request, e.g. {@code {"op":"update","id":7,"data":{"name":"New"}}}.
+ *
+ * @param op   one of {@link #CREATE}, {@link #UPDATE} or {@link #DELETE}
+ * @param id   target ID for updates and deletes
+ * @param data record for creates, changed fields for updates
+ */
+public record BulkOperation(String op, Long id, JsonNode data) {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+}
@@ -0,0 +1,13 @@
+package com.billy.objects;
+
+import java.util.List;
+
+/**
+ * Summary and per-operation results of a bulk request.
+ */
+public record BulkResponse(int total, int succeeded, int failed, List<BulkResult> results) {
+    public static BulkResponse of(List<BulkResult> results) {
+        int succeeded = (int) results.stream().filter(BulkResult::ok).count();
+        return new BulkResponse(results.size(), succeeded, results.size() - succeeded, results);
+    }
+}
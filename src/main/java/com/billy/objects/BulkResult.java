@@ -0,0 +1,14 @@
+package com.billy.objects;
+
+/**
+ * Outcome of one bulk operation, identified by its position in the request.
+ */
+public record BulkResult(int index, String op, boolean ok, Long id, String error) {
+    public static BulkResult success(int index, String op, Long id) {
+        return new BulkResult(index, op, true, id, null);
+    }
+
+    public static BulkResult failure(int index, String op, Long id, String error) {
+        return new BulkResult(index, op, false, id, error);
+    }
+}
@@ -0,0 +1,12 @@
+package com.billy.objects;
+
+/**
+ * A MapDB file whose compaction could not pause the requests and is retried later.
+ *
+ * @param file         the file waiting for its compaction
+ * @param attempts     compactions of the file postponed in a row
+ * @param reason       why the latest attempt was postponed
+ * @param retryAtMillis when the next attempt starts, in epoch milliseconds
+ */
+public record CompactionPostponement(String file, int attempts, String reason, long retryAtMillis) {
+}
@@ -0,0 +1,17 @@
+package com.billy.objects;
+
+/**
+ * Result of compacting one MapDB file.
+ *
+ * @param file           the compacted file
+ * @param bytesBefore    size of the file before
+ * @param bytesAfter     size of the file after
+ * @param reclaimedBytes bytes given back to the file system, 0 if the file did not shrink
+ * @param entries        map and set entries copied while the store kept serving
+ * @param changes        entries written meanwhile and applied to the copy during the pause
+ * @param durationMillis time from the start of the copy to the reopened store
+ * @param pauseMillis    time requests were held while the copy caught up and the file was swapped
+ */
+public record CompactionReport(String file, long bytesBefore, long bytesAfter, long reclaimedBytes, long entries,
+                               long changes, long durationMillis, long pauseMillis) {
+}
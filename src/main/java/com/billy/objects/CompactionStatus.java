@@ -0,0 +1,15 @@
+package com.billy.objects;
+
+import java.util.List;
+
+/**
+ * State of the background compaction, served at {@code GET /admin/compact}.
+ *
+ * @param running   whether a compaction is in progress
+ * @param reports   the latest compacted files, oldest first
+ * @param postponed the files waiting to be retried because the requests could not be paused
+ * @param lastError why the latest failed compaction failed, or null
+ */
+public record CompactionStatus(boolean running, List<CompactionReport> reports,
+                               List<CompactionPostponement> postponed, String lastError) {
+}
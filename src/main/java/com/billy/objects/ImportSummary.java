@@ -0,0 +1,18 @@
+package com.billy.objects;
+
+import java.util.List;
+
+/**
+ * Result of a streaming import.
+ *
+ * @param received records read from the body, including those that failed
+ * @param imported records saved
+ * @param failed   records rejected, by validation or by the store
+ * @param batches  number of batches written
+ * @param complete false if the body was malformed and the import stopped early
+ * @param error    why the import stopped, or null
+ * @param failures the first rejected records, by position in the body
+ */
+public record ImportSummary(long received, long imported, long failed, int batches,
+                            boolean complete, String error, List<BulkResult> failures) {
+}
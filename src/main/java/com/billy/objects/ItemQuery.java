@@ -0,0 +1,39 @@
+package com.billy.objects;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Filter for item searches. Every present criterion must match; bounds are inclusive
+ * and colors are compared by their {@link #colorKey(String)}, ignoring case and surrounding blanks.
+ */
+public record ItemQuery(
+        Optional<String> color,
+        Optional<Double> minWeight,
+        Optional<Double> maxWeight,
+        Optional<Double> minSize,
+        Optional<Double> maxSize
+) {
+    public boolean isEmpty() {
+        return color.isEmpty() && minWeight.isEmpty() && maxWeight.isEmpty()
+                && minSize.isEmpty() && maxSize.isEmpty();
+    }
+
+    public boolean matches(Item item) {
+        return color.map(c -> Objects.equals(colorKey(c), colorKey(item.color()))).orElse(true)
+                && minWeight.map(min -> item.weight() >= min).orElse(true)
+                && maxWeight.map(max -> item.weight() <= max).orElse(true)
+                && minSize.map(min -> item.size() >= min).orElse(true)
+                && maxSize.map(max -> item.size() <= max).orElse(true);
+    }
+
+    /**
+     * The form colors are indexed and compared in: trimmed and lower case.
+     *
+     * @return the key, or null for a missing or blank color
+     */
+    public static String colorKey(String color) {
+        return color == null || color.isBlank() ? null : color.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,12 @@
+package com.billy.objects;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * @param data records of this page, in ID order
+ * @param next cursor to pass as {@code after} for the next page, or null on the last page
+ */
+public record Page<T>(List<T> data, Long next) {
+}
@@ -0,0 +1,7 @@
+package com.billy.objects;
+
+/**
+ * Keyset pagination parameters: records with an ID greater than {@code after}, at most {@code limit} of them.
+ */
+public record PageRequest(long after, int limit) {
+}
@@ -0,0 +1,13 @@
+package com.billy.objects;
+
+/**
+ * Result of taking or restoring a snapshot.
+ *
+ * @param file           name of the snapshot file
+ * @param bytes          size of the snapshot file
+ * @param records        records in the snapshot, all tables together
+ * @param durationMillis time from the start of the copy until the file was complete
+ * @param pauseMillis    time writes were held for the point-in-time copy, 0 for a restore
+ */
+public record SnapshotReport(String file, long bytes, long records, long durationMillis, long pauseMillis) {
+}
@@ -0,0 +1,13 @@
+package com.billy.objects;
+
+import java.util.List;
+
+/**
+ * State of the background snapshots, served at {@code GET /admin/snapshot}.
+ *
+ * @param running   whether a snapshot is in progress
+ * @param reports   the latest snapshots taken by this process, oldest first
+ * @param lastError why the latest failed snapshot failed, or null
+ */
+public record SnapshotStatus(boolean running, List<SnapshotReport> reports, String lastError) {
+}
@@ -0,0 +1,50 @@
+package com.billy.objects;
+
+import java.util.Iterator;
+
+/**
+ * A stored record with its version. The version starts at {@link #FIRST} when the record is
+ * created and grows by one on every update; records written before versions existed read as
+ * {@link #UNVERSIONED}. Conditional writes compare the stored version with an expected one,
+ * where {@link #ANY} skips the check.
+ */
+public record Versioned<T>(long version, T value) {
+    public static final long UNVERSIONED = 0;
+    public static final long FIRST = 1;
+    public static final long ANY = -1;
+
+    public static <T> Versioned<T> first(T value) {
+        return new Versioned<>(FIRST, value);
+    }
+
+    /**
+     * @return the replacement of this record, one version later
+     */
+    public Versioned<T> next(T newValue) {
+        return new Versioned<>(version + 1, newValue);
+    }
+
+    /**
+     * @return true if a conditional write expecting {@code expectedVersion} may replace this record
+     */
+    public boolean matches(long expectedVersion) {
+        return expectedVersion == ANY || expectedVersion == version;
+    }
+
+    /**
+     * Unwraps the values of an iterator of versioned records, lazily.
+     */
+    public static <T> Iterator<T> values(Iterator<Versioned<T>> records) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return records.next().value();
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.billy.service;
+
+import com.billy.common.JsonUtils;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
+import com.billy.objects.BulkResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies a stream of bulk operations one by one and collects their results.
+ * A failing operation does not stop the run; malformed input does, after recording it as a failure.
+ */
+final class BulkRunner {
+    private static final Logger logger = Logger.getLogger(BulkRunner.class.getName());
+    static final String UNKNOWN_OPERATION = "Unknown operation: %s";
+    static final String MISSING_ID = "Missing id";
+    static final String MISSING_DATA = "Missing data";
+    static final String MALFORMED_INPUT = "Malformed bulk input, stopped";
+
+    @FunctionalInterface
+    interface OperationHandler {
+        BulkResult apply(int index, BulkOperation operation);
+    }
+
+    @FunctionalInterface
+    interface CreateHandler<T> {
+        BulkResult create(int index, T record);
+    }
+
+    private BulkRunner() {
+    }
+
+    /**
+     * Creates records one by one and returns only the failures, so the result stays small for large imports.
+     * A create that throws fails its own record only.
+     */
+    static <T> List<BulkResult> createAll(List<T> records, int firstIndex, CreateHandler<T> handler) {
+        List<BulkResult> failures = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            int index = firstIndex + i;
+            BulkResult result;
+            try {
+                result = handler.create(index, records.get(i));
+            } catch (RuntimeException e) {
+                result = BulkResult.failure(index, BulkOperation.CREATE, null, e.getMessage());
+            }
+            if (!result.ok()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    static BulkResponse run(Iterator<BulkOperation> operations, OperationHandler handler) {
+        List<BulkResult> results = new ArrayList<>();
+        int index = 0;
+        try {
+            while (operations.hasNext()) {
+                BulkOperation operation = operations.next();
+                results.add(applySafely(index++, operation, handler));
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, MALFORMED_INPUT, e);
+            results.add(BulkResult.failure(index, null, null, MALFORMED_INPUT));
+        }
+        return BulkResponse.of(results);
+    }
+
+    static long requireId(BulkOperation operation) {
+        if (operation.id() == null) {
+            throw new IllegalArgumentException(MISSING_ID);
+        }
+        return operation.id();
+    }
+
+    static <T> T requireData(BulkOperation operation, Class<T> clazz) {
+        if (operation.data() == null || operation.data().isNull()) {
+            throw new IllegalArgumentException(MISSING_DATA);
+        }
+        return JsonUtils.convert(operation.data(), clazz);
+    }
+
+    static BulkResult unknownOperation(int index, BulkOperation operation) {
+        return BulkResult.failure(index, operation.op(), operation.id(), String.format(UNKNOWN_OPERATION, operation.op()));
+    }
+
+    private static BulkResult applySafely(int index, BulkOperation operation, OperationHandler handler) {
+        if (operation == null || operation.op() == null) {
+            return BulkResult.failure(index, null, null, String.format(UNKNOWN_OPERATION, (Object) null));
+        }
+        try {
+            return handler.apply(index, operation);
+        } catch (RuntimeException e) {
+            return BulkResult.failure(index, operation.op(), operation.id(), e.getMessage());
+        }
+    }
+}
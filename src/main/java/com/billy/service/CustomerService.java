@@ -1,23 +1,47 @@
 package com.billy.service;
 
+import com.billy.common.ConcurrencyLimiter;
+import com.billy.database.CacheStats;
 import com.billy.database.CustomerDAO;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
+import com.billy.objects.BulkResult;
 import com.billy.objects.Customer;
 import com.billy.objects.CustomerUpdateRequest;
+import com.billy.objects.Page;
+import com.billy.objects.PageRequest;
+import com.billy.objects.Versioned;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.LongConsumer;
 
 /**
  * Service layer for managing Customer entities.
  * Provides CRUD operations and delegates to CustomerDAO.
+ * Point reads and writes pass through a {@link ConcurrencyLimiter}; iterators are returned
+ * directly since they read lazily while the response is streamed.
  */
 public class CustomerService {
 
     public static final String USER_NOT_FOUND = "User not found";
+    public static final String MISSING_REQUIRED_FIELD_EMAIL = "Missing required field: email";
+    public static final String SAVE_FAILED = "Failed to save customer";
     private final CustomerDAO dao;
+    private final ConcurrencyLimiter limiter;
 
     public CustomerService(CustomerDAO dao) {
+        this(dao, ConcurrencyLimiter.unlimited());
+    }
+
+    /**
+     * @param dao     the persistence layer
+     * @param limiter bounds the number of concurrent calls into the DAO
+     */
+    public CustomerService(CustomerDAO dao, ConcurrencyLimiter limiter) {
         this.dao = dao;
+        this.limiter = limiter;
     }
 
     /**
@@ -30,6 +54,26 @@ public class CustomerService {
         return dao.iteratorAllCustomers();
     }
 
+    /**
+     * Returns an iterator over the customers with an ID greater than {@code afterId}, in ID order.
+     *
+     * @param afterId exclusive lower bound of the IDs, 0 for all customers
+     * @return an iterator of Customer objects
+     */
+    public Iterator<Customer> iteratorCustomersAfter(long afterId) {
+        return dao.iteratorCustomersAfter(afterId);
+    }
+
+    /**
+     * Returns one page of customers in ID order.
+     *
+     * @param pageRequest the cursor and page size
+     * @return the page with the cursor of the next page, if any
+     */
+    public Page<Customer> pageCustomers(PageRequest pageRequest) {
+        return limiter.call(() -> dao.findPage(pageRequest.after(), pageRequest.limit()));
+    }
+
     /**
      * Finds a customer by their ID.
      *
@@ -37,7 +81,17 @@ public class CustomerService {
      * @return an Optional containing the Customer if found, or empty if not
      */
     public Optional<Customer> getCustomerById(long id) {
-        return dao.find(id);
+        return limiter.call(() -> dao.find(id));
+    }
+
+    /**
+     * Finds a customer by their email.
+     *
+     * @param email the email of the customer, compared ignoring case
+     * @return an Optional containing the Customer if found, or empty if not
+     */
+    public Optional<Customer> getCustomerByEmail(String email) {
+        return limiter.call(() -> dao.findByEmail(email));
     }
 
     /**
@@ -45,9 +99,10 @@ public class CustomerService {
      *
      * @param customer the Customer to create
      * @return the created Customer with assigned ID
+     * @throws com.billy.database.DuplicateKeyException if the email is already in use
      */
     public Optional<Customer> createCustomer(Customer customer) {
-        return dao.save(customer);
+        return limiter.call(() -> dao.save(customer));
     }
 
     /**
@@ -57,7 +112,7 @@ public class CustomerService {
      * @return true if the customer was deleted, false if not found
      */
     public boolean deleteCustomer(long id) {
-        return dao.delete(id);
+        return limiter.call(() -> dao.delete(id));
     }
 
     /**
@@ -67,8 +122,123 @@ public class CustomerService {
      * @return a Response indicating success or failure
      */
     public Optional<Customer> updateCustomer(long idToUpdate, CustomerUpdateRequest req) {
-        return dao.update(idToUpdate, req);
+        return limiter.call(() -> dao.update(idToUpdate, req));
+
+    }
+
+    /**
+     * Updates an existing customer if it still has the version the client read.
+     *
+     * @param idToUpdate      the ID of the customer to update
+     * @param req             the CustomerUpdateRequest containing updates
+     * @param expectedVersion the expected version, or {@link Versioned#ANY}
+     * @return the updated customer with its new version, empty if not found
+     * @throws com.billy.database.DuplicateKeyException   if the new email is already in use
+     * @throws com.billy.database.VersionConflictException if the customer has another version
+     */
+    public Optional<Versioned<Customer>> updateCustomer(long idToUpdate, CustomerUpdateRequest req, long expectedVersion) {
+        return limiter.call(() -> dao.update(idToUpdate, req, expectedVersion));
+    }
+
+    /**
+     * Deletes a customer if it still has the version the client read.
+     *
+     * @param id              the ID of the customer to delete
+     * @param expectedVersion the expected version, or {@link Versioned#ANY}
+     * @return true if the customer was deleted, false if not found
+     * @throws com.billy.database.VersionConflictException if the customer has another version
+     */
+    public boolean deleteCustomer(long id, long expectedVersion) {
+        return limiter.call(() -> dao.delete(id, expectedVersion));
+    }
+
+    /**
+     * Finds a customer and its version by ID.
+     *
+     * @param id the ID of the customer
+     * @return the customer with its version, or empty if not found
+     */
+    public Optional<Versioned<Customer>> getVersionedCustomerById(long id) {
+        return limiter.call(() -> dao.findVersioned(id));
+    }
+
+    /**
+     * @return a value that changes whenever any customer changes, see {@link CustomerDAO#tableVersion()}
+     */
+    public long tableVersion() {
+        return dao.tableVersion();
+    }
+
+    /**
+     * Registers a callback invoked with the ID of every record changed through the DAO.
+     *
+     * @param listener receives the changed ID
+     */
+    public void onChange(LongConsumer listener) {
+        dao.addChangeListener(listener);
+    }
+
+    /**
+     * @return counters of the DAO read cache
+     */
+    public CacheStats cacheStats() {
+        return dao.cacheStats();
+    }
+
+    /**
+     * Applies a stream of create, update and delete operations in order, as a single batch
+     * that waits for durability once. A failed operation is reported and does not stop the others.
+     * The concurrency permit is taken per operation, not for the whole request, so a slow upload does
+     * not hold one while its body is read.
+     *
+     * @param operations the operations, read lazily
+     * @return the summary and per-operation results
+     */
+    public BulkResponse applyBulk(Iterator<BulkOperation> operations) {
+        return dao.batch(() -> BulkRunner.run(operations,
+                (index, operation) -> limiter.call(() -> applyOperation(index, operation))));
+    }
+
+    /**
+     * Creates a batch of imported customers in a single store batch.
+     * Each record takes its own concurrency permit.
+     * Customers without email or with an email already in use are reported as failures.
+     *
+     * @param customers  the customers to create
+     * @param firstIndex position of the first customer in the import
+     * @return the customers that could not be created
+     */
+    public List<BulkResult> importCustomers(List<Customer> customers, int firstIndex) {
+        return dao.batch(() -> BulkRunner.createAll(customers, firstIndex,
+                (index, record) -> limiter.call(() -> create(index, record))));
+    }
+
+    private BulkResult create(int index, Customer customer) {
+        if (customer.email() == null || customer.email().isBlank()) {
+            return BulkResult.failure(index, BulkOperation.CREATE, null, MISSING_REQUIRED_FIELD_EMAIL);
+        }
+        return dao.save(customer)
+                .map(saved -> BulkResult.success(index, BulkOperation.CREATE, saved.id()))
+                .orElseGet(() -> BulkResult.failure(index, BulkOperation.CREATE, null, SAVE_FAILED));
+    }
 
+    private BulkResult applyOperation(int index, BulkOperation operation) {
+        return switch (operation.op()) {
+            case BulkOperation.CREATE -> create(index, BulkRunner.requireData(operation, Customer.class));
+            case BulkOperation.UPDATE -> {
+                long id = BulkRunner.requireId(operation);
+                yield dao.update(id, BulkRunner.requireData(operation, CustomerUpdateRequest.class))
+                        .map(updated -> BulkResult.success(index, operation.op(), id))
+                        .orElseGet(() -> BulkResult.failure(index, operation.op(), id, USER_NOT_FOUND));
+            }
+            case BulkOperation.DELETE -> {
+                long id = BulkRunner.requireId(operation);
+                yield dao.delete(id)
+                        ? BulkResult.success(index, operation.op(), id)
+                        : BulkResult.failure(index, operation.op(), id, USER_NOT_FOUND);
+            }
+            default -> BulkRunner.unknownOperation(index, operation);
+        };
     }
 }
 
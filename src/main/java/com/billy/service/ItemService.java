@@ -1,22 +1,48 @@
 package com.billy.service;
 
+import com.billy.common.ConcurrencyLimiter;
+import com.billy.database.CacheStats;
 import com.billy.database.ItemDAO;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
+import com.billy.objects.BulkResult;
 import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
 import com.billy.objects.ItemUpdateRequest;
+import com.billy.objects.Page;
+import com.billy.objects.PageRequest;
+import com.billy.objects.Versioned;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.LongConsumer;
 
 /**
  * Service layer for managing {@link Item} entities.
  * Provides CRUD operations and delegates persistence to {@link ItemDAO}.
+ * Point reads and writes pass through a {@link ConcurrencyLimiter}; iterators are returned
+ * directly since they read lazily while the response is streamed.
  */
 public class ItemService {
 
+    public static final String ITEM_NOT_FOUND = "Item not found";
+    public static final String MISSING_REQUIRED_FIELD_NAME = "Missing required field: name";
+    public static final String SAVE_FAILED = "Failed to save item";
     private final ItemDAO dao;
+    private final ConcurrencyLimiter limiter;
 
     public ItemService(ItemDAO dao) {
+        this(dao, ConcurrencyLimiter.unlimited());
+    }
+
+    /**
+     * @param dao     the persistence layer
+     * @param limiter bounds the number of concurrent calls into the DAO
+     */
+    public ItemService(ItemDAO dao, ConcurrencyLimiter limiter) {
         this.dao = dao;
+        this.limiter = limiter;
     }
 
     /**
@@ -29,6 +55,36 @@ public class ItemService {
         return dao.iteratorAllItems();
     }
 
+    /**
+     * Returns an iterator over the items with an ID greater than {@code afterId}, in ID order.
+     *
+     * @param afterId exclusive lower bound of the IDs, 0 for all items
+     * @return an iterator of Item objects
+     */
+    public Iterator<Item> iteratorItemsAfter(long afterId) {
+        return dao.iteratorItemsAfter(afterId);
+    }
+
+    /**
+     * Returns an iterator over the items matching the query, driven by the most selective index.
+     *
+     * @param query the search criteria
+     * @return an iterator of matching Item objects
+     */
+    public Iterator<Item> searchItems(ItemQuery query) {
+        return dao.query(query);
+    }
+
+    /**
+     * Returns one page of items in ID order.
+     *
+     * @param pageRequest the cursor and page size
+     * @return the page with the cursor of the next page, if any
+     */
+    public Page<Item> pageItems(PageRequest pageRequest) {
+        return limiter.call(() -> dao.findPage(pageRequest.after(), pageRequest.limit()));
+    }
+
     /**
      * Finds an item by its ID.
      *
@@ -36,7 +92,7 @@ public class ItemService {
      * @return an Optional containing the Item if found, or empty if not
      */
     public Optional<Item> getItemById(long id) {
-        return dao.find(id);
+        return limiter.call(() -> dao.find(id));
     }
 
     /**
@@ -46,7 +102,7 @@ public class ItemService {
      * @return the created Item with assigned ID
      */
     public Optional<Item> createItem(Item item) {
-        return dao.save(item);
+        return limiter.call(() -> dao.save(item));
     }
 
     /**
@@ -56,7 +112,7 @@ public class ItemService {
      * @return true if the item was deleted, false if not found
      */
     public boolean deleteItem(long id) {
-        return dao.delete(id);
+        return limiter.call(() -> dao.delete(id));
     }
 
     /**
@@ -67,6 +123,119 @@ public class ItemService {
      * @return an Optional containing the updated Item if successful, empty if not found
      */
     public Optional<Item> updateItem(long idToUpdate, ItemUpdateRequest req) {
-        return dao.update(idToUpdate, req);
+        return limiter.call(() -> dao.update(idToUpdate, req));
+    }
+
+    /**
+     * Updates an existing item if it still has the version the client read.
+     *
+     * @param idToUpdate      the ID of the item to update
+     * @param req             the ItemUpdateRequest containing updates
+     * @param expectedVersion the expected version, or {@link Versioned#ANY}
+     * @return the updated item with its new version, empty if not found
+     * @throws com.billy.database.VersionConflictException if the item has another version
+     */
+    public Optional<Versioned<Item>> updateItem(long idToUpdate, ItemUpdateRequest req, long expectedVersion) {
+        return limiter.call(() -> dao.update(idToUpdate, req, expectedVersion));
+    }
+
+    /**
+     * Deletes an item if it still has the version the client read.
+     *
+     * @param id              the ID of the item to delete
+     * @param expectedVersion the expected version, or {@link Versioned#ANY}
+     * @return true if the item was deleted, false if not found
+     * @throws com.billy.database.VersionConflictException if the item has another version
+     */
+    public boolean deleteItem(long id, long expectedVersion) {
+        return limiter.call(() -> dao.delete(id, expectedVersion));
+    }
+
+    /**
+     * Finds a item and its version by ID.
+     *
+     * @param id the ID of the item
+     * @return the item with its version, or empty if not found
+     */
+    public Optional<Versioned<Item>> getVersionedItemById(long id) {
+        return limiter.call(() -> dao.findVersioned(id));
+    }
+
+    /**
+     * @return a value that changes whenever any item changes, see {@link ItemDAO#tableVersion()}
+     */
+    public long tableVersion() {
+        return dao.tableVersion();
+    }
+
+    /**
+     * Registers a callback invoked with the ID of every record changed through the DAO.
+     *
+     * @param listener receives the changed ID
+     */
+    public void onChange(LongConsumer listener) {
+        dao.addChangeListener(listener);
+    }
+
+    /**
+     * @return counters of the DAO read cache
+     */
+    public CacheStats cacheStats() {
+        return dao.cacheStats();
+    }
+
+    /**
+     * Applies a stream of create, update and delete operations in order, as a single batch
+     * that waits for durability once. A failed operation is reported and does not stop the others.
+     * The concurrency permit is taken per operation, not for the whole request, so a slow upload does
+     * not hold one while its body is read.
+     *
+     * @param operations the operations, read lazily
+     * @return the summary and per-operation results
+     */
+    public BulkResponse applyBulk(Iterator<BulkOperation> operations) {
+        return dao.batch(() -> BulkRunner.run(operations,
+                (index, operation) -> limiter.call(() -> applyOperation(index, operation))));
+    }
+
+    /**
+     * Creates a batch of imported items in a single store batch.
+     * Each record takes its own concurrency permit.
+     *
+     * @param items      the items to create
+     * @param firstIndex position of the first item in the import
+     * @return the items that could not be created
+     */
+    public List<BulkResult> importItems(List<Item> items, int firstIndex) {
+        return dao.batch(() -> BulkRunner.createAll(items, firstIndex,
+                (index, record) -> limiter.call(() -> create(index, record))));
+    }
+
+    private BulkResult create(int index, Item item) {
+        if (item.name() == null || item.name().isBlank()) {
+            return BulkResult.failure(index, BulkOperation.CREATE, null, MISSING_REQUIRED_FIELD_NAME);
+        }
+        return dao.save(item)
+                .map(saved -> BulkResult.success(index, BulkOperation.CREATE, saved.id()))
+                .orElseGet(() -> BulkResult.failure(index, BulkOperation.CREATE, null, SAVE_FAILED));
+    }
+
+    private BulkResult applyOperation(int index, BulkOperation operation) {
+        return switch (operation.op()) {
+            case BulkOperation.CREATE -> create(index, BulkRunner.requireData(operation, Item.class));
+            case BulkOperation.UPDATE -> {
+                long id = BulkRunner.requireId(operation);
+                yield dao.update(id, BulkRunner.requireData(operation, ItemUpdateRequest.class))
+                        .map(updated -> BulkResult.success(index, operation.op(), id))
+                        .orElseGet(() -> BulkResult.failure(index, operation.op(), id, ITEM_NOT_FOUND));
+            }
+            case BulkOperation.DELETE -> {
+                long id = BulkRunner.requireId(operation);
+                yield dao.delete(id)
+                        ? BulkResult.success(index, operation.op(), id)
+                        : BulkResult.failure(index, operation.op(), id, ITEM_NOT_FOUND);
+            }
+            default -> BulkRunner.unknownOperation(index, operation);
+        };
     }
 }
@@ -1,8 +1,13 @@
 package com.billy.api;
 
 import com.billy.common.JsonUtils;
+import com.billy.database.DuplicateKeyException;
+import com.billy.database.VersionConflictException;
 import com.billy.objects.Customer;
+import com.billy.objects.Page;
+import com.billy.objects.PageRequest;
 import com.billy.objects.Response;
+import com.billy.objects.Versioned;
 import com.billy.service.CustomerService;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
@@ -16,11 +21,17 @@ import org.mockito.Mockito;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CustomerHandlerTest {
@@ -57,12 +68,13 @@ class CustomerHandlerTest {
     @Test
     void testGetCustomerById_Found() throws Exception {
         Customer customer = new Customer(1, "Alice", "Castro", "female", "alice@gmail.com");
-        when(service.getCustomerById(1L)).thenReturn(Optional.of(customer));
+        when(service.getVersionedCustomerById(1L)).thenReturn(Optional.of(new Versioned<>(3, customer)));
 
         HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
         conn.setRequestMethod("GET");
 
         assertEquals(200, conn.getResponseCode());
+        assertEquals("\"1-3\"", conn.getHeaderField("ETag"));
 
         try (InputStream in = conn.getInputStream()) {
             byte[] data = in.readAllBytes();
@@ -74,7 +86,7 @@ class CustomerHandlerTest {
 
     @Test
     void testGetCustomerById_NotFound() throws Exception {
-        when(service.getCustomerById(99L)).thenReturn(Optional.empty());
+        when(service.getVersionedCustomerById(99L)).thenReturn(Optional.empty());
 
         HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/99").openConnection();
         conn.setRequestMethod("GET");
@@ -88,6 +100,141 @@ class CustomerHandlerTest {
         }
     }
 
+    @Test
+    void testGetCustomerById_NotModified() throws Exception {
+        Customer customer = new Customer(1, "Alice", "Castro", "female", "alice@gmail.com");
+        when(service.getVersionedCustomerById(1L)).thenReturn(Optional.of(new Versioned<>(3, customer)));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
+        conn.setRequestProperty("If-None-Match", "\"1-3\"");
+
+        assertEquals(304, conn.getResponseCode());
+
+        HttpURLConnection changed = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
+        changed.setRequestProperty("If-None-Match", "\"1-2\"");
+
+        assertEquals(200, changed.getResponseCode());
+    }
+
+    @Test
+    void testListNotModifiedUntilTableChanges() throws Exception {
+        when(service.tableVersion()).thenReturn(41L);
+        when(service.iteratorAllCustomers()).thenAnswer(invocation -> List.<Customer>of().iterator());
+
+        HttpURLConnection first = (HttpURLConnection) new URL("http://localhost:" + port + "/customers").openConnection();
+        assertEquals(200, first.getResponseCode());
+        String etag = first.getHeaderField("ETag");
+        first.getInputStream().readAllBytes();
+
+        HttpURLConnection unchanged = (HttpURLConnection) new URL("http://localhost:" + port + "/customers").openConnection();
+        unchanged.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, unchanged.getResponseCode());
+
+        when(service.tableVersion()).thenReturn(42L);
+        HttpURLConnection changed = (HttpURLConnection) new URL("http://localhost:" + port + "/customers").openConnection();
+        changed.setRequestProperty("If-None-Match", etag);
+        assertEquals(200, changed.getResponseCode());
+    }
+
+    @Test
+    void testInvalidPageIsRejectedEvenWhenTheTagMatches() throws Exception {
+        when(service.tableVersion()).thenReturn(41L);
+        when(service.iteratorAllCustomers()).thenAnswer(invocation -> List.<Customer>of().iterator());
+
+        HttpURLConnection first = (HttpURLConnection) new URL("http://localhost:" + port + "/customers").openConnection();
+        assertEquals(200, first.getResponseCode());
+        String etag = first.getHeaderField("ETag");
+        first.getInputStream().readAllBytes();
+
+        HttpURLConnection invalid = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?limit=-1").openConnection();
+        invalid.setRequestProperty("If-None-Match", etag);
+        assertEquals(400, invalid.getResponseCode());
+    }
+
+    @Test
+    void testGetCustomersPage() throws Exception {
+        Customer customer = new Customer(6, "Alice", "Castro", "female", "alice@gmail.com");
+        when(service.pageCustomers(new PageRequest(5, 1))).thenReturn(new Page<>(List.of(customer), 6L));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?after=5&limit=1").openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(200, conn.getResponseCode());
+
+        try (InputStream in = conn.getInputStream()) {
+            String body = new String(in.readAllBytes());
+            assertTrue(body.contains("\"next\":6"));
+            assertTrue(body.contains("alice@gmail.com"));
+        }
+    }
+
+    @Test
+    void testPagesOfOneTableHaveTheirOwnETags() throws Exception {
+        when(service.tableVersion()).thenReturn(41L);
+        when(service.pageCustomers(any())).thenReturn(new Page<>(List.of(), null));
+
+        HttpURLConnection first = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?after=0&limit=10").openConnection();
+        assertEquals(200, first.getResponseCode());
+        String etag = first.getHeaderField("ETag");
+        first.getInputStream().readAllBytes();
+
+        HttpURLConnection same = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?after=0&limit=10").openConnection();
+        same.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, same.getResponseCode());
+
+        HttpURLConnection next = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?after=10&limit=10").openConnection();
+        next.setRequestProperty("If-None-Match", etag);
+        assertEquals(200, next.getResponseCode());
+        assertNotEquals(etag, next.getHeaderField("ETag"));
+    }
+
+    @Test
+    void testGetCustomersPage_InvalidLimit() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?limit=-1").openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(400, conn.getResponseCode());
+    }
+
+    @Test
+    void testGetCustomerByEmail() throws Exception {
+        Customer customer = new Customer(3, "Alice", "Castro", "female", "alice@gmail.com");
+        when(service.getCustomerByEmail("alice@gmail.com")).thenReturn(Optional.of(customer));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?email=alice@gmail.com").openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(200, conn.getResponseCode());
+        try (InputStream in = conn.getInputStream()) {
+            Customer response = JsonUtils.fromJson(in.readAllBytes(), Customer.class);
+            assertEquals(3, response.id());
+        }
+    }
+
+    @Test
+    void testGetCustomerByEmail_NotFound() throws Exception {
+        when(service.getCustomerByEmail("nobody@gmail.com")).thenReturn(Optional.empty());
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers?email=nobody@gmail.com").openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(404, conn.getResponseCode());
+    }
+
+    @Test
+    void testCreateUser_DuplicateEmail() throws Exception {
+        Customer newCustomer = new Customer(0, "Alice", "Castro", "female", "alice@gmail.com");
+        when(service.createCustomer(any())).thenThrow(new DuplicateKeyException("Email already in use: alice@gmail.com", "alice@gmail.com"));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.getOutputStream().write(JsonUtils.toJson(newCustomer).getBytes());
+
+        assertEquals(409, conn.getResponseCode());
+    }
+
     @Test
     void testCreateUser_Success() throws Exception {
         Customer newCustomer = new Customer(1, "Alice", "Castro", "female", "alice@gmail.com");
@@ -111,7 +258,7 @@ class CustomerHandlerTest {
 
     @Test
     void testDeleteUser_Success() throws Exception {
-        when(service.deleteCustomer(1L)).thenReturn(true);
+        when(service.deleteCustomer(1L, Versioned.ANY)).thenReturn(true);
 
         HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
         conn.setRequestMethod("DELETE");
@@ -125,4 +272,26 @@ class CustomerHandlerTest {
             assertTrue(response.ok());
         }
     }
+
+    @Test
+    void testDeleteUser_StaleIfMatch() throws Exception {
+        when(service.deleteCustomer(1L, 2L)).thenThrow(new VersionConflictException(1L, 2L, 3L));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
+        conn.setRequestMethod("DELETE");
+        conn.setRequestProperty("If-Match", "\"1-2\"");
+
+        assertEquals(412, conn.getResponseCode());
+        assertEquals("\"1-3\"", conn.getHeaderField("ETag"));
+    }
+
+    @Test
+    void testDeleteUser_IfMatchOfAnotherRecord() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/customers/1").openConnection();
+        conn.setRequestMethod("DELETE");
+        conn.setRequestProperty("If-Match", "\"2-1\"");
+
+        assertEquals(412, conn.getResponseCode());
+        verify(service, never()).deleteCustomer(anyLong(), anyLong());
+    }
 }
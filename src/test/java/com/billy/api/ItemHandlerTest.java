@@ -1,7 +1,13 @@
 package com.billy.api;
 
+import com.billy.common.Codec;
 import com.billy.common.JsonUtils;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
+import com.billy.objects.BulkResult;
+import com.billy.objects.ImportSummary;
 import com.billy.objects.Item;
+import com.billy.objects.Versioned;
 import com.billy.service.ItemService;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
@@ -11,11 +17,19 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.Socket;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -67,10 +81,92 @@ public class ItemHandlerTest {
         assertTrue(response.endsWith("]"));
     }
 
+    @Test
+    void testGetAllItemsStreamsMultipleChunks() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (long i = 1; i <= 5_000; i++) {
+            items.add(new Item(i, "Item" + i, i, i / 2.0, "BLUE"));
+        }
+        when(itemService.iteratorAllItems()).thenReturn(items.iterator());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/items").openConnection();
+        connection.setRequestMethod("GET");
+
+        assertEquals(200, connection.getResponseCode());
+
+        Item[] response = JsonUtils.fromJson(connection.getInputStream().readAllBytes(), Item[].class);
+        assertEquals(items.size(), response.length);
+        assertEquals(items.get(4_999), response[4_999]);
+    }
+
+    @Test
+    void testGetAllItemsAsCbor() throws IOException {
+        List<Item> items = List.of(new Item(1L, "Item1", 10, 99.99, "RED"), new Item(2L, "Item2", 5, 49.99, "GREEN"));
+        when(itemService.iteratorAllItems()).thenReturn(items.iterator());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/items").openConnection();
+        connection.setRequestProperty("Accept", "application/json;q=0.5, application/cbor");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(Codec.CBOR.mediaType(), connection.getContentType());
+        Item[] response = Codec.CBOR.read(connection.getInputStream().readAllBytes(), Item[].class);
+        assertEquals(items, List.of(response));
+    }
+
+    @Test
+    void testExportItemsAsNdjsonResumesAfterId() throws IOException {
+        List<Item> items = List.of(new Item(3L, "Item3", 10, 99.99, "RED"), new Item(4L, "Item4", 5, 49.99, "GREEN"));
+        when(itemService.iteratorItemsAfter(2L)).thenReturn(items.iterator());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/items?after=2").openConnection();
+        connection.setRequestProperty("Accept", "application/x-ndjson");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(Codec.NDJSON.mediaType(), connection.getContentType());
+        String body = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(JsonUtils.toJson(items.get(0)) + "\n" + JsonUtils.toJson(items.get(1)) + "\n", body);
+    }
+
+    @Test
+    void testExportItemsAsCsv() throws IOException {
+        when(itemService.iteratorItemsAfter(0L)).thenReturn(List.of(new Item(1L, "Lamp", 1.5, 0.25, "Red")).iterator());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/items").openConnection();
+        connection.setRequestProperty("Accept", "text/csv");
+
+        assertEquals(200, connection.getResponseCode());
+        String[] lines = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("name") && lines[0].contains("color"));
+        assertTrue(lines[1].contains("Lamp") && lines[1].contains("Red"));
+    }
+
+    @Test
+    void testSearchItems() throws IOException {
+        when(itemService.searchItems(any())).thenReturn(List.of(new Item(3L, "RedLamp", 1, 1.5, "RED")).iterator());
+
+        URL url = new URL("http://localhost:" + port + "/items?color=red&maxWeight=2");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(200, conn.getResponseCode());
+        String response = new String(conn.getInputStream().readAllBytes());
+        assertTrue(response.contains("RedLamp"));
+    }
+
+    @Test
+    void testSearchItemsInvalidBound() throws IOException {
+        URL url = new URL("http://localhost:" + port + "/items?minWeight=heavy");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+
+        assertEquals(400, conn.getResponseCode());
+    }
+
     @Test
     void testGetItemById() throws IOException {
         Item item = new Item(1L, "Item1", 10, 99.99, "RED");
-        when(itemService.getItemById(1L)).thenReturn(Optional.of(item));
+        when(itemService.getVersionedItemById(1L)).thenReturn(Optional.of(Versioned.first(item)));
 
         URL url = new URL("http://localhost:" + port + "/items/1");
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
@@ -81,6 +177,31 @@ public class ItemHandlerTest {
         assertTrue(response.contains("Item1"));
     }
 
+    @Test
+    void testEachCodecHasItsOwnETag() throws IOException {
+        Item item = new Item(1L, "Item1", 10, 99.99, "RED");
+        when(itemService.getVersionedItemById(1L)).thenReturn(Optional.of(Versioned.first(item)));
+
+        HttpURLConnection json = (HttpURLConnection) new URL("http://localhost:" + port + "/items/1").openConnection();
+        assertEquals(200, json.getResponseCode());
+        assertEquals("\"1-1\"", json.getHeaderField("ETag"));
+        assertEquals("Accept", json.getHeaderField("Vary"));
+        json.getInputStream().readAllBytes();
+
+        HttpURLConnection cbor = (HttpURLConnection) new URL("http://localhost:" + port + "/items/1").openConnection();
+        cbor.setRequestProperty("Accept", "application/cbor");
+        cbor.setRequestProperty("If-None-Match", "\"1-1\"");
+        assertEquals(200, cbor.getResponseCode());
+        assertEquals("\"1-1.cbor\"", cbor.getHeaderField("ETag"));
+        assertEquals(item, Codec.CBOR.read(cbor.getInputStream().readAllBytes(), Item.class));
+
+        when(itemService.deleteItem(1L, 1L)).thenReturn(true);
+        HttpURLConnection delete = (HttpURLConnection) new URL("http://localhost:" + port + "/items/1").openConnection();
+        delete.setRequestMethod("DELETE");
+        delete.setRequestProperty("If-Match", "\"1-1.cbor\"");
+        assertEquals(200, delete.getResponseCode());
+    }
+
     @Test
     void testCreateItem() throws IOException {
         Item item = new Item(null, "NewItem", 10, 99.99, "RED");
@@ -99,9 +220,34 @@ public class ItemHandlerTest {
         assertTrue(response.contains("NewItem"));
     }
 
+    @Test
+    void testCreateItemWritesOffTheIoThreadWhenTheBodyArrivesLate() throws Exception {
+        Item savedItem = new Item(1L, "Late", 10, 99.99, "RED");
+        AtomicReference<String> writer = new AtomicReference<>();
+        when(itemService.createItem(any())).thenAnswer(invocation -> {
+            writer.set(Thread.currentThread().getName());
+            return Optional.of(savedItem);
+        });
+        byte[] body = JsonUtils.toJson(new Item(null, "Late", 10, 99.99, "RED")).getBytes(StandardCharsets.UTF_8);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /items HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread.sleep(200);
+            out.write(body);
+            out.flush();
+
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(response.startsWith("HTTP/1.1 201"), response);
+        }
+        assertFalse(writer.get().contains("I/O"), writer.get());
+    }
+
     @Test
     void testDeleteItem() throws IOException {
-        when(itemService.deleteItem(1L)).thenReturn(true);
+        when(itemService.deleteItem(1L, Versioned.ANY)).thenReturn(true);
 
         URL url = new URL("http://localhost:" + port + "/items/1");
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
@@ -113,4 +259,66 @@ public class ItemHandlerTest {
         String response = new String(conn.getInputStream().readAllBytes());
         assertTrue(response.contains("1"));
     }
+
+    @Test
+    void testBulkItemsReadsNdjson() throws IOException {
+        when(itemService.applyBulk(any())).thenAnswer(invocation -> {
+            Iterator<BulkOperation> operations = invocation.getArgument(0);
+            List<BulkResult> results = new ArrayList<>();
+            while (operations.hasNext()) {
+                BulkOperation operation = operations.next();
+                results.add(BulkResult.success(results.size(), operation.op(), operation.id()));
+            }
+            return BulkResponse.of(results);
+        });
+        String body = """
+                {"op":"create","data":{"name":"Box","size":1,"weight":2,"color":"RED"}}
+                {"op":"update","id":3,"data":{"color":"BLUE"}}
+                {"op":"delete","id":4}
+                """;
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/items/_bulk").openConnection();
+        conn.setDoOutput(true);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/x-ndjson");
+        conn.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(200, conn.getResponseCode());
+        BulkResponse response = JsonUtils.fromJson(conn.getInputStream().readAllBytes(), BulkResponse.class);
+        assertEquals(3, response.total());
+        assertEquals(3, response.succeeded());
+        assertEquals(BulkOperation.DELETE, response.results().get(2).op());
+        assertEquals(4L, response.results().get(2).id());
+    }
+
+    @Test
+    void testImportItemsInBatches() throws IOException {
+        List<Item> imported = new ArrayList<>();
+        when(itemService.importItems(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<Item> batch = invocation.getArgument(0);
+            int firstIndex = invocation.getArgument(1);
+            assertEquals(imported.size(), firstIndex);
+            imported.addAll(batch);
+            return firstIndex == 0 ? List.of(BulkResult.failure(5, BulkOperation.CREATE, null, "rejected")) : List.of();
+        });
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2_500; i++) {
+            body.append(JsonUtils.toJson(new Item(null, "Item" + i, i, 1, "RED"))).append('\n');
+        }
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/items/_import").openConnection();
+        conn.setDoOutput(true);
+        conn.setChunkedStreamingMode(8 * 1024);
+        conn.setRequestMethod("POST");
+        conn.getOutputStream().write(body.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(200, conn.getResponseCode());
+        ImportSummary summary = JsonUtils.fromJson(conn.getInputStream().readAllBytes(), ImportSummary.class);
+        assertEquals(2_500, summary.received());
+        assertEquals(2_499, summary.imported());
+        assertEquals(1, summary.failed());
+        assertEquals(3, summary.batches());
+        assertEquals(5, summary.failures().get(0).index());
+        assertEquals("Item2499", imported.get(2_499).name());
+    }
 }
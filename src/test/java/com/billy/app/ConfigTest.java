@@ -0,0 +1,29 @@
+package com.billy.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigTest {
+
+    @Test
+    void testSectionOverridesSharedKeys() {
+        Properties properties = new Properties();
+        properties.setProperty("db.file", "db/data.db");
+        properties.setProperty("db.commit.mode", "group");
+        properties.setProperty("db.items.file", "db/items.db");
+        properties.setProperty("db.items.commit.mode", "async");
+        Config config = new Config(properties);
+
+        Config items = config.section("items");
+        assertEquals("db/items.db", items.get("db.file"));
+        assertEquals("async", items.get("db.commit.mode"));
+
+        Config customers = config.section("customers");
+        assertEquals("db/data.db", customers.get("db.file"));
+        assertEquals("group", customers.get("db.commit.mode"));
+        assertEquals("db/data.db", config.get("db.file"));
+    }
+}
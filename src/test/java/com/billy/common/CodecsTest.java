@@ -0,0 +1,58 @@
+package com.billy.common;
+
+import com.billy.objects.Customer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CodecsTest {
+
+    @Test
+    void testAcceptPicksHighestQualityThenMostSpecific() {
+        assertEquals(Codec.CBOR, Codecs.forAccept("application/json;q=0.9, application/cbor"));
+        assertEquals(Codec.SMILE, Codecs.forAccept("*/*;q=0.8, application/x-jackson-smile;q=0.8"));
+        assertEquals(Codec.MSGPACK, Codecs.forAccept("text/html, application/msgpack;q=0.1"));
+    }
+
+    @Test
+    void testUnknownOrGenericAcceptFallsBackToJson() {
+        assertEquals(Codec.JSON, Codecs.forAccept(null));
+        assertEquals(Codec.JSON, Codecs.forAccept("text/html, image/gif, image/jpeg, *; q=.2, */*; q=.2"));
+        assertEquals(Codec.JSON, Codecs.forAccept("application/xml"));
+        assertEquals(Codec.JSON, Codecs.forAccept("application/cbor;q=0"));
+    }
+
+    @Test
+    void testRecordFormatsOnlyForLists() {
+        assertEquals(Codec.JSON, Codecs.forAccept("application/x-ndjson"));
+        assertEquals(Codec.NDJSON, Codecs.forRecordsAccept("application/x-ndjson"));
+        assertEquals(Codec.CSV, Codecs.forRecordsAccept("text/*, application/json;q=0.5"));
+        assertEquals(Codec.JSON, Codecs.forRecordsAccept("*/*"));
+    }
+
+    @Test
+    void testContentTypeIgnoresParameters() {
+        assertEquals(Codec.CBOR, Codecs.forContentType("Application/CBOR; charset=binary"));
+        assertEquals(Codec.JSON, Codecs.forContentType("application/x-www-form-urlencoded"));
+        assertEquals(Codec.JSON, Codecs.forContentType(null));
+    }
+
+    @Test
+    void testTagSuffixNamesTheFormat() {
+        assertEquals("", Codec.JSON.tagSuffix());
+        assertEquals(".cbor", Codec.CBOR.tagSuffix());
+        assertEquals(".smile", Codec.SMILE.tagSuffix());
+        assertEquals(".ndjson", Codec.NDJSON.tagSuffix());
+        assertEquals(".csv", Codec.CSV.tagSuffix());
+    }
+
+    @Test
+    void testEveryCodecRoundTripsRecords() throws IOException {
+        Customer customer = new Customer(7, "Ana", null, "female", "ana@example.com");
+        for (Codec codec : new Codec[]{Codec.JSON, Codec.CBOR, Codec.SMILE, Codec.MSGPACK}) {
+            assertEquals(customer, codec.read(codec.write(customer), Customer.class), codec.mediaType());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.billy.common;
+
+import com.billy.objects.Item;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompressionTest {
+
+    private static final Logger logger = Logger.getLogger(CompressionTest.class.getName());
+    private static final int port = 8084;
+    private static final List<Item> ITEMS = LongStream.rangeClosed(1, 2_000)
+            .mapToObj(id -> new Item(id, "Lamp", 1.5, 0.25, "Red"))
+            .toList();
+    private static Undertow server;
+
+    @BeforeAll
+    static void startServer() {
+        RoutingHandler routes = Handlers.routing()
+                .get("/small", exchange -> HandlerUtils.sendResponse(exchange, 200, "{\"ok\":true}"))
+                .get("/stream", exchange -> RecordStreamer.streamJsonArray(exchange, ITEMS.iterator(), logger));
+        server = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setHandler(Compression.handler(routes, Compression.DEFAULT_LEVEL, Compression.DEFAULT_MIN_BYTES))
+                .build();
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    private static HttpURLConnection get(String path, String acceptEncoding) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        if (acceptEncoding != null) {
+            conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        return conn;
+    }
+
+    @Test
+    void testStreamedListIsGzipped() throws Exception {
+        HttpURLConnection conn = get("/stream", "gzip, deflate");
+
+        assertEquals(200, conn.getResponseCode());
+        assertEquals(Compression.GZIP, conn.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", conn.getHeaderField("Vary"));
+        try (InputStream in = new GZIPInputStream(conn.getInputStream())) {
+            assertEquals(JsonUtils.toJson(ITEMS), new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void testSmallResponseIsNotCompressed() throws Exception {
+        HttpURLConnection conn = get("/small", "gzip");
+
+        assertEquals(200, conn.getResponseCode());
+        assertNull(conn.getHeaderField("Content-Encoding"));
+    }
+
+    @Test
+    void testIdentityWithoutAcceptEncoding() throws Exception {
+        HttpURLConnection conn = get("/stream", null);
+
+        assertEquals(200, conn.getResponseCode());
+        assertNull(conn.getHeaderField("Content-Encoding"));
+        try (InputStream in = conn.getInputStream()) {
+            assertEquals(JsonUtils.toJson(ITEMS), new String(in.readAllBytes()));
+        }
+    }
+}
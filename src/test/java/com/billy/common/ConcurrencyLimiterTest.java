@@ -0,0 +1,60 @@
+package com.billy.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void testCallsNeverExceedLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        int calls = 200;
+        CountDownLatch done = new CountDownLatch(calls);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < calls; i++) {
+                executor.submit(() -> limiter.call(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                    return null;
+                }));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        }
+
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(4, limiter.availablePermits());
+    }
+
+    @Test
+    void testPermitReleasedWhenCallFails() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of(1);
+
+        assertThrows(IllegalStateException.class, () -> limiter.call(() -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(1, limiter.availablePermits());
+        assertEquals("ok", limiter.call(() -> "ok"));
+    }
+
+    @Test
+    void testUnlimited() {
+        assertEquals(Integer.MAX_VALUE, ConcurrencyLimiter.unlimited().availablePermits());
+        assertThrows(IllegalArgumentException.class, () -> ConcurrencyLimiter.of(0));
+    }
+}
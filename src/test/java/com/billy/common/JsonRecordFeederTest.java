@@ -0,0 +1,77 @@
+package com.billy.common;
+
+import com.billy.objects.Item;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonRecordFeederTest {
+
+    private final List<Item> records = new ArrayList<>();
+    private final List<String> invalid = new ArrayList<>();
+
+    private JsonRecordFeeder<Item> feeder() throws IOException {
+        return new JsonRecordFeeder<>(Item.class, new JsonRecordFeeder.Listener<>() {
+            @Override
+            public void record(Item record) {
+                records.add(record);
+            }
+
+            @Override
+            public void invalid(String error) {
+                invalid.add(error);
+            }
+        });
+    }
+
+    private void feedByteByByte(JsonRecordFeeder<Item> feeder, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            feeder.feed(bytes, i, 1);
+        }
+        feeder.endOfInput();
+    }
+
+    @Test
+    void testNdjsonSplitAtEveryByte() throws IOException {
+        feedByteByByte(feeder(), """
+                {"id":1,"name":"Lámp","size":1.5,"weight":0.25,"color":"Red"}
+                {"id":2,"name":"Desk","size":2,"weight":30,"color":null}
+                """);
+
+        assertEquals(List.of(new Item(1L, "Lámp", 1.5, 0.25, "Red"), new Item(2L, "Desk", 2, 30, null)), records);
+    }
+
+    @Test
+    void testArrayWithInvalidRecordContinues() throws IOException {
+        feedByteByByte(feeder(), "[{\"name\":\"A\"},{\"name\":\"B\",\"size\":\"big\"},{\"name\":\"C\",\"tags\":{\"x\":[1]}}]");
+
+        assertEquals(List.of("A", "C"), records.stream().map(Item::name).toList());
+        assertEquals(1, invalid.size());
+    }
+
+    @Test
+    void testTruncatedInputFails() throws IOException {
+        JsonRecordFeeder<Item> feeder = feeder();
+        byte[] bytes = "{\"name\":\"A\"}\n{\"name\":".getBytes(StandardCharsets.UTF_8);
+        feeder.feed(bytes, 0, bytes.length);
+
+        assertThrows(IOException.class, feeder::endOfInput);
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    void testScalarAtRootIsMalformed() throws IOException {
+        JsonRecordFeeder<Item> feeder = feeder();
+        byte[] bytes = "{\"name\":\"A\"} 42".getBytes(StandardCharsets.UTF_8);
+        feeder.feed(bytes, 0, bytes.length);
+
+        assertThrows(IOException.class, feeder::endOfInput);
+    }
+}
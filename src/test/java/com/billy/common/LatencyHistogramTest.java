@@ -0,0 +1,72 @@
+package com.billy.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverEveryValueWithinQuarterPrecision() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long upper = LatencyHistogram.upperBoundMicros(bucket);
+            long lower = bucket == 0 ? 0 : LatencyHistogram.upperBoundMicros(bucket - 1) + 1;
+            assertTrue(lower <= micros && micros <= upper, "bucket " + bucket + " for " + micros);
+            assertTrue(upper - lower <= Math.max(0, lower / 4), "bucket " + bucket + " too wide");
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(LatencyHistogram.MAX_MICROS));
+    }
+
+    @Test
+    void testFineBucketsTellApartCloseLatencies() {
+        int subBits = 6;
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros, subBits);
+            long upper = LatencyHistogram.upperBoundMicros(bucket, subBits);
+            long lower = bucket == 0 ? 0 : LatencyHistogram.upperBoundMicros(bucket - 1, subBits) + 1;
+            assertTrue(lower <= micros && micros <= upper, "bucket " + bucket + " for " + micros);
+            assertTrue(upper - lower <= lower / 64, "bucket " + bucket + " too wide");
+        }
+
+        LatencyHistogram fine = new LatencyHistogram(subBits);
+        LatencyHistogram coarse = new LatencyHistogram();
+        fine.record(1_030_000);
+        coarse.record(1_030_000);
+        long fineAt103 = fine.snapshot().quantileMicros(1);
+        long coarseAt103 = coarse.snapshot().quantileMicros(1);
+        fine.record(1_270_000);
+        coarse.record(1_270_000);
+        assertTrue(fine.snapshot().quantileMicros(1) > fineAt103, "1.27 ms is told apart from 1.03 ms");
+        assertEquals(coarseAt103, coarse.snapshot().quantileMicros(1));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(LatencyHistogram.MAX_SUB_BITS + 1));
+    }
+
+    @Test
+    void testSnapshotCountsSumAndQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.count());
+        assertEquals(5_050_000_000L, snapshot.sumNanos());
+        assertEquals(0, snapshot.quantileMicros(0));
+        long p50 = snapshot.quantileMicros(0.5);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 5 / 4, "p50 " + p50);
+        long p99 = snapshot.quantileMicros(0.99);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 5 / 4, "p99 " + p99);
+    }
+
+    @Test
+    void testValuesAboveMaxGoToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(1, histogram.snapshot().countAt(LatencyHistogram.BUCKETS - 1));
+    }
+}
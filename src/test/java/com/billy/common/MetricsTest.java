@@ -0,0 +1,94 @@
+package com.billy.common;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.StatusCodes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    private static final int port = 8085;
+    private static final Metrics metrics = new Metrics();
+    private static Undertow server;
+
+    @BeforeAll
+    static void startServer() {
+        RoutingHandler routes = Handlers.routing()
+                .get("/items/{id}", exchange -> HandlerUtils.sendResponse(exchange, StatusCodes.OK, "{\"id\":1}"))
+                .post("/items", exchange -> exchange.getRequestReceiver().receiveFullBytes(
+                        (ex, body) -> HandlerUtils.sendResponse(ex, StatusCodes.CREATED, "{}")))
+                .get("/metrics", exchange -> exchange.getResponseSender().send(metrics.scrape()));
+        server = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setHandler(metrics.handler(routes))
+                .build();
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    private static int request(String method, String path, String body) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        conn.setRequestMethod(method);
+        if (body != null) {
+            conn.setDoOutput(true);
+            conn.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = conn.getResponseCode();
+        InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+        if (in != null) {
+            in.readAllBytes();
+        }
+        return status;
+    }
+
+    private static String scrape() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics").openConnection();
+        return new String(conn.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRecordsRouteTemplatesStatusesAndBytes() throws Exception {
+        request("GET", "/items/1", null);
+        request("GET", "/items/2", null);
+        request("POST", "/items", "{\"name\":\"Lamp\"}");
+        assertEquals(404, request("GET", "/nowhere", null));
+
+        String text = scrape();
+        String get = "method=\"GET\",route=\"/items/{id}\",status=\"200\"";
+        assertTrue(text.contains(Metrics.PREFIX + "http_request_duration_seconds_count{" + get + "} 2"), text);
+        assertTrue(text.contains(Metrics.PREFIX + "http_request_duration_seconds_bucket{" + get + ",le=\"+Inf\"} 2"), text);
+        String post = "method=\"POST\",route=\"/items\",status=\"201\"";
+        assertTrue(text.contains(Metrics.PREFIX + "http_request_bytes_total{" + post + "} 15"), text);
+        assertTrue(text.contains(Metrics.PREFIX + "http_response_bytes_total{" + post + "} "), text);
+        assertTrue(text.contains("route=\"" + Metrics.UNMATCHED + "\",status=\"404\""), text);
+        assertTrue(text.contains(Metrics.PREFIX + "http_requests_in_flight 1\n"), text);
+    }
+
+    @Test
+    void testRecordsCommits() {
+        metrics.recordCommit(3_000_000, true);
+        metrics.recordCommit(1_000, false);
+
+        String text = metrics.scrape();
+        assertTrue(text.contains(Metrics.PREFIX + "mapdb_commit_duration_seconds_count 1\n"), text);
+        assertEquals(LatencyHistogram.BUCKETS + 1, text.lines()
+                .filter(line -> line.startsWith(Metrics.PREFIX + "mapdb_commit_duration_seconds_bucket")).count());
+        assertTrue(text.contains(Metrics.PREFIX + "mapdb_commit_duration_seconds_bucket{le=\"1.0E-6\"} 0\n"), text);
+        assertTrue(text.contains(Metrics.PREFIX + "mapdb_commit_failures_total 1\n"), text);
+    }
+}
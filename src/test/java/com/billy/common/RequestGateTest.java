@@ -0,0 +1,167 @@
+package com.billy.common;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestGateTest {
+    private static final int port = 8086;
+    private static final RequestGate gate = new RequestGate();
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static volatile CountDownLatch slowRelease = new CountDownLatch(0);
+    private static Undertow server;
+
+    @BeforeAll
+    static void startServer() {
+        RoutingHandler routes = Handlers.routing()
+                .get("/fast", exchange -> HandlerUtils.sendResponse(exchange, 200, "fast"))
+                .post("/fast", exchange -> HandlerUtils.sendResponse(exchange, 200, "written"))
+                .get("/slow", exchange -> exchange.dispatch(() -> {
+                    try {
+                        slowRelease.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    HandlerUtils.sendResponse(exchange, 200, "slow");
+                }))
+                .get("/export", exchange -> {
+                    RequestGate.markLongRunning(exchange);
+                    exchange.dispatch(() -> {
+                        try {
+                            slowRelease.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        HandlerUtils.sendResponse(exchange, 200, "export");
+                    });
+                });
+        server = Undertow.builder()
+                .addHttpListener(port, "localhost")
+                .setHandler(gate.handler(routes))
+                .build();
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    private static CompletableFuture<HttpResponse<String>> get(String path) {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void awaitHeld(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.held() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testRequestsWaitForTheEndOfAPause() throws Exception {
+        Runnable resume = gate.pause(1_000);
+        CompletableFuture<HttpResponse<String>> first = get("/fast");
+        CompletableFuture<HttpResponse<String>> second = get("/fast");
+        awaitHeld(2);
+        assertEquals(2, gate.held());
+        assertFalse(first.isDone());
+
+        resume.run();
+
+        assertEquals("fast", first.get(5, TimeUnit.SECONDS).body());
+        assertEquals("fast", second.get(5, TimeUnit.SECONDS).body());
+        assertEquals(0, gate.held());
+    }
+
+    @Test
+    void testPauseWritesHoldsOnlyWrites() throws Exception {
+        Runnable resume = gate.pauseWrites(1_000);
+        CompletableFuture<HttpResponse<String>> write = client.sendAsync(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/fast"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("fast", get("/fast").get(5, TimeUnit.SECONDS).body());
+        awaitHeld(1);
+        assertEquals(1, gate.held());
+        assertFalse(write.isDone());
+
+        resume.run();
+
+        assertEquals("written", write.get(5, TimeUnit.SECONDS).body());
+        assertEquals(0, gate.held());
+    }
+
+    @Test
+    void testPauseWritesDoesNotWaitForLongReads() throws Exception {
+        slowRelease = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<String>> export = get("/export");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.longRunning() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Runnable resume = gate.pauseWrites(1_000);
+        resume.run();
+
+        slowRelease.countDown();
+        assertEquals("export", export.get(5, TimeUnit.SECONDS).body());
+    }
+
+    @Test
+    void testPauseWaitsForRunningRequests() throws Exception {
+        slowRelease = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<String>> slow = get("/slow");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.active() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(TimeoutException.class, () -> gate.pause(50));
+        assertEquals("fast", get("/fast").get(5, TimeUnit.SECONDS).body());
+
+        slowRelease.countDown();
+        Runnable resume = gate.pause(5_000);
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS).body());
+        resume.run();
+    }
+
+    @Test
+    void testPauseFailsAtOnceWhileALongRunningRequestRuns() throws Exception {
+        slowRelease = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<String>> export = get("/export");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.longRunning() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> gate.pause(5_000));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "did not wait for the timeout");
+        assertEquals("fast", get("/fast").get(5, TimeUnit.SECONDS).body());
+
+        slowRelease.countDown();
+        assertEquals("export", export.get(5, TimeUnit.SECONDS).body());
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.longRunning() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Runnable resume = gate.pause(5_000);
+        resume.run();
+    }
+}
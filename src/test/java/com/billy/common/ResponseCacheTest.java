@@ -0,0 +1,70 @@
+package com.billy.common;
+
+import com.billy.objects.Item;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testHitReusesEncoding() {
+        ResponseCache<Item> cache = new ResponseCache<>(1_000_000);
+        Item item = new Item(1L, "Lamp", 1.5, 0.25, "Red");
+
+        String first = text(cache.encode(1L, 1, item));
+        ByteBuffer second = cache.encode(1L, 1, item);
+
+        assertEquals(JsonUtils.toJson(item), first);
+        assertTrue(second.isDirect());
+        assertEquals(first, text(second));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void testNewVersionIsReencoded() {
+        ResponseCache<Item> cache = new ResponseCache<>(1_000_000);
+        cache.encode(1L, 1, new Item(1L, "Lamp", 1.5, 0.25, "Red"));
+
+        Item changed = new Item(1L, "Lamp", 1.5, 0.25, "Blue");
+        assertEquals(JsonUtils.toJson(changed), text(cache.encode(1L, 2, changed)));
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    void testOversizedEncodingIsNotCached() {
+        Item item = new Item(1L, "Lamp", 1.5, 0.25, "Red");
+        ResponseCache<Item> cache = new ResponseCache<>(JsonUtils.toJsonBytes(item).length - 1);
+
+        ByteBuffer first = cache.encode(1L, 1, item);
+        assertFalse(first.isDirect());
+        assertEquals(JsonUtils.toJson(item), text(first));
+        cache.encode(1L, 1, item);
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    void testInvalidateAndDisabled() {
+        ResponseCache<Item> cache = new ResponseCache<>(1_000_000);
+        Item item = new Item(1L, "Lamp", 1.5, 0.25, "Red");
+        cache.encode(1L, 1, item);
+        cache.invalidate(1L);
+        cache.encode(1L, 1, item);
+        assertEquals(2, cache.misses());
+
+        ResponseCache<Item> disabled = ResponseCache.disabled();
+        assertEquals(JsonUtils.toJson(item), text(disabled.encode(1L, 1, item)));
+        assertEquals(0, disabled.hits() + disabled.misses());
+    }
+}
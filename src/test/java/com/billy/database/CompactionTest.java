@@ -0,0 +1,244 @@
+package com.billy.database;
+
+import com.billy.objects.CompactionPostponement;
+import com.billy.objects.CompactionReport;
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
+import com.billy.objects.ItemUpdateRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapdb.Serializer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactionTest {
+    private static final int ITEMS = 2_000;
+
+    @TempDir
+    Path directory;
+    private MapDbWrapper dbWrapper;
+    private ItemDAO itemDAO;
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setup() {
+        dbWrapper = new MapDbWrapper(file(), CommitPolicy.async());
+        itemDAO = new ItemDAO(dbWrapper);
+        customerDAO = new CustomerDAO(dbWrapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (!dbWrapper.db().isClosed()) {
+            dbWrapper.close();
+        }
+    }
+
+    private String file() {
+        return directory.resolve("data.db").toString();
+    }
+
+    /**
+     * Saves items, rewrites each of them several times and deletes half, leaving most of the file free.
+     */
+    private List<Long> churn() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            ids.add(itemDAO.save(new Item(null, "Item-" + i, i, i, i % 2 == 0 ? "RED" : "BLUE")).orElseThrow().id());
+        }
+        for (int round = 0; round < 5; round++) {
+            for (long id : ids) {
+                itemDAO.update(id, new ItemUpdateRequest(Optional.of("Renamed-" + round + "-" + "x".repeat(100)),
+                        Optional.empty(), Optional.empty(), Optional.empty()));
+            }
+            dbWrapper.commit();
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            itemDAO.delete(ids.get(i));
+        }
+        dbWrapper.commit();
+        return ids;
+    }
+
+    private List<Item> allItems() {
+        List<Item> items = new ArrayList<>();
+        itemDAO.iteratorAllItems().forEachRemaining(items::add);
+        return items;
+    }
+
+    @Test
+    void testCompactionReclaimsSpaceAndKeepsRecords() throws Exception {
+        List<Long> ids = churn();
+        Customer customer = customerDAO.save(new Customer(-1, "Ada", "Lovelace", "female", "ada@example.com"))
+                .orElseThrow();
+        List<Item> before = allItems();
+        long bytesBefore = dbWrapper.fileSize();
+
+        CompactionReport report = dbWrapper.compact(0, Quiescer.NONE);
+
+        assertEquals(bytesBefore, report.bytesBefore());
+        assertEquals(dbWrapper.fileSize(), report.bytesAfter());
+        assertTrue(report.bytesAfter() < bytesBefore / 2, report.toString());
+        assertEquals(report.bytesBefore() - report.bytesAfter(), report.reclaimedBytes());
+        assertFalse(Files.exists(Path.of(file() + MapDbWrapper.COMPACT_SUFFIX)));
+        assertEquals(before, allItems());
+        assertEquals(Optional.of(customer), customerDAO.findByEmail("ada@example.com"));
+
+        Item saved = itemDAO.save(new Item(null, "After", 1, 1, "GREEN")).orElseThrow();
+        assertTrue(saved.id() > ids.get(ids.size() - 1));
+        Iterator<Item> green = itemDAO.query(new ItemQuery(Optional.of("GREEN"), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty()));
+        assertEquals(saved, green.next());
+        assertFalse(green.hasNext());
+        assertThrows(DuplicateKeyException.class,
+                () -> customerDAO.save(new Customer(-1, "Other", "Other", "other", "ada@example.com")));
+
+        dbWrapper.close();
+        dbWrapper = new MapDbWrapper(file(), CommitPolicy.async());
+        itemDAO = new ItemDAO(dbWrapper);
+        assertEquals(report.bytesAfter(), dbWrapper.compactedBytes());
+        assertEquals(saved, itemDAO.find(saved.id()).orElseThrow());
+        assertEquals(before.size() + 1, allItems().size());
+    }
+
+    @Test
+    void testWritesDuringTheCopyAreCaughtUp() throws Exception {
+        List<Long> ids = churn();
+        long deleted = ids.get(1);
+        long updated = ids.get(3);
+        List<Item> added = new ArrayList<>();
+        Quiescer writesBeforePause = () -> {
+            itemDAO.delete(deleted);
+            itemDAO.update(updated, new ItemUpdateRequest(Optional.empty(), Optional.empty(), Optional.empty(),
+                    Optional.of("GREEN")));
+            added.add(itemDAO.save(new Item(null, "Late", 2, 2, "GREEN")).orElseThrow());
+            return () -> {
+            };
+        };
+
+        CompactionReport report = dbWrapper.compact(0, writesBeforePause);
+
+        assertTrue(report.changes() > 0, report.toString());
+        assertTrue(report.changes() < 20, "only the keys written are copied again: " + report);
+        assertTrue(itemDAO.find(deleted).isEmpty());
+        assertEquals("GREEN", itemDAO.find(updated).orElseThrow().color());
+        assertEquals(added.get(0), itemDAO.find(added.get(0).id()).orElseThrow());
+        Iterator<Item> green = itemDAO.query(new ItemQuery(Optional.of("GREEN"), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty()));
+        List<Long> greenIds = new ArrayList<>();
+        green.forEachRemaining(item -> greenIds.add(item.id()));
+        assertEquals(List.of(updated, added.get(0).id()), greenIds);
+    }
+
+    @Test
+    void testUnregisteredCollectionKeepsTheStore() throws Exception {
+        churn();
+        dbWrapper.db().treeMap("unregistered", Serializer.LONG, Serializer.STRING).createOrOpen().put(1L, "one");
+        dbWrapper.commit();
+        List<Item> before = allItems();
+
+        assertThrows(IllegalStateException.class, () -> dbWrapper.compact(0, Quiescer.NONE));
+
+        assertFalse(Files.exists(Path.of(file() + MapDbWrapper.COMPACT_SUFFIX)));
+        assertEquals(before, allItems());
+    }
+
+    @Test
+    void testFailedPauseKeepsTheStore() throws Exception {
+        churn();
+        List<Item> before = allItems();
+        long bytesBefore = dbWrapper.fileSize();
+
+        assertThrows(TimeoutException.class, () -> dbWrapper.compact(0, () -> {
+            throw new TimeoutException("busy");
+        }));
+
+        assertEquals(bytesBefore, dbWrapper.fileSize());
+        assertFalse(Files.exists(Path.of(file() + MapDbWrapper.COMPACT_SUFFIX)));
+        assertEquals(before, allItems());
+    }
+
+    @Test
+    void testPolicyIsDueOnGrowth() {
+        CompactionPolicy policy = new CompactionPolicy(2.0, 1_000, 0, 100);
+        assertFalse(policy.isDue(900, 100));
+        assertFalse(policy.isDue(2_000, 1_000));
+        assertTrue(policy.isDue(2_001, 1_000));
+        assertFalse(new CompactionPolicy(0, 0, 0, 100).isDue(1_000_000, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CompactionPolicy(1.0, 0, 0, 100));
+    }
+
+    @Test
+    void testCompactionRunsInTheBackground() throws Exception {
+        churn();
+        long bytesBefore = dbWrapper.fileSize();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Compaction compaction = new Compaction(List.of(dbWrapper), CompactionPolicy.defaults(), Quiescer.NONE,
+                    executor);
+            assertFalse(compaction.startIfDue());
+            assertTrue(compaction.start());
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (compaction.isRunning() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            List<CompactionReport> reports = compaction.status().reports();
+            assertEquals(1, reports.size());
+            assertNull(compaction.status().lastError());
+            assertEquals(bytesBefore, reports.get(0).bytesBefore());
+            assertTrue(reports.get(0).reclaimedBytes() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPostponedCompactionIsRetried() throws Exception {
+        churn();
+        AtomicInteger pauses = new AtomicInteger();
+        Quiescer busyOnce = () -> {
+            if (pauses.incrementAndGet() == 1) {
+                throw new TimeoutException("export running");
+            }
+            return () -> {
+            };
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Compaction compaction = new Compaction(List.of(dbWrapper), CompactionPolicy.defaults(), busyOnce, executor);
+            assertTrue(compaction.start());
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (compaction.status().postponed().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            CompactionPostponement postponement = compaction.status().postponed().get(0);
+            assertEquals(dbWrapper.file(), postponement.file());
+            assertEquals(1, postponement.attempts());
+            assertEquals("export running", postponement.reason());
+            assertTrue(compaction.status().reports().isEmpty());
+
+            while (compaction.status().reports().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, compaction.status().reports().size());
+            assertTrue(compaction.status().postponed().isEmpty());
+            assertEquals(2, pauses.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
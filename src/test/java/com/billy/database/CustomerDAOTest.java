@@ -2,7 +2,9 @@ package com.billy.database;
 
 import com.billy.objects.Customer;
 import com.billy.objects.CustomerUpdateRequest;
+import com.billy.objects.Page;
 import org.junit.jupiter.api.*;
+import org.mapdb.Serializer;
 
 import java.io.File;
 import java.util.Collection;
@@ -44,7 +46,8 @@ class CustomerDAOTest {
     @AfterEach
     void cleanup() {
         // Clear the map after each test
-        dbWrapper.db().treeMap(CustomerDAO.TABLE_NAME).createOrOpen().clear();
+        dbWrapper.treeMap(CustomerDAO.TABLE_NAME, Serializer.LONG, new CustomerSerializer()).clear();
+        dbWrapper.treeMap(CustomerDAO.EMAIL_INDEX_NAME, Serializer.STRING, Serializer.LONG).clear();
         dbWrapper.commit();
     }
 
@@ -119,9 +122,89 @@ class CustomerDAOTest {
         assertEquals("johnny@example.com", updated.email());
     }
 
+    @Test
+    void testFindPage() {
+        long first = customerDAO.save(new Customer(0, "A", "A", "male", "a@example.com")).get().id();
+        long second = customerDAO.save(new Customer(0, "B", "B", "male", "b@example.com")).get().id();
+        long third = customerDAO.save(new Customer(0, "C", "C", "female", "c@example.com")).get().id();
+
+        Page<Customer> page = customerDAO.findPage(0, 2);
+        assertEquals(2, page.data().size());
+        assertEquals(first, page.data().get(0).id());
+        assertEquals(second, page.next());
+
+        Page<Customer> last = customerDAO.findPage(page.next(), 2);
+        assertEquals(1, last.data().size());
+        assertEquals(third, last.data().get(0).id());
+        assertNull(last.next());
+    }
+
+    @Test
+    void testFindByEmail() {
+        Customer saved = customerDAO.save(new Customer(0, "John", "Doe", "male", "John@Example.com")).get();
+
+        Optional<Customer> found = customerDAO.findByEmail(" john@example.COM ");
+        assertTrue(found.isPresent());
+        assertEquals(saved.id(), found.get().id());
+        assertTrue(customerDAO.findByEmail("nobody@example.com").isEmpty());
+    }
+
+    @Test
+    void testSaveDuplicateEmailRejected() {
+        customerDAO.save(new Customer(0, "John", "Doe", "male", "john@example.com"));
+
+        assertThrows(DuplicateKeyException.class,
+                () -> customerDAO.save(new Customer(0, "Other", "Doe", "male", "JOHN@example.com")));
+    }
+
+    @Test
+    void testUpdateEmailMovesIndexEntry() {
+        Customer john = customerDAO.save(new Customer(0, "John", "Doe", "male", "john@example.com")).get();
+        customerDAO.save(new Customer(0, "Alice", "Smith", "female", "alice@example.com"));
+
+        CustomerUpdateRequest toTaken = new CustomerUpdateRequest(john.id(), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.of("alice@example.com"));
+        assertThrows(DuplicateKeyException.class, () -> customerDAO.update(john.id(), toTaken));
+
+        CustomerUpdateRequest toFree = new CustomerUpdateRequest(john.id(), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.of("johnny@example.com"));
+        assertTrue(customerDAO.update(john.id(), toFree).isPresent());
+        assertTrue(customerDAO.findByEmail("john@example.com").isEmpty());
+        assertEquals(john.id(), customerDAO.findByEmail("johnny@example.com").get().id());
+    }
+
+    @Test
+    void testDeleteReleasesEmail() {
+        Customer saved = customerDAO.save(new Customer(0, "John", "Doe", "male", "john@example.com")).get();
+        assertTrue(customerDAO.delete(saved.id()));
+
+        assertTrue(customerDAO.findByEmail("john@example.com").isEmpty());
+        assertTrue(customerDAO.save(new Customer(0, "John", "Doe", "male", "john@example.com")).isPresent());
+    }
+
     @Test
     void testFindInvalidId() {
         Optional<Customer> foundOptional = customerDAO.find(-2);
         assertTrue(foundOptional.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCachedFindSeesUpdatesAndDeletes() {
+        CustomerDAO cachedDAO = new CustomerDAO(dbWrapper, 1_000_000);
+        Customer saved = cachedDAO.save(new Customer(0, "Ann", "Lee", "female", "ann@example.com")).get();
+
+        assertEquals("Ann", cachedDAO.find(saved.id()).get().name());
+        assertEquals("Ann", cachedDAO.find(saved.id()).get().name());
+        CustomerUpdateRequest rename = new CustomerUpdateRequest(saved.id(), Optional.of("Anna"), Optional.empty(),
+                Optional.empty(), Optional.empty());
+        cachedDAO.update(saved.id(), rename);
+        assertEquals("Anna", cachedDAO.find(saved.id()).get().name());
+
+        assertTrue(cachedDAO.delete(saved.id()));
+        assertTrue(cachedDAO.find(saved.id()).isEmpty());
+
+        CacheStats stats = cachedDAO.cacheStats();
+        assertEquals(1, stats.hits());
+        assertEquals(3, stats.misses());
+    }
+}
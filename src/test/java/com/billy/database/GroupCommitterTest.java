@@ -0,0 +1,73 @@
+package com.billy.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitterTest {
+
+    @Test
+    void testConcurrentWritersShareCommits() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        int writers = 32;
+        try (GroupCommitter committer = new GroupCommitter(commits::incrementAndGet, writers, 50_000)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                Thread t = new Thread(committer::awaitDurable);
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join(5_000);
+                assertFalse(t.isAlive());
+            }
+        }
+        assertTrue(commits.get() >= 1);
+        assertTrue(commits.get() < writers);
+    }
+
+    @Test
+    void testSingleWriterCommitsAfterDelay() {
+        AtomicInteger commits = new AtomicInteger();
+        try (GroupCommitter committer = new GroupCommitter(commits::incrementAndGet, 100, 1_000)) {
+            committer.awaitDurable();
+            assertEquals(1, commits.get());
+        }
+    }
+
+    @Test
+    void testCommitFailureIsReportedToWriters() {
+        try (GroupCommitter committer = new GroupCommitter(() -> {
+            throw new IllegalStateException("disk full");
+        }, 1, 0)) {
+            assertThrows(IllegalStateException.class, committer::awaitDurable);
+        }
+    }
+
+    @Test
+    void testGroupCommitsAreReportedToCommitListeners(@TempDir Path directory) {
+        List<Boolean> commits = new CopyOnWriteArrayList<>();
+        try (MapDbWrapper db = new MapDbWrapper(directory.resolve("group.db").toString(),
+                new CommitPolicy(CommitMode.GROUP, 1, 0))) {
+            db.onCommit((nanos, committed) -> commits.add(committed));
+            db.db().atomicLong("counter").createOrOpen().incrementAndGet();
+            db.awaitDurable();
+        }
+        assertFalse(commits.isEmpty());
+        assertTrue(commits.stream().allMatch(committed -> committed));
+    }
+
+    @Test
+    void testCommitModeFromConfig() {
+        assertEquals(CommitMode.GROUP, CommitMode.fromConfig(" group "));
+        assertEquals(CommitMode.ASYNC, CommitMode.fromConfig(null));
+        assertThrows(IllegalArgumentException.class, () -> CommitMode.fromConfig("never"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.billy.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdAllocatorTest {
+    private static final String TEST_DB_FILE = "id_allocator_test.db";
+    private static final String SEQUENCE_NAME = "test_seq";
+
+    @AfterEach
+    void cleanup() {
+        File file = new File(TEST_DB_FILE);
+        if (file.exists() && !file.delete()) {
+            System.err.println("Failed to delete test DB file: " + TEST_DB_FILE);
+        }
+    }
+
+    @Test
+    void testConcurrentIdsAreUnique() throws InterruptedException {
+        int threads = 8;
+        int perThread = 5_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try (MapDbWrapper dbWrapper = new MapDbWrapper(TEST_DB_FILE)) {
+            IdAllocator allocator = new IdAllocator(dbWrapper, SEQUENCE_NAME, 100);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(allocator.next());
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(threads * perThread, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > 0));
+    }
+
+    @Test
+    void testReopenContinuesAboveReservedBlock() {
+        long lastBeforeClose;
+        try (MapDbWrapper dbWrapper = new MapDbWrapper(TEST_DB_FILE)) {
+            IdAllocator allocator = new IdAllocator(dbWrapper, SEQUENCE_NAME, 10);
+            assertEquals(1, allocator.next());
+            lastBeforeClose = allocator.next();
+        }
+
+        try (MapDbWrapper dbWrapper = new MapDbWrapper(TEST_DB_FILE)) {
+            IdAllocator allocator = new IdAllocator(dbWrapper, SEQUENCE_NAME, 10);
+            long first = allocator.next();
+            assertTrue(first > lastBeforeClose);
+            assertEquals(11, first);
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.billy.database;
 
 import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
 import com.billy.objects.ItemUpdateRequest;
+import com.billy.objects.Versioned;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -76,6 +88,24 @@ class ItemDAOTest {
         assertEquals("Gold", updated.color());
     }
 
+    @Test
+    void testConditionalWritesRejectStaleVersion() {
+        Item savedItem = itemDAO.save(new Item(null, "Bow", 3, 2, "Brown")).get();
+        ItemUpdateRequest rename = new ItemUpdateRequest(
+                Optional.of("Long Bow"), Optional.empty(), Optional.empty(), Optional.empty());
+
+        Versioned<Item> updated = itemDAO.update(savedItem.id(), rename, Versioned.FIRST).orElseThrow();
+        assertEquals(Versioned.FIRST + 1, updated.version());
+
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> itemDAO.update(savedItem.id(), rename, Versioned.FIRST));
+        assertEquals(updated.version(), conflict.currentVersion());
+        assertThrows(VersionConflictException.class, () -> itemDAO.delete(savedItem.id(), Versioned.FIRST));
+
+        assertTrue(itemDAO.delete(savedItem.id(), updated.version()));
+        assertFalse(itemDAO.find(savedItem.id()).isPresent());
+    }
+
     @Test
     void testDelete() {
         Item item = new Item(null, "Potion", 1, 1, "Red");
@@ -107,9 +137,146 @@ class ItemDAOTest {
         assertFalse(result.isPresent());
     }
 
+    @Test
+    void testQueryByColorAndWeight() {
+        Item light = itemDAO.save(new Item(null, "Light", 1, 1_500, "Crimson")).get();
+        Item heavy = itemDAO.save(new Item(null, "Heavy", 1, 2_500, "crimson")).get();
+        itemDAO.save(new Item(null, "Other", 1, 1_500, "Teal"));
+
+        List<Item> result = new ArrayList<>();
+        itemDAO.query(new ItemQuery(Optional.of("CRIMSON"), Optional.empty(), Optional.of(2_000.0),
+                Optional.empty(), Optional.empty())).forEachRemaining(result::add);
+
+        assertEquals(List.of(light), result);
+
+        List<Item> byWeight = new ArrayList<>();
+        itemDAO.query(new ItemQuery(Optional.empty(), Optional.of(2_400.0), Optional.of(2_600.0),
+                Optional.empty(), Optional.empty())).forEachRemaining(byWeight::add);
+        assertEquals(List.of(heavy), byWeight);
+    }
+
+    @Test
+    void testColorQueryIgnoresSurroundingBlanks() {
+        Item item = itemDAO.save(new Item(null, "Lamp", 1, 1, "Ochre")).get();
+
+        List<Item> result = new ArrayList<>();
+        itemDAO.query(new ItemQuery(Optional.of(" ochre "), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty())).forEachRemaining(result::add);
+
+        assertEquals(List.of(item), result);
+    }
+
+    @Test
+    void testIndexesFollowUpdateAndDelete() {
+        Item item = itemDAO.save(new Item(null, "Vase", 3, 7_000, "Amber")).get();
+        itemDAO.update(item.id(), new ItemUpdateRequest(Optional.empty(), Optional.empty(),
+                Optional.of(7_100.0), Optional.of("Jade")));
+
+        ItemQuery amber = new ItemQuery(Optional.of("Amber"), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty());
+        ItemQuery jade = new ItemQuery(Optional.of("Jade"), Optional.of(7_050.0), Optional.empty(),
+                Optional.empty(), Optional.empty());
+        assertFalse(itemDAO.query(amber).hasNext());
+        assertEquals(item.id(), itemDAO.query(jade).next().id());
+
+        itemDAO.delete(item.id());
+        assertFalse(itemDAO.query(jade).hasNext());
+    }
+
+    @Test
+    void testConcurrentUpdatesLeaveOneIndexEntry() throws Exception {
+        Item item = itemDAO.save(new Item(null, "Clock", 1, 1, "Teal")).get();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 200; i++) {
+                    itemDAO.update(item.id(), new ItemUpdateRequest(Optional.empty(), Optional.empty(),
+                            Optional.of(writer * 1_000.0 + i), Optional.empty()));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        ItemQuery anyWeight = new ItemQuery(Optional.empty(), Optional.of(-1.0), Optional.empty(),
+                Optional.empty(), Optional.empty());
+        List<Long> entries = new ArrayList<>();
+        new ItemIndexes(dbWrapper).plan(anyWeight).orElseThrow().forEachRemaining(id -> {
+            if (id.equals(item.id())) {
+                entries.add(id);
+            }
+        });
+        assertEquals(1, entries.size());
+        assertEquals(1 + 8 * 200, itemDAO.findVersioned(item.id()).orElseThrow().version());
+    }
+
+    @Test
+    void testSortableKeepsDoubleOrder() {
+        double[] values = {-10.5, -1, -0.0, 0, 0.25, 3, 1e9};
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(ItemIndexes.sortable(values[i - 1]) <= ItemIndexes.sortable(values[i]));
+        }
+    }
+
     @Test
     void testSaveNull() {
         Optional<Item> result = itemDAO.save(null);
         assertFalse(result.isPresent());
     }
+
+    @Test
+    void testOperationsEmitJfrEvents() throws Exception {
+        Path dump = Files.createTempFile("dao-events", ".jfr");
+        long id;
+        try (Recording recording = new Recording()) {
+            recording.enable(DaoEvent.NAME).withThreshold(Duration.ZERO);
+            recording.enable(CommitEvent.NAME);
+            recording.start();
+            id = itemDAO.save(new Item(null, "Anvil", 3, 40, "Black")).orElseThrow().id();
+            itemDAO.find(id);
+            dbWrapper.commit();
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        RecordedEvent find = events.stream()
+                .filter(e -> e.getEventType().getName().equals(DaoEvent.NAME))
+                .filter(e -> e.getString("operation").equals(DaoEvent.FIND))
+                .findFirst().orElseThrow();
+        assertEquals(ItemDAO.TABLE_NAME, find.getString("table"));
+        assertEquals(id, find.getLong("key"));
+        assertTrue(find.getLong("size") > 0);
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals(CommitEvent.NAME)));
+    }
+
+    @Test
+    void testFailedGroupCommitIsNotReportedAsMissing(@TempDir Path directory) {
+        AtomicBoolean diskFull = new AtomicBoolean();
+        MapDbWrapper failing = new MapDbWrapper(directory.resolve("group.db").toString(),
+                new CommitPolicy(CommitMode.GROUP, 1, 0)) {
+            @Override
+            public void commit() {
+                if (diskFull.get()) {
+                    throw new IllegalStateException("disk full");
+                }
+                super.commit();
+            }
+        };
+        try {
+            ItemDAO dao = new ItemDAO(failing);
+            long id = dao.save(new Item(null, "Shield", 1, 1, "Red")).orElseThrow().id();
+            diskFull.set(true);
+
+            assertThrows(IllegalStateException.class, () -> dao.delete(id));
+            assertThrows(IllegalStateException.class, () -> dao.update(id,
+                    new ItemUpdateRequest(Optional.of("Buckler"), Optional.empty(), Optional.empty(), Optional.empty())));
+        } finally {
+            diskFull.set(false);
+            failing.close();
+        }
+    }
 }
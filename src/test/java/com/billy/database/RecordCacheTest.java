@@ -0,0 +1,116 @@
+package com.billy.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCacheTest {
+    private static final int WEIGHT = 100;
+
+    private final Map<Long, String> store = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(long id) {
+        loads.incrementAndGet();
+        return store.get(id);
+    }
+
+    @Test
+    void testHitsAfterFirstLoad() {
+        RecordCache<String> cache = new RecordCache<>(1_000_000, value -> WEIGHT);
+        store.put(1L, "one");
+
+        assertEquals("one", cache.getOrLoad(1L, this::load));
+        assertEquals("one", cache.getOrLoad(1L, this::load));
+        assertNull(cache.getOrLoad(2L, this::load));
+
+        assertEquals(2, loads.get());
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.entries());
+        assertEquals(WEIGHT, stats.bytes());
+    }
+
+    @Test
+    void testInvalidateForcesReload() {
+        RecordCache<String> cache = new RecordCache<>(1_000_000, value -> WEIGHT);
+        store.put(1L, "one");
+        cache.getOrLoad(1L, this::load);
+
+        store.put(1L, "uno");
+        cache.invalidate(1L);
+
+        assertEquals("uno", cache.getOrLoad(1L, this::load));
+    }
+
+    @Test
+    void testLoadRacingWithInvalidateIsNotCached() {
+        RecordCache<String> cache = new RecordCache<>(1_000_000, value -> WEIGHT);
+        store.put(1L, "one");
+
+        String stale = cache.getOrLoad(1L, id -> {
+            String read = store.get(id);
+            store.put(id, "uno");
+            cache.invalidate(id);
+            return read;
+        });
+
+        assertEquals("one", stale);
+        assertEquals("uno", cache.getOrLoad(1L, this::load));
+    }
+
+    @Test
+    void testStaysWithinCapacityAndCountsEvictions() {
+        long maxBytes = RecordCache.SHARDS * 10L * WEIGHT;
+        RecordCache<String> cache = new RecordCache<>(maxBytes, value -> WEIGHT);
+        for (long id = 0; id < 10_000; id++) {
+            store.put(id, "v" + id);
+            cache.getOrLoad(id, this::load);
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.bytes() <= maxBytes);
+        assertTrue(stats.evictions() > 0);
+        assertEquals(10_000 - stats.entries(), stats.evictions());
+    }
+
+    @Test
+    void testScanDoesNotEvictHotRecords() {
+        long maxBytes = RecordCache.SHARDS * 100L * WEIGHT;
+        RecordCache<String> cache = new RecordCache<>(maxBytes, value -> WEIGHT);
+        for (long id = 0; id < 50_000; id++) {
+            store.put(id, "v" + id);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (long id = 0; id < 16; id++) {
+                cache.getOrLoad(id, this::load);
+            }
+        }
+        for (long id = 1_000; id < 50_000; id++) {
+            cache.getOrLoad(id, this::load);
+        }
+
+        loads.set(0);
+        for (long id = 0; id < 16; id++) {
+            cache.getOrLoad(id, this::load);
+        }
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        RecordCache<String> cache = new RecordCache<>(0, value -> WEIGHT);
+        store.put(1L, "one");
+
+        cache.getOrLoad(1L, this::load);
+        cache.getOrLoad(1L, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().maxBytes());
+    }
+}
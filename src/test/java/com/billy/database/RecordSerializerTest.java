@@ -0,0 +1,92 @@
+package com.billy.database;
+
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import com.billy.objects.Versioned;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapdb.BTreeMap;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordSerializerTest {
+    private static final String LEGACY_DB_FILE = "legacy_test.db";
+
+    @AfterEach
+    void cleanup() {
+        File file = new File(LEGACY_DB_FILE);
+        if (file.exists() && !file.delete()) {
+            System.err.println("Failed to delete test DB file: " + LEGACY_DB_FILE);
+        }
+    }
+
+    @Test
+    void testCustomerRoundTrip() throws IOException {
+        CustomerSerializer serializer = new CustomerSerializer();
+        Versioned<Customer> customer = new Versioned<>(3, new Customer(42, "José", null, "male", "jose@example.com"));
+
+        DataOutput2 out = new DataOutput2();
+        serializer.serialize(out, customer);
+        byte[] bytes = out.copyBytes();
+        Versioned<Customer> read = serializer.deserialize(new DataInput2.ByteArray(bytes), bytes.length);
+
+        assertEquals(customer, read);
+    }
+
+    @Test
+    void testItemRoundTrip() throws IOException {
+        ItemSerializer serializer = new ItemSerializer();
+        Versioned<Item> item = Versioned.first(new Item(7L, "Lamp", 1.5, 0.25, "Red"));
+
+        DataOutput2 out = new DataOutput2();
+        serializer.serialize(out, item);
+        byte[] bytes = out.copyBytes();
+        Versioned<Item> read = serializer.deserialize(new DataInput2.ByteArray(bytes), bytes.length);
+
+        assertEquals(item, read);
+    }
+
+    @Test
+    void testUnversionedLayoutReadsAsVersionZero() throws IOException {
+        DataOutput2 out = new DataOutput2();
+        out.writeByte(ItemSerializer.LAYOUT_V1);
+        out.packLong(7L);
+        out.packInt(0);
+        out.writeDouble(1.5);
+        out.writeDouble(0.25);
+        out.packInt(0);
+        byte[] bytes = out.copyBytes();
+
+        Versioned<Item> read = new ItemSerializer().deserialize(new DataInput2.ByteArray(bytes), bytes.length);
+
+        assertEquals(Versioned.UNVERSIONED, read.version());
+        assertEquals(new Item(7L, null, 1.5, 0.25, null), read.value());
+    }
+
+    @Test
+    void testLegacyTableIsMigrated() {
+        try (MapDbWrapper dbWrapper = new MapDbWrapper(LEGACY_DB_FILE)) {
+            @SuppressWarnings("unchecked")
+            BTreeMap<Long, Item> legacy = (BTreeMap<Long, Item>) dbWrapper.db()
+                    .treeMap(ItemDAO.LEGACY_TABLE_NAME, Serializer.LONG, Serializer.JAVA)
+                    .createOrOpen();
+            legacy.put(1L, new Item(1L, "Old", 1, 2, "Blue"));
+            dbWrapper.commit();
+
+            ItemDAO itemDAO = new ItemDAO(dbWrapper);
+            Optional<Item> found = itemDAO.find(1L);
+            assertTrue(found.isPresent());
+            assertEquals("Old", found.get().name());
+            assertTrue(legacy.isEmpty());
+            assertEquals(StorageFormat.CURRENT_VERSION,
+                    dbWrapper.db().atomicInteger(ItemDAO.FORMAT_NAME).createOrOpen().get());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.billy.database;
+
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import com.billy.objects.ItemQuery;
+import com.billy.objects.Page;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapdb.Serializer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardsTest {
+    private static final int SHARDS = 3;
+
+    @TempDir
+    Path directory;
+    private Shards shards;
+
+    @BeforeEach
+    void setup() {
+        shards = Shards.open(file(), SHARDS, CommitPolicy.async());
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+    }
+
+    private String file() {
+        return directory.resolve("data.db").toString();
+    }
+
+    @Test
+    void testIdsMapToShards() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            for (long sequence = 1; sequence <= 5; sequence++) {
+                assertEquals(shard, shards.shardOf(shards.recordId(shard, sequence)));
+            }
+        }
+        assertEquals(7, shards.recordId(0, 3));
+        assertEquals(2, shards.recordId(1, 1));
+    }
+
+    @Test
+    void testItemsAreSpreadAndReadInIdOrder() {
+        ItemDAO itemDAO = new ItemDAO(shards, 0);
+        for (int i = 0; i < 10; i++) {
+            itemDAO.save(new Item(null, "Item-" + i, i, i * 10, i % 2 == 0 ? "RED" : "BLUE"));
+        }
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertFalse(shards.shard(shard).db().treeMap(ItemDAO.TABLE_NAME, Serializer.LONG, new ItemSerializer())
+                    .createOrOpen().isEmpty());
+        }
+
+        List<Long> ids = new ArrayList<>();
+        itemDAO.iteratorAllItems().forEachRemaining(item -> ids.add(item.id()));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ids);
+
+        Page<Item> page = itemDAO.findPage(2, 4);
+        assertEquals(List.of(3L, 4L, 5L, 6L), page.data().stream().map(Item::id).toList());
+        assertEquals(6L, page.next());
+        assertNull(itemDAO.findPage(8, 4).next());
+
+        Iterator<Item> red = itemDAO.query(new ItemQuery(Optional.of("RED"), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty()));
+        int count = 0;
+        while (red.hasNext()) {
+            assertEquals("RED", red.next().color());
+            count++;
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    void testQueryReadsEachShardLazily() {
+        ItemDAO itemDAO = new ItemDAO(shards, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(itemDAO.save(new Item(null, "Item-" + i, i, i, "RED")).orElseThrow().id());
+        }
+        Iterator<Item> red = itemDAO.query(new ItemQuery(Optional.of("RED"), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty()));
+        Item first;
+        do {
+            first = red.next();
+        } while (shards.shardOf(first.id()) != 1);
+
+        for (long id : ids) {
+            if (shards.shardOf(id) == 1 && id != first.id()) {
+                itemDAO.delete(id);
+            }
+        }
+
+        int count = 0;
+        while (red.hasNext()) {
+            assertNotEquals(1, shards.shardOf(red.next().id()), "deleted items are not returned");
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    void testEmailIsUniqueAcrossShards() {
+        CustomerDAO customerDAO = new CustomerDAO(shards, 0);
+        List<Customer> saved = new ArrayList<>();
+        for (int i = 0; i < SHARDS * 2; i++) {
+            saved.add(customerDAO.save(new Customer(-1, "Name" + i, "Last" + i, "other", "c" + i + "@example.com"))
+                    .orElseThrow());
+        }
+        for (Customer customer : saved) {
+            assertEquals(customer, customerDAO.find(customer.id()).orElseThrow());
+            assertEquals(customer, customerDAO.findByEmail(customer.email()).orElseThrow());
+            for (int i = 0; i < SHARDS; i++) {
+                assertThrows(DuplicateKeyException.class, () -> customerDAO.save(
+                        new Customer(-1, "Other", "Other", "other", customer.email())));
+            }
+        }
+    }
+
+    @Test
+    void testStaleEmailEntryIsTakenOver() {
+        CustomerDAO customerDAO = new CustomerDAO(shards, 0);
+        String email = "stale@example.com";
+        shards.shard(shards.shardOf(email)).db()
+                .treeMap(CustomerDAO.EMAIL_INDEX_NAME, Serializer.STRING, Serializer.LONG)
+                .createOrOpen().put(email, 42L);
+
+        assertTrue(customerDAO.findByEmail(email).isEmpty());
+        Customer saved = customerDAO.save(new Customer(-1, "New", "Owner", "other", email)).orElseThrow();
+        assertEquals(saved, customerDAO.findByEmail(email).orElseThrow());
+    }
+
+    @Test
+    void testOpeningWithAnotherCountFails() {
+        shards.close();
+        assertThrows(IllegalStateException.class, () -> Shards.open(file(), SHARDS - 1, CommitPolicy.async()));
+        shards = Shards.open(file(), SHARDS, CommitPolicy.async());
+        assertEquals(SHARDS, shards.count());
+    }
+}
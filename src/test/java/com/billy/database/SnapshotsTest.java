@@ -0,0 +1,204 @@
+package com.billy.database;
+
+import com.billy.objects.Customer;
+import com.billy.objects.Item;
+import com.billy.objects.SnapshotReport;
+import com.billy.objects.SnapshotStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotsTest {
+    private static final int ITEMS = 1_000;
+    private static final int CUSTOMERS = 100;
+
+    @TempDir
+    Path directory;
+    private Shards shards;
+    private ItemDAO itemDAO;
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setup() {
+        shards = Shards.open(directory.resolve("data.db").toString(), 2, CommitPolicy.async());
+        itemDAO = new ItemDAO(shards, 0);
+        customerDAO = new CustomerDAO(shards, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+    }
+
+    private static List<SnapshotTable<?>> tables(Shards shards) {
+        return List.of(
+                new SnapshotTable<>("customers", shards, CustomerDAO.TABLE_NAME, CustomerDAO.SEQUENCE_NAME,
+                        new CustomerSerializer()),
+                new SnapshotTable<>("items", shards, ItemDAO.TABLE_NAME, ItemDAO.SEQUENCE_NAME, new ItemSerializer()));
+    }
+
+    private Snapshots snapshots(Quiescer quiescer, ExecutorService executor) {
+        return new Snapshots(directory.resolve("snapshots"), tables(shards), 0, quiescer, executor);
+    }
+
+    private List<Item> saveItems() {
+        List<Item> saved = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            saved.add(itemDAO.save(new Item(null, "Item-" + i, i, i, i % 2 == 0 ? "RED" : "BLUE")).orElseThrow());
+        }
+        for (int i = 0; i < saved.size(); i += 3) {
+            itemDAO.delete(saved.get(i).id());
+        }
+        List<Item> kept = new ArrayList<>();
+        for (int i = 0; i < saved.size(); i++) {
+            if (i % 3 != 0) {
+                kept.add(saved.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private List<Customer> saveCustomers() {
+        List<Customer> saved = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            saved.add(customerDAO.save(new Customer(-1, "Name" + i, "Last" + i, "other", "c" + i + "@example.com"))
+                    .orElseThrow());
+        }
+        return saved;
+    }
+
+    @Test
+    void testSnapshotRestoresIntoAnotherShardCount() throws Exception {
+        List<Item> items = saveItems();
+        List<Customer> customers = saveCustomers();
+        shards.commit();
+
+        SnapshotReport report = snapshots(Quiescer.NONE, null).take();
+        assertEquals(items.size() + customers.size(), report.records());
+        Path file = directory.resolve("snapshots").resolve(report.file());
+        assertTrue(Files.isRegularFile(file));
+        assertEquals(Files.size(file), report.bytes());
+
+        try (Shards restored = Shards.open(directory.resolve("restored.db").toString(), 3, CommitPolicy.async())) {
+            SnapshotReport restore = Snapshots.restore(file, tables(restored));
+            assertEquals(report.records(), restore.records());
+
+            ItemDAO restoredItems = new ItemDAO(restored, 0);
+            CustomerDAO restoredCustomers = new CustomerDAO(restored, 0);
+            List<Item> all = new ArrayList<>();
+            restoredItems.iteratorAllItems().forEachRemaining(all::add);
+            assertEquals(items, all);
+            for (Customer customer : customers) {
+                assertEquals(customer, restoredCustomers.findByEmail(customer.email()).orElseThrow());
+            }
+            long highest = items.stream().mapToLong(Item::id).max().orElseThrow();
+            Item next = restoredItems.save(new Item(null, "After", 1, 1, "RED")).orElseThrow();
+            assertTrue(next.id() > highest, "IDs continue after the snapshot");
+            assertThrows(DuplicateKeyException.class, () -> restoredCustomers.save(
+                    new Customer(-1, "Other", "Other", "other", customers.get(0).email())));
+        }
+    }
+
+    @Test
+    void testRestoreRefusesAStoreWithRecords() throws Exception {
+        saveItems();
+        shards.commit();
+        SnapshotReport report = snapshots(Quiescer.NONE, null).take();
+
+        Path file = directory.resolve("snapshots").resolve(report.file());
+        assertThrows(IllegalStateException.class, () -> Snapshots.restore(file, tables(shards)));
+    }
+
+    @Test
+    void testCorruptedSnapshotIsRejected() throws Exception {
+        saveItems();
+        shards.commit();
+        SnapshotReport report = snapshots(Quiescer.NONE, null).take();
+        Path file = directory.resolve("snapshots").resolve(report.file());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long position = channel.size() / 2;
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            channel.write(b, position);
+        }
+
+        try (Shards restored = Shards.open(directory.resolve("restored.db").toString(), 1, CommitPolicy.async())) {
+            assertThrows(IOException.class, () -> Snapshots.restore(file, tables(restored)));
+            assertTrue(new ItemDAO(restored, 0).findPage(0, 10).data().isEmpty());
+        }
+    }
+
+    @Test
+    void testWritesDuringTheCopyAreInTheSnapshot() throws Exception {
+        List<Item> items = saveItems();
+        Item deleted = items.get(0);
+        List<Item> added = new ArrayList<>();
+        Quiescer writesBeforePause = () -> {
+            itemDAO.delete(deleted.id());
+            added.add(itemDAO.save(new Item(null, "Late", 2, 2, "GREEN")).orElseThrow());
+            return () -> {
+            };
+        };
+
+        SnapshotReport report = snapshots(writesBeforePause, null).take();
+
+        try (Shards restored = Shards.open(directory.resolve("restored.db").toString(), 1, CommitPolicy.async())) {
+            Snapshots.restore(directory.resolve("snapshots").resolve(report.file()), tables(restored));
+            ItemDAO restoredItems = new ItemDAO(restored, 0);
+            assertTrue(restoredItems.find(deleted.id()).isEmpty());
+            assertEquals(added.get(0), restoredItems.find(added.get(0).id()).orElseThrow());
+            assertEquals(items.size(), report.records());
+        }
+    }
+
+    @Test
+    void testFailedPauseWritesNoSnapshot() throws Exception {
+        saveItems();
+        Snapshots snapshots = snapshots(() -> {
+            throw new TimeoutException("busy");
+        }, null);
+
+        assertThrows(TimeoutException.class, snapshots::take);
+        try (var files = Files.list(directory.resolve("snapshots"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testSnapshotRunsInTheBackground() throws Exception {
+        saveItems();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Snapshots snapshots = snapshots(Quiescer.NONE, executor);
+            assertTrue(snapshots.start());
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (snapshots.status().running() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            SnapshotStatus status = snapshots.status();
+            assertNull(status.lastError());
+            assertEquals(1, status.reports().size());
+            String name = status.reports().get(0).file();
+            assertTrue(snapshots.file(name).isPresent());
+            assertTrue(snapshots.file("../data.db").isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
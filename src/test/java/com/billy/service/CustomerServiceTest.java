@@ -55,6 +55,17 @@ class CustomerServiceTest {
         verify(mockDao, times(1)).find(1L);
     }
 
+    @Test
+    void testGetUserByEmail() {
+        Customer customer = new Customer(1L, "John", "Doe", "male", "john@example.com");
+        when(mockDao.findByEmail("john@example.com")).thenReturn(Optional.of(customer));
+
+        Optional<Customer> result = service.getCustomerByEmail("john@example.com");
+        assertTrue(result.isPresent());
+        assertEquals(customer, result.get());
+        verify(mockDao, times(1)).findByEmail("john@example.com");
+    }
+
     @Test
     void testCreateUser() {
         Customer customer = new Customer(0, "John", "Doe", "male", "john@example.com");
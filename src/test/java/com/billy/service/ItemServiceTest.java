@@ -1,14 +1,21 @@
 package com.billy.service;
 
+import com.billy.common.ConcurrencyLimiter;
 import com.billy.database.ItemDAO;
+import com.billy.factory.ObjectMapperFactory;
+import com.billy.objects.BulkOperation;
+import com.billy.objects.BulkResponse;
 import com.billy.objects.Item;
 import com.billy.objects.ItemUpdateRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -123,4 +130,59 @@ class ItemServiceTest {
         assertFalse(result);
         verify(dao).delete(99L);
     }
+
+    @Test
+    void testApplyBulkReportsEachOperation() {
+        when(dao.batch(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(dao.save(any())).thenAnswer(invocation -> Optional.of(new Item(7L, (Item) invocation.getArgument(0))));
+        when(dao.update(eq(7L), any())).thenReturn(Optional.of(new Item(7L, "Crate", 10, 5, "Red")));
+        when(dao.delete(8L)).thenReturn(false);
+
+        List<BulkOperation> operations = List.of(
+                new BulkOperation(BulkOperation.CREATE, null, ObjectMapperFactory.get().valueToTree(new Item(null, "Box", 10, 5, "Red"))),
+                new BulkOperation(BulkOperation.UPDATE, 7L, ObjectMapperFactory.get().createObjectNode().put("name", "Crate")),
+                new BulkOperation(BulkOperation.DELETE, 8L, null),
+                new BulkOperation(BulkOperation.UPDATE, null, null),
+                new BulkOperation("upsert", 1L, null));
+
+        BulkResponse response = service.applyBulk(operations.iterator());
+
+        assertEquals(5, response.total());
+        assertEquals(2, response.succeeded());
+        assertEquals(3, response.failed());
+        assertEquals(7L, response.results().get(0).id());
+        assertTrue(response.results().get(1).ok());
+        assertEquals(ItemService.ITEM_NOT_FOUND, response.results().get(2).error());
+        assertFalse(response.results().get(3).ok());
+        assertFalse(response.results().get(4).ok());
+        verify(dao, times(1)).batch(any());
+    }
+
+    @Test
+    void testApplyBulkHoldsNoPermitWhileReadingOperations() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of(1);
+        ItemService limited = new ItemService(dao, limiter);
+        when(dao.batch(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(dao.delete(anyLong())).thenAnswer(invocation -> limiter.availablePermits() == 0);
+        List<Integer> permitsWhileReading = new ArrayList<>();
+        Iterator<BulkOperation> operations = new Iterator<>() {
+            private long next = 1;
+
+            @Override
+            public boolean hasNext() {
+                return next <= 3;
+            }
+
+            @Override
+            public BulkOperation next() {
+                permitsWhileReading.add(limiter.availablePermits());
+                return new BulkOperation(BulkOperation.DELETE, next++, null);
+            }
+        };
+
+        BulkResponse response = limited.applyBulk(operations);
+
+        assertEquals(List.of(1, 1, 1), permitsWhileReading);
+        assertEquals(3, response.succeeded());
+    }
 }